@@ -0,0 +1,237 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.dto.DailySpentResponse;
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingContextDTO;
+import com.smart.mobility.smartmobilitypricingservice.dto.SubscriptionContextDTO;
+import com.smart.mobility.smartmobilitypricingservice.dto.TripCompletedEvent;
+import com.smart.mobility.smartmobilitypricingservice.dto.TripPricedEvent;
+import com.smart.mobility.smartmobilitypricingservice.enums.PassType;
+import com.smart.mobility.smartmobilitypricingservice.enums.TransportType;
+import com.smart.mobility.smartmobilitypricingservice.messaging.PricingEventPublisher;
+import com.smart.mobility.smartmobilitypricingservice.model.DiscountRule;
+import com.smart.mobility.smartmobilitypricingservice.model.FareSection;
+import com.smart.mobility.smartmobilitypricingservice.model.TransportLine;
+import com.smart.mobility.smartmobilitypricingservice.proxy.AccountServiceClient;
+import com.smart.mobility.smartmobilitypricingservice.proxy.UserServiceClient;
+import com.smart.mobility.smartmobilitypricingservice.repository.DiscountRuleRepository;
+import com.smart.mobility.smartmobilitypricingservice.repository.FareSectionRepository;
+import com.smart.mobility.smartmobilitypricingservice.repository.PenaltyFareRepository;
+import com.smart.mobility.smartmobilitypricingservice.repository.PricingResultRepository;
+import com.smart.mobility.smartmobilitypricingservice.repository.TransportLineRepository;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Jeu de données et doublures en mémoire (repositories, clients Feign,
+ * publication) pour les benchmarks du pipeline de tarification.
+ * Les données sont générées à partir d'une graine fixe afin que deux
+ * exécutions mesurent exactement le même travail.
+ */
+final class PricingBenchmarkFixtures {
+
+    private static final TransportType[] TRANSPORT_TYPES = { TransportType.BUS, TransportType.TER, TransportType.BRT };
+    private static final String[] RULE_TYPES = { "OFFPEAK", "LOYALTY", "STUDENT", "SENIOR", "WEEKEND", "EVENT" };
+    private static final String[] RULE_CONDITIONS = { "ALL", "BUS", "TER", "BRT", "BUS,TER", "BRT,BUS" };
+    private static final int STATIONS_PER_ZONE = 8;
+    // Lundi : les trajets couvrent quatre semaines complètes
+    private static final LocalDateTime FIRST_TRIP = LocalDateTime.of(2026, 3, 2, 0, 0);
+
+    private final Random random;
+    private final List<TransportLine> lines = new ArrayList<>();
+    private final List<FareSection> sections = new ArrayList<>();
+    private final List<DiscountRule> rules = new ArrayList<>();
+    private final Map<String, PricingContextDTO> contexts = new HashMap<>();
+    private final TripCompletedEvent[] trips;
+
+    // Dernier événement publié, conservé pour que sa construction ne soit pas éliminée
+    private volatile TripPricedEvent lastPublished;
+
+    PricingBenchmarkFixtures(int lineCount, int stationsPerLine, int ruleCount, int userCount, int tripCount,
+            long seed) {
+        this.random = new Random(seed);
+        for (long lineId = 1; lineId <= lineCount; lineId++) {
+            lines.add(TransportLine.builder()
+                    .id(lineId)
+                    .name("Ligne " + lineId)
+                    .transportType(TRANSPORT_TYPES[(int) (lineId % TRANSPORT_TYPES.length)].name())
+                    .build());
+            for (int order = 0; order < stationsPerLine; order++) {
+                sections.add(FareSection.builder()
+                        .lineId(lineId)
+                        .sectionOrder(order)
+                        .stationName(stationName(lineId, order))
+                        .zone(1 + order / STATIONS_PER_ZONE)
+                        .build());
+            }
+        }
+        for (int i = 0; i < ruleCount; i++) {
+            rules.add(randomRule(i));
+        }
+        for (int i = 0; i < userCount; i++) {
+            contexts.put(userId(i), randomContext());
+        }
+        this.trips = new TripCompletedEvent[tripCount];
+        for (int i = 0; i < tripCount; i++) {
+            trips[i] = randomTrip(i, lineCount, stationsPerLine, userCount);
+        }
+    }
+
+    /**
+     * Service de tarification complet, câblé sur les doublures en mémoire. Les
+     * appels "distants" sont exécutés dans le thread appelant.
+     */
+    PricingService pricingService() {
+        PricingProperties properties = new PricingProperties();
+        // Les mêmes trajets sont tarifés en boucle : la détection des doublons fausserait la mesure
+        properties.getIdempotency().setEnabled(false);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // Observations mesurées comme en production (timers), sans export de spans
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(new DefaultMeterObservationHandler(meterRegistry));
+
+        FareNetworkService fareNetworkService = new FareNetworkService(
+                repository(FareSectionRepository.class, Map.of("findAll", args -> sections)),
+                repository(TransportLineRepository.class, Map.of("findAll", args -> lines)),
+                repository(PenaltyFareRepository.class, Map.of("findAll", args -> List.of())),
+                FareStrategies.STANDARD);
+        DiscountRuleEngine discountRuleEngine = new DiscountRuleEngine(repository(DiscountRuleRepository.class,
+                Map.of("findByActiveTrueOrderByPriorityAsc", args -> rules)));
+        UserServiceClient userServiceClient = contexts::get;
+        AccountServiceClient accountServiceClient = userId -> new DailySpentResponse(userId, 0.0);
+        TripContextFetcher tripContextFetcher = new TripContextFetcher(userServiceClient, accountServiceClient,
+                new UserContextCache(properties, meterRegistry), Runnable::run, meterRegistry, observationRegistry,
+                properties);
+        PricingEventPublisher publisher = event -> lastPublished = event;
+
+        PricingResultRepository pricingResultRepository = repository(PricingResultRepository.class, Map.of(
+                "claimTrip", args -> true,
+                "save", args -> args[0],
+                "saveAll", args -> args[0]));
+        return new PricingService(discountRuleEngine, pricingResultRepository,
+                new JpaPricingAuditWriter(pricingResultRepository),
+                new PricedTripRegistry(pricingResultRepository, Clock.systemDefaultZone(), properties),
+                fareNetworkService, tripContextFetcher,
+                new DailySpentLedger(Clock.systemDefaultZone(), properties),
+                publisher, new ObjectMapper().findAndRegisterModules(),
+                new PricingMetrics(meterRegistry, observationRegistry));
+    }
+
+    DiscountRuleSnapshot ruleSet() {
+        return DiscountRuleSnapshot.compile(1L, rules);
+    }
+
+    TripCompletedEvent[] trips() {
+        return trips;
+    }
+
+    PricingContextDTO context(TripCompletedEvent trip) {
+        return contexts.get(trip.userId());
+    }
+
+    /**
+     * Doublure d'un repository Spring Data : seules les méthodes fournies sont
+     * implémentées, les autres échouent.
+     */
+    @SuppressWarnings("unchecked")
+    static <R> R repository(Class<R> type, Map<String, Function<Object[], Object>> methods) {
+        return (R) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+            Function<Object[], Object> implementation = methods.get(method.getName());
+            if (implementation != null) {
+                return implementation.apply(args);
+            }
+            return switch (method.getName()) {
+                case "toString" -> "InMemory" + type.getSimpleName();
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                default -> throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+            };
+        });
+    }
+
+    private DiscountRule randomRule(int index) {
+        DiscountRule.DiscountRuleBuilder rule = DiscountRule.builder()
+                .id((long) index + 1)
+                .ruleType(RULE_TYPES[random.nextInt(RULE_TYPES.length)])
+                .percentage(BigDecimal.valueOf(1 + random.nextInt(15)))
+                .priority(index + 1)
+                .condition(RULE_CONDITIONS[random.nextInt(RULE_CONDITIONS.length)])
+                .active(true);
+        // Fenêtres étroites : quelques règles candidates par trajet, comme en production
+        if (random.nextInt(10) < 7) {
+            int startHour = random.nextInt(24);
+            rule.startHour(LocalTime.of(startHour, random.nextInt(4) * 15))
+                    .endHour(LocalTime.of((startHour + 1 + random.nextInt(3)) % 24, random.nextInt(4) * 15));
+        }
+        if (random.nextBoolean()) {
+            int startDay = 1 + random.nextInt(7);
+            rule.startDay(startDay).endDay(1 + (startDay - 1 + random.nextInt(3)) % 7);
+        }
+        if (random.nextInt(5) == 0) {
+            LocalDate startDate = FIRST_TRIP.toLocalDate().minusDays(random.nextInt(60));
+            rule.startDate(startDate).endDate(startDate.plusDays(30 + random.nextInt(60)));
+        }
+        return rule.build();
+    }
+
+    private PricingContextDTO randomContext() {
+        List<SubscriptionContextDTO> subscriptions = new ArrayList<>();
+        int count = random.nextInt(4);
+        for (int i = 0; i < count; i++) {
+            subscriptions.add(SubscriptionContextDTO.builder()
+                    .applicableTransport(TransportType.values()[random.nextInt(TransportType.values().length)])
+                    .discountPercentage(5.0 + random.nextInt(46))
+                    .build());
+        }
+        boolean hasActivePass = random.nextBoolean();
+        return PricingContextDTO.builder()
+                .hasActivePass(hasActivePass)
+                .passType(hasActivePass ? PassType.values()[random.nextInt(PassType.values().length)] : null)
+                // Plafond évalué à chaque trajet mais jamais atteint : sinon, au fil
+                // des itérations, tous les trajets finiraient gratuits
+                .dailyCapAmount(1_000_000_000.0)
+                .activeSubscriptions(subscriptions)
+                .build();
+    }
+
+    private TripCompletedEvent randomTrip(int index, int lineCount, int stationsPerLine, int userCount) {
+        long lineId = 1 + random.nextInt(lineCount);
+        int start = random.nextInt(stationsPerLine);
+        int end = random.nextInt(stationsPerLine);
+        LocalDateTime startTime = FIRST_TRIP.plusMinutes(random.nextInt(28 * 24 * 60));
+        return TripCompletedEvent.builder()
+                .tripId((long) index + 1)
+                .userId(userId(random.nextInt(userCount)))
+                .transportType(TRANSPORT_TYPES[(int) (lineId % TRANSPORT_TYPES.length)])
+                .transportLineId(lineId)
+                .startLocation(stationName(lineId, start))
+                .endLocation(stationName(lineId, end))
+                .startTime(startTime)
+                .endTime(startTime.plusMinutes(5 + random.nextInt(60)))
+                .mismatch(random.nextInt(50) == 0)
+                .build();
+    }
+
+    private static String stationName(long lineId, int order) {
+        return "Arrêt " + lineId + "-" + order;
+    }
+
+    private static String userId(int index) {
+        return "user-" + index;
+    }
+}
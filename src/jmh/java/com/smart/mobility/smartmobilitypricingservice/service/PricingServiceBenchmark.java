@@ -0,0 +1,111 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.smart.mobility.smartmobilitypricingservice.dto.AppliedDiscountDto;
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingResponseDTO;
+import com.smart.mobility.smartmobilitypricingservice.dto.TripCompletedEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks du pipeline de tarification, étape par étape puis de bout en
+ * bout. Une opération = un trajet : le profiler GC ({@code -prof gc}) donne
+ * donc directement l'allocation par trajet ({@code gc.alloc.rate.norm}).
+ *
+ * <p>Lancement : {@code ./mvnw -P benchmark test-compile exec:exec}
+ * (filtre : {@code -Djmh.include=...}).</p>
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+@State(Scope.Benchmark)
+public class PricingServiceBenchmark {
+
+    private static final long SEED = 42L;
+
+    @Param({ "60" })
+    public int stationsPerLine;
+
+    @Param({ "300" })
+    public int ruleCount;
+
+    @Param({ "24" })
+    public int lineCount;
+
+    private PricingService pricingService;
+    private DiscountRuleSnapshot ruleSet;
+    private TripCompletedEvent[] trips;
+    private SubscriptionRates[] subscriptionRates;
+    private long[] basePrices;
+
+    @Setup
+    public void setUp() {
+        PricingBenchmarkFixtures fixtures = new PricingBenchmarkFixtures(lineCount, stationsPerLine, ruleCount,
+                4096, 8192, SEED);
+        pricingService = fixtures.pricingService();
+        ruleSet = fixtures.ruleSet();
+        trips = fixtures.trips();
+        subscriptionRates = new SubscriptionRates[trips.length];
+        basePrices = new long[trips.length];
+        for (int i = 0; i < trips.length; i++) {
+            subscriptionRates[i] = SubscriptionRates.of(fixtures.context(trips[i]));
+            basePrices[i] = pricingService.calculateBasePrice(trips[i]);
+        }
+    }
+
+    /**
+     * Position courante dans le jeu de trajets, propre à chaque thread.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int advance(int length) {
+            int current = next;
+            next = current + 1 == length ? 0 : current + 1;
+            return current;
+        }
+    }
+
+    @Benchmark
+    public long calculateBasePrice(Cursor cursor) {
+        return pricingService.calculateBasePrice(trips[cursor.advance(trips.length)]);
+    }
+
+    @Benchmark
+    public long applySubscriptionDiscount(Cursor cursor) {
+        int i = cursor.advance(trips.length);
+        List<AppliedDiscountDto> discounts = new ArrayList<>();
+        return pricingService.applySubscriptionDiscount(basePrices[i], trips[i], subscriptionRates[i], discounts);
+    }
+
+    @Benchmark
+    public long applyDatabaseDiscountRules(Cursor cursor) {
+        int i = cursor.advance(trips.length);
+        List<AppliedDiscountDto> discounts = new ArrayList<>();
+        return pricingService.applyDatabaseDiscountRules(basePrices[i], trips[i], ruleSet, discounts);
+    }
+
+    /**
+     * Trajet complet : contexte (cache), remises, plafond, audit sérialisé et
+     * publication, avec repositories et clients en mémoire.
+     */
+    @Benchmark
+    public PricingResponseDTO calculateAndProcessTrip(Cursor cursor) {
+        return pricingService.calculateAndProcessTrip(trips[cursor.advance(trips.length)]);
+    }
+}
@@ -0,0 +1,99 @@
+package com.smart.mobility.smartmobilitypricingservice.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.ContextPropagatingTaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Clock;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+@Slf4j
+public class AsyncConfig {
+
+    // ─── Outbound Calls Executor ─────────────────────────────────────────────
+    // Runs the user-service / billing-service calls of a trip concurrently.
+    // Trace context is propagated so the Feign spans stay under the trip span.
+    @Bean
+    public ThreadPoolTaskExecutor pricingFetchExecutor(PricingProperties pricingProperties) {
+        PricingProperties.Fetch fetch = pricingProperties.getFetch();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("pricing-fetch-");
+        executor.setCorePoolSize(fetch.getPoolSize());
+        executor.setMaxPoolSize(fetch.getPoolSize());
+        executor.setQueueCapacity(fetch.getQueueCapacity());
+        executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+        executor.initialize();
+        return executor;
+    }
+
+    // ─── Ordered Listener Executor ───────────────────────────────────────────
+    // Runs the per-user lanes of the ordered trip listener. The pool grows from
+    // min to max concurrency when lanes are waiting; when it is saturated the
+    // consumer thread runs the lane itself, which stops it from fetching more.
+    // Virtual threads are used instead when enabled and the JVM supports them.
+    @Bean
+    @ConditionalOnProperty(name = "pricing.listener.dispatch.enabled", havingValue = "true", matchIfMissing = true)
+    public ExecutorService pricingDispatchExecutor(PricingProperties pricingProperties) {
+        PricingProperties.Listener.Dispatch dispatch = pricingProperties.getListener().getDispatch();
+        if (dispatch.isVirtualThreads()) {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                log.warn("Virtual threads need Java 21+, falling back to a thread pool for the trip listener");
+            }
+        }
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("pricing-dispatch-");
+        executor.setCorePoolSize(dispatch.getMinConcurrency());
+        executor.setMaxPoolSize(dispatch.getMaxConcurrency());
+        executor.setQueueCapacity(dispatch.getMinConcurrency());
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+        executor.initialize();
+        return executor.getThreadPoolExecutor();
+    }
+
+    // ─── Bulk Pricing Executor ───────────────────────────────────────────────
+    // Prices the per-user partitions of a bulk request. When every thread is
+    // busy the request thread prices the partition itself (back-pressure).
+    @Bean
+    public ThreadPoolTaskExecutor pricingBulkExecutor(PricingProperties pricingProperties) {
+        int parallelism = pricingProperties.getBulk().getParallelism();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("pricing-bulk-");
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setQueueCapacity(parallelism);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+        executor.initialize();
+        return executor;
+    }
+
+    // ─── Repricing Executor ──────────────────────────────────────────────────
+    // Re-prices the per-user partitions of a repricing job page. Kept small and
+    // separate from the live pricing pools.
+    @Bean
+    public ThreadPoolTaskExecutor pricingRepricingExecutor(PricingProperties pricingProperties) {
+        int parallelism = pricingProperties.getRepricing().getParallelism();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("pricing-repricing-");
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setQueueCapacity(parallelism);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean
+    public Clock clock() {
+        return Clock.systemDefaultZone();
+    }
+}
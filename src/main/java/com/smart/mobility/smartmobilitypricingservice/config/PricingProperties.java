@@ -0,0 +1,288 @@
+package com.smart.mobility.smartmobilitypricingservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Paramètres de fonctionnement du service de tarification (préfixe
+ * {@code pricing}).
+ */
+@Data
+@ConfigurationProperties(prefix = "pricing")
+public class PricingProperties {
+
+    private Listener listener = new Listener();
+    private Fetch fetch = new Fetch();
+    private Ledger ledger = new Ledger();
+    private ContextCache contextCache = new ContextCache();
+    private Audit audit = new Audit();
+    private Outbox outbox = new Outbox();
+    private Idempotency idempotency = new Idempotency();
+    private Bulk bulk = new Bulk();
+    private Repricing repricing = new Repricing();
+    private Sharding sharding = new Sharding();
+    private Archive archive = new Archive();
+    private Quote quote = new Quote();
+    private Warmup warmup = new Warmup();
+
+    @Data
+    public static class Listener {
+
+        private Batch batch = new Batch();
+        private Dispatch dispatch = new Dispatch();
+
+        /**
+         * Consommation par lots de trip.completed.queue : un ack et une
+         * transaction par lot.
+         */
+        @Data
+        public static class Batch {
+            private boolean enabled = false;
+            private int size = 50;
+            private Duration receiveTimeout = Duration.ofMillis(200);
+        }
+
+        /**
+         * Consommation ordonnée et concurrente de trip.completed.queue : les
+         * messages sont répartis par utilisateur sur des files série (l'ordre
+         * par utilisateur est conservé) traitées en parallèle, avec ack
+         * manuel par message.
+         */
+        @Data
+        public static class Dispatch {
+            private boolean enabled = true;
+            // Files série ; un utilisateur est toujours traité par la même
+            private int lanes = 64;
+            // Threads de traitement : min permanents, jusqu'à max quand les files attendent
+            private int minConcurrency = 4;
+            private int maxConcurrency = 32;
+            // Threads virtuels (Java 21+) à la place du pool
+            private boolean virtualThreads = false;
+            // Messages en cours : fenêtre adaptative entre min et max (prefetch AMQP = max)
+            private int minPrefetch = 8;
+            private int maxPrefetch = 256;
+            // La fenêtre grandit tant que les trajets sont traités sous cette latence
+            private Duration targetLatency = Duration.ofMillis(250);
+            // Après l'échec d'un trajet, les suivants de l'utilisateur sont remis en file jusqu'à sa redélivrance
+            private Duration parkTimeout = Duration.ofSeconds(30);
+        }
+    }
+
+    /**
+     * Appels concurrents vers user-mobility-pass-service et billing-service.
+     */
+    @Data
+    public static class Fetch {
+        private Duration userContextTimeout = Duration.ofMillis(800);
+        private Duration dailySpentTimeout = Duration.ofMillis(800);
+        private int poolSize = 32;
+        private int queueCapacity = 1000;
+        // Appels simultanés maximum par service (bulkhead) ; au-delà, l'appel attend une place au plus le délai du service
+        private int userContextMaxConcurrentCalls = 16;
+        private int dailySpentMaxConcurrentCalls = 16;
+        // Billing Service indisponible : le plafond s'appuie sur le cumul local au lieu de faire échouer le trajet
+        private boolean dailySpentFallback = true;
+        private Breaker circuitBreaker = new Breaker();
+        private Hedging hedging = new Hedging();
+
+        /**
+         * Disjoncteur par service appelé. Un appel plus long que le délai
+         * d'attente du service compte comme lent.
+         */
+        @Data
+        public static class Breaker {
+            private int slidingWindowSize = 50;
+            private int minimumCalls = 20;
+            private float failureRateThreshold = 50;
+            private float slowCallRateThreshold = 50;
+            private Duration waitInOpenState = Duration.ofSeconds(10);
+            private int halfOpenCalls = 5;
+        }
+
+        /**
+         * Requête de secours : si la réponse n'est pas arrivée après le
+         * percentile observé des latences, une seconde requête est envoyée et
+         * la première réponse est retenue.
+         */
+        @Data
+        public static class Hedging {
+            private boolean enabled = false;
+            private double percentile = 0.95;
+            private Duration minDelay = Duration.ofMillis(50);
+        }
+    }
+
+    /**
+     * Cumul local de la dépense du jour (plafond journalier).
+     */
+    @Data
+    public static class Ledger {
+        private int stripes = 64;
+        // Au-delà, le cumul est ré-aligné sur le Billing Service (autres instances)
+        private Duration reseedAfter = Duration.ofMinutes(5);
+    }
+
+    /**
+     * Cache des contextes utilisateur (abonnements, plafond).
+     */
+    @Data
+    public static class ContextCache {
+        private boolean enabled = true;
+        private long maxSize = 100_000;
+        private Duration ttl = Duration.ofSeconds(60);
+        private Invalidation invalidation = new Invalidation();
+
+        /**
+         * Invalidation par les événements de changement d'abonnement.
+         */
+        @Data
+        public static class Invalidation {
+            private boolean enabled = false;
+            private String exchange = "user.exchange";
+            private String routingKey = "subscription.changed";
+        }
+    }
+
+    /**
+     * Écriture des audits de tarification (pricing_results).
+     */
+    @Data
+    public static class Audit {
+        // SYNC : insertion dans la transaction de tarification ; ASYNC : write-behind
+        private Mode mode = Mode.SYNC;
+        private int queueCapacity = 10_000;
+        private int flushSize = 500;
+        private Duration flushInterval = Duration.ofMillis(200);
+        // File pleine : attente maximale avant écriture synchrone par l'appelant
+        private Duration offerTimeout = Duration.ofSeconds(1);
+        // Audits non persistés (base indisponible), rejoués au démarrage suivant
+        private String spillFile = "pricing-audit-spill.ndjson";
+
+        public enum Mode {
+            SYNC,
+            ASYNC
+        }
+    }
+
+    /**
+     * Outbox transactionnelle des TripPricedEvent.
+     */
+    @Data
+    public static class Outbox {
+        private boolean enabled = false;
+        private int batchSize = 100;
+        // Partitions de relais ; ne pas modifier tant que des événements sont en attente
+        private int buckets = 16;
+        private Duration confirmTimeout = Duration.ofSeconds(5);
+        // Conservation des événements publiés
+        private Duration retention = Duration.ofDays(1);
+    }
+
+    /**
+     * Détection des trajets déjà tarifés (redélivrances, nouvelles tentatives).
+     */
+    @Data
+    public static class Idempotency {
+        // Cache des réponses et filtre de Bloom seulement : la réservation dans pricing_trip_keys reste toujours faite
+        private boolean enabled = true;
+        // Réponses récentes servies sans accès à la base
+        private long recentSize = 100_000;
+        private Duration recentTtl = Duration.ofHours(1);
+        // Filtre de Bloom : au-delà du volume prévu, une nouvelle génération est démarrée
+        private long expectedTrips = 2_000_000;
+        private double falsePositiveRate = 0.01;
+        // Trajets chargés dans le filtre au démarrage
+        private Duration seedWindow = Duration.ofHours(24);
+    }
+
+    /**
+     * Tarification en masse (POST /api/pricing/bulk).
+     */
+    @Data
+    public static class Bulk {
+        // Trajets lus et tarifés ensemble ; les utilisateurs d'un bloc sont répartis entre les threads
+        private int chunkSize = 1000;
+        private int parallelism = 8;
+    }
+
+    /**
+     * Re-tarification historique de pricing_results (/admin/repricing-jobs).
+     */
+    @Data
+    public static class Repricing {
+        private int pageSize = 500;
+        private int parallelism = 2;
+        // Débit maximal, pour ne pas pénaliser la tarification en direct (0 : illimité)
+        private int maxTripsPerSecond = 500;
+        private String reportDir = "repricing-reports";
+        // Sans point de reprise depuis ce délai, un job RUNNING est considéré interrompu
+        private Duration staleAfter = Duration.ofMinutes(2);
+    }
+
+    /**
+     * Files trip.completed partitionnées par utilisateur : un routeur répartit
+     * les trajets sur {@code shards} files, chaque instance consomme les files
+     * qui lui reviennent (hachage de rendez-vous sur les instances Eureka).
+     */
+    @Data
+    public static class Sharding {
+        private boolean enabled = false;
+        // Ne pas modifier sans avoir vidé les files : un utilisateur changerait de file
+        private int shards = 16;
+        private String exchange = "pricing.trip.shards";
+        private int routerBatchSize = 100;
+        private Duration confirmTimeout = Duration.ofSeconds(5);
+        // Messages non acquittés par file consommée
+        private int prefetch = 50;
+        // Nouvelles tentatives d'un trajet en échec avant son envoi en file d'erreur (la file attend)
+        private int maxRetries = 4;
+        private Duration retryInitialInterval = Duration.ofSeconds(1);
+        private Duration retryMaxInterval = Duration.ofSeconds(10);
+    }
+
+    /**
+     * Archivage des mois anciens de pricing_results en fichiers NDJSON gzip
+     * sur disque, lus en repli par la recherche d'un trajet.
+     */
+    @Data
+    public static class Archive {
+        // Active la tâche d'archivage (une seule instance) ; la lecture des archives est toujours active
+        private boolean enabled = false;
+        // Partagé entre les instances (volume commun) pour que toutes lisent les archives
+        private String dir = "pricing-archive";
+        // Mois conservés en base, mois courant non compris
+        private int retainMonths = 3;
+        // Lignes par bloc gzip indexé : un trajet archivé se lit en décompressant un seul bloc
+        private int blockSize = 1000;
+        private int pageSize = 5000;
+        // Partitions mensuelles créées à l'avance
+        private int partitionsAhead = 2;
+    }
+
+    /**
+     * Devis sans effet de bord (POST /api/pricing/quote). Les prix avant
+     * plafond sont mis en cache, vidé quand les sections ou les règles changent.
+     */
+    @Data
+    public static class Quote {
+        private boolean cacheEnabled = true;
+        private long cacheMaxSize = 200_000;
+        private Duration cacheTtl = Duration.ofMinutes(30);
+    }
+
+    /**
+     * Préchauffage au démarrage, avant les listeners RabbitMQ et le serveur web.
+     */
+    @Data
+    public static class Warmup {
+        private boolean enabled = true;
+        // Fichier écrit à l'arrêt et relu au démarrage (vide : toujours depuis la base)
+        private String snapshotFile = "";
+        // Au-delà, le fichier est ignoré et les données sont lues en base
+        private Duration snapshotMaxAge = Duration.ofHours(24);
+        // Trajets synthétiques tarifés pour compiler le chemin de calcul
+        private int iterations = 20_000;
+    }
+}
@@ -7,9 +7,13 @@ import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.JacksonJavaTypeMapper;
 import org.springframework.amqp.support.converter.JacksonJsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 public class RabbitMQConfig {
 
@@ -17,6 +21,10 @@ public class RabbitMQConfig {
     public static final String PRICING_QUEUE = "trip.completed.queue";
     public static final String TRIP_COMPLETED_ROUTING_KEY = "trip.completed";
     public static final String TRIP_PRICED_ROUTING_KEY = "trip.priced";
+    public static final String SUBSCRIPTION_CHANGED_QUEUE_PREFIX = "pricing.subscription.changed.";
+    public static final String SHARD_ROUTER_QUEUE = "trip.completed.router.queue";
+    public static final String SHARD_QUEUE_PREFIX = "trip.completed.shard.";
+    public static final String SHARD_DEAD_LETTER_QUEUE = "trip.completed.shard.dlq";
 
     // ─── Exchange Bean ───────────────────────────────────────────────────────
     @Bean
@@ -25,16 +33,70 @@ public class RabbitMQConfig {
     }
 
     // ─── Queue Bean ──────────────────────────────────────────────────────────
+    // Replaced by the router queue when sharding is enabled
     @Bean
+    @ConditionalOnProperty(name = "pricing.sharding.enabled", havingValue = "false", matchIfMissing = true)
     public Queue pricingQueue() {
         return new Queue(PRICING_QUEUE, true);
     }
 
     @Bean
+    @ConditionalOnProperty(name = "pricing.sharding.enabled", havingValue = "false", matchIfMissing = true)
     public Binding bindingPricingQueue(Queue pricingQueue, DirectExchange tripExchange) {
         return BindingBuilder.bind(pricingQueue).to(tripExchange).with(TRIP_COMPLETED_ROUTING_KEY);
     }
 
+    // ─── Subscription Changes (pricing context cache invalidation) ──────────
+    // Every instance caches contexts, so each one gets its own exclusive,
+    // auto-delete queue: a change is broadcast to all of them instead of being
+    // consumed by a single instance.
+    @Bean
+    @ConditionalOnProperty(name = "pricing.context-cache.invalidation.enabled", havingValue = "true")
+    public AnonymousQueue subscriptionChangedQueue() {
+        return new AnonymousQueue(new Base64UrlNamingStrategy(SUBSCRIPTION_CHANGED_QUEUE_PREFIX));
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "pricing.context-cache.invalidation.enabled", havingValue = "true")
+    public Binding bindingSubscriptionChangedQueue(AnonymousQueue subscriptionChangedQueue,
+            PricingProperties pricingProperties) {
+        // The exchange belongs to user-mobility-pass-service: bind to it without redeclaring it
+        PricingProperties.ContextCache.Invalidation invalidation = pricingProperties.getContextCache()
+                .getInvalidation();
+        return new Binding(subscriptionChangedQueue.getName(), Binding.DestinationType.QUEUE,
+                invalidation.getExchange(), invalidation.getRoutingKey(), null);
+    }
+
+    // ─── Sharded Trip Queues ─────────────────────────────────────────────────
+    // trip.completed is consumed by a router queue and republished to one of N
+    // shard queues by userId. Both are single-active-consumer queues: every
+    // instance may subscribe, the broker delivers to one consumer at a time, so
+    // a shard is never processed by two instances even while they rebalance.
+    // Trips still failing after the consumer's retries are parked in the
+    // dead-letter queue instead of blocking their shard.
+    @Bean
+    @ConditionalOnProperty(name = "pricing.sharding.enabled", havingValue = "true")
+    public Declarables shardedTripQueues(DirectExchange tripExchange, PricingProperties pricingProperties) {
+        PricingProperties.Sharding sharding = pricingProperties.getSharding();
+        List<Declarable> declarables = new ArrayList<>();
+        Queue routerQueue = QueueBuilder.durable(SHARD_ROUTER_QUEUE).singleActiveConsumer().build();
+        declarables.add(routerQueue);
+        declarables.add(BindingBuilder.bind(routerQueue).to(tripExchange).with(TRIP_COMPLETED_ROUTING_KEY));
+        DirectExchange shardExchange = new DirectExchange(sharding.getExchange());
+        declarables.add(shardExchange);
+        for (int shard = 0; shard < sharding.getShards(); shard++) {
+            Queue shardQueue = QueueBuilder.durable(shardQueue(shard)).singleActiveConsumer().build();
+            declarables.add(shardQueue);
+            declarables.add(BindingBuilder.bind(shardQueue).to(shardExchange).with(String.valueOf(shard)));
+        }
+        declarables.add(QueueBuilder.durable(SHARD_DEAD_LETTER_QUEUE).build());
+        return new Declarables(declarables);
+    }
+
+    public static String shardQueue(int shard) {
+        return SHARD_QUEUE_PREFIX + shard;
+    }
+
     // ─── JSON Message Converter ───────────────────────────────────────────────
     @Bean
     public MessageConverter jsonMessageConverter() {
@@ -59,4 +121,62 @@ public class RabbitMQConfig {
         factory.setMessageConverter(jsonMessageConverter());
         return factory;
     }
+
+    // ─── Batch Listener Container Factory ────────────────────────────────────
+    // Delivers up to batch-size messages per listener call; the whole batch is
+    // acknowledged at once after the listener returns.
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchRabbitListenerContainerFactory(
+            ConnectionFactory connectionFactory, PricingProperties pricingProperties) {
+        PricingProperties.Listener.Batch batch = pricingProperties.getListener().getBatch();
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(jsonMessageConverter());
+        factory.setAcknowledgeMode(AcknowledgeMode.AUTO);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batch.getSize());
+        factory.setPrefetchCount(batch.getSize());
+        factory.setReceiveTimeout(batch.getReceiveTimeout().toMillis());
+        return factory;
+    }
+
+    // ─── Ordered Listener Container Factory ──────────────────────────────────
+    // One consumer per queue keeps the delivery order; concurrency comes from the
+    // per-user lanes of OrderedTripDispatcher. Messages are acknowledged manually
+    // as each trip completes. The channel prefetch can't be changed once the
+    // consumer is started, so it is set to the largest in-flight window and the
+    // dispatcher bounds the messages actually in flight.
+    @Bean
+    @ConditionalOnProperty(name = "pricing.listener.dispatch.enabled", havingValue = "true", matchIfMissing = true)
+    public SimpleRabbitListenerContainerFactory orderedRabbitListenerContainerFactory(
+            ConnectionFactory connectionFactory, PricingProperties pricingProperties) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(jsonMessageConverter());
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setConcurrentConsumers(1);
+        factory.setMaxConcurrentConsumers(1);
+        factory.setPrefetchCount(pricingProperties.getListener().getDispatch().getMaxPrefetch());
+        return factory;
+    }
+
+    // ─── Shard Router Container Factory ──────────────────────────────────────
+    // Raw messages in batches: the router republishes them unchanged and the
+    // batch is acknowledged once the broker has confirmed every copy.
+    @Bean
+    @ConditionalOnProperty(name = "pricing.sharding.enabled", havingValue = "true")
+    public SimpleRabbitListenerContainerFactory shardRouterContainerFactory(
+            ConnectionFactory connectionFactory, PricingProperties pricingProperties) {
+        int batchSize = pricingProperties.getSharding().getRouterBatchSize();
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.AUTO);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setPrefetchCount(batchSize);
+        factory.setReceiveTimeout(50L);
+        return factory;
+    }
 }
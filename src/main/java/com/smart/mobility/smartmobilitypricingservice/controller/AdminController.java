@@ -1,17 +1,31 @@
 package com.smart.mobility.smartmobilitypricingservice.controller;
 
+import com.smart.mobility.smartmobilitypricingservice.dto.FareMatrixDTO;
+import com.smart.mobility.smartmobilitypricingservice.enums.TransportType;
 import com.smart.mobility.smartmobilitypricingservice.model.DiscountRule;
 import com.smart.mobility.smartmobilitypricingservice.model.FareSection;
+import com.smart.mobility.smartmobilitypricingservice.model.PenaltyFare;
+import com.smart.mobility.smartmobilitypricingservice.model.RepricingJob;
 import com.smart.mobility.smartmobilitypricingservice.model.TransportLine;
 import com.smart.mobility.smartmobilitypricingservice.model.Zone;
 import com.smart.mobility.smartmobilitypricingservice.repository.DiscountRuleRepository;
 import com.smart.mobility.smartmobilitypricingservice.repository.FareSectionRepository;
+import com.smart.mobility.smartmobilitypricingservice.repository.PenaltyFareRepository;
 import com.smart.mobility.smartmobilitypricingservice.repository.TransportLineRepository;
 import com.smart.mobility.smartmobilitypricingservice.repository.ZoneRepository;
+import com.smart.mobility.smartmobilitypricingservice.service.DiscountRuleEngine;
+import com.smart.mobility.smartmobilitypricingservice.service.FareNetworkService;
+import com.smart.mobility.smartmobilitypricingservice.service.RepricingJobService;
+import com.smart.mobility.smartmobilitypricingservice.service.UserContextCache;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -22,12 +36,19 @@ public class AdminController {
     private final TransportLineRepository transportLineRepository;
     private final FareSectionRepository fareSectionRepository;
     private final ZoneRepository zoneRepository;
+    private final PenaltyFareRepository penaltyFareRepository;
     private final DiscountRuleRepository discountRuleRepository;
+    private final FareNetworkService fareNetworkService;
+    private final DiscountRuleEngine discountRuleEngine;
+    private final UserContextCache userContextCache;
+    private final RepricingJobService repricingJobService;
 
     // --- Transport Line ---
     @PostMapping("/transport-lines")
     public ResponseEntity<TransportLine> createTransportLine(@RequestBody TransportLine transportLine) {
-        return ResponseEntity.ok(transportLineRepository.save(transportLine));
+        TransportLine saved = transportLineRepository.save(transportLine);
+        fareNetworkService.reload();
+        return ResponseEntity.ok(saved);
     }
 
     @GetMapping("/transport-lines")
@@ -38,6 +59,7 @@ public class AdminController {
     @DeleteMapping("/transport-lines/{id}")
     public ResponseEntity<Void> deleteTransportLine(@PathVariable Long id) {
         transportLineRepository.deleteById(id);
+        fareNetworkService.reload();
         return ResponseEntity.noContent().build();
     }
 
@@ -48,7 +70,34 @@ public class AdminController {
                 .map(existingLine -> {
                     existingLine.setName(transportLine.getName());
                     existingLine.setTransportType(transportLine.getTransportType());
-                    return ResponseEntity.ok(transportLineRepository.save(existingLine));
+                    TransportLine saved = transportLineRepository.save(existingLine);
+                    fareNetworkService.reload();
+                    return ResponseEntity.ok(saved);
+                })
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/transport-lines/{id}/fare-matrix")
+    public ResponseEntity<FareMatrixDTO> getFareMatrix(@PathVariable Long id) {
+        return fareNetworkService.fareMatrix(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // CSV export, one row per departure station, for diffing fare tables
+    @GetMapping(value = "/transport-lines/{id}/fare-matrix", produces = "text/csv")
+    public ResponseEntity<String> exportFareMatrix(@PathVariable Long id) {
+        return fareNetworkService.fareMatrix(id)
+                .map(matrix -> {
+                    StringBuilder csv = new StringBuilder("from\\to");
+                    matrix.getStations().forEach(station -> csv.append(',').append(station));
+                    csv.append('\n');
+                    for (int from = 0; from < matrix.getStations().size(); from++) {
+                        csv.append(matrix.getStations().get(from));
+                        matrix.getFares().get(from).forEach(fare -> csv.append(',').append(fare.toPlainString()));
+                        csv.append('\n');
+                    }
+                    return ResponseEntity.ok(csv.toString());
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -56,7 +105,9 @@ public class AdminController {
     // --- Fare Section ---
     @PostMapping("/fare-sections")
     public ResponseEntity<FareSection> createFareSection(@RequestBody FareSection fareSection) {
-        return ResponseEntity.ok(fareSectionRepository.save(fareSection));
+        FareSection saved = fareSectionRepository.save(fareSection);
+        fareNetworkService.reload();
+        return ResponseEntity.ok(saved);
     }
 
     @GetMapping("/fare-sections")
@@ -67,6 +118,7 @@ public class AdminController {
     @DeleteMapping("/fare-sections/{id}")
     public ResponseEntity<Void> deleteFareSection(@PathVariable Long id) {
         fareSectionRepository.deleteById(id);
+        fareNetworkService.reload();
         return ResponseEntity.noContent().build();
     }
 
@@ -79,7 +131,9 @@ public class AdminController {
                     existingSection.setSectionOrder(fareSection.getSectionOrder());
                     existingSection.setStationName(fareSection.getStationName());
                     existingSection.setZone(fareSection.getZone());
-                    return ResponseEntity.ok(fareSectionRepository.save(existingSection));
+                    FareSection saved = fareSectionRepository.save(existingSection);
+                    fareNetworkService.reload();
+                    return ResponseEntity.ok(saved);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -95,10 +149,75 @@ public class AdminController {
         return ResponseEntity.ok(zoneRepository.findAll());
     }
 
+    // --- Penalty Fare (per transport type, optional per-line override) ---
+    @PostMapping("/penalty-fares")
+    public ResponseEntity<PenaltyFare> createPenaltyFare(@RequestBody PenaltyFare penaltyFare) {
+        if (!normalizePenaltyFare(penaltyFare)) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (isDuplicatePenaltyFare(penaltyFare, null)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        PenaltyFare saved = penaltyFareRepository.save(penaltyFare);
+        fareNetworkService.reload();
+        return ResponseEntity.ok(saved);
+    }
+
+    @GetMapping("/penalty-fares")
+    public ResponseEntity<List<PenaltyFare>> getAllPenaltyFares() {
+        return ResponseEntity.ok(penaltyFareRepository.findAll());
+    }
+
+    @DeleteMapping("/penalty-fares/{id}")
+    public ResponseEntity<Void> deletePenaltyFare(@PathVariable Long id) {
+        penaltyFareRepository.deleteById(id);
+        fareNetworkService.reload();
+        return ResponseEntity.noContent().build();
+    }
+
+    @PutMapping("/penalty-fares/{id}")
+    public ResponseEntity<PenaltyFare> updatePenaltyFare(@PathVariable Long id,
+            @RequestBody PenaltyFare penaltyFare) {
+        if (!normalizePenaltyFare(penaltyFare)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return penaltyFareRepository.findById(id)
+                .map(existingFare -> {
+                    if (isDuplicatePenaltyFare(penaltyFare, id)) {
+                        return ResponseEntity.status(HttpStatus.CONFLICT).<PenaltyFare>build();
+                    }
+                    existingFare.setTransportType(penaltyFare.getTransportType());
+                    existingFare.setLineId(penaltyFare.getLineId());
+                    existingFare.setAmount(penaltyFare.getAmount());
+                    PenaltyFare saved = penaltyFareRepository.save(existingFare);
+                    fareNetworkService.reload();
+                    return ResponseEntity.ok(saved);
+                })
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Type de transport connu (ou ALL) et montant renseigné ; le type est enregistré sous son nom
+    private static boolean normalizePenaltyFare(PenaltyFare penaltyFare) {
+        TransportType type = TransportType.fromCode(penaltyFare.getTransportType());
+        if (type == null || penaltyFare.getAmount() == null || penaltyFare.getAmount().signum() < 0) {
+            return false;
+        }
+        penaltyFare.setTransportType(type.name());
+        return true;
+    }
+
+    // L'index unique (transport_type, line_id) laisse passer deux tarifs sans ligne (NULL)
+    private boolean isDuplicatePenaltyFare(PenaltyFare penaltyFare, Long id) {
+        return penaltyFareRepository.findByTransportTypeAndLineId(penaltyFare.getTransportType(),
+                penaltyFare.getLineId()).stream().anyMatch(existing -> !existing.getId().equals(id));
+    }
+
     // --- Discount Rule ---
     @PostMapping("/discount-rules")
     public ResponseEntity<DiscountRule> createDiscountRule(@RequestBody DiscountRule discountRule) {
-        return ResponseEntity.ok(discountRuleRepository.save(discountRule));
+        DiscountRule saved = discountRuleRepository.save(discountRule);
+        discountRuleEngine.reload();
+        return ResponseEntity.ok(saved);
     }
 
     @GetMapping("/discount-rules")
@@ -109,6 +228,7 @@ public class AdminController {
     @DeleteMapping("/discount-rules/{id}")
     public ResponseEntity<Void> deleteDiscountRule(@PathVariable Long id) {
         discountRuleRepository.deleteById(id);
+        discountRuleEngine.reload();
         return ResponseEntity.noContent().build();
     }
 
@@ -128,8 +248,71 @@ public class AdminController {
                     existingRule.setEndDay(discountRule.getEndDay());
                     existingRule.setStartDate(discountRule.getStartDate());
                     existingRule.setEndDate(discountRule.getEndDate());
-                    return ResponseEntity.ok(discountRuleRepository.save(existingRule));
+                    DiscountRule saved = discountRuleRepository.save(existingRule);
+                    discountRuleEngine.reload();
+                    return ResponseEntity.ok(saved);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
+
+    // --- Pricing Context Cache ---
+    @DeleteMapping("/cache/pricing-context/{userId}")
+    public ResponseEntity<Void> evictPricingContext(@PathVariable String userId) {
+        userContextCache.invalidate(userId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @DeleteMapping("/cache/pricing-context")
+    public ResponseEntity<Void> evictAllPricingContexts() {
+        userContextCache.invalidateAll();
+        return ResponseEntity.noContent().build();
+    }
+
+    // --- Repricing Jobs ---
+    @PostMapping("/repricing-jobs")
+    public ResponseEntity<RepricingJob> startRepricingJob(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        try {
+            return ResponseEntity.accepted().body(repricingJobService.start(from, to));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/repricing-jobs/{id}")
+    public ResponseEntity<RepricingJob> getRepricingJob(@PathVariable Long id) {
+        return repricingJobService.find(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/repricing-jobs/{id}/resume")
+    public ResponseEntity<RepricingJob> resumeRepricingJob(@PathVariable Long id) {
+        try {
+            return ResponseEntity.accepted().body(repricingJobService.resume(id));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @PostMapping("/repricing-jobs/{id}/cancel")
+    public ResponseEntity<RepricingJob> cancelRepricingJob(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(repricingJobService.cancel(id));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @GetMapping(value = "/repricing-jobs/{id}/report", produces = "text/csv")
+    public ResponseEntity<Resource> getRepricingReport(@PathVariable Long id) {
+        return repricingJobService.find(id)
+                .map(job -> new FileSystemResource(job.getReportFile()))
+                .filter(FileSystemResource::exists)
+                .<ResponseEntity<Resource>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
 }
@@ -1,28 +1,69 @@
 package com.smart.mobility.smartmobilitypricingservice.controller;
 
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingQuoteRequest;
 import com.smart.mobility.smartmobilitypricingservice.dto.PricingResponseDTO;
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingResultView;
 import com.smart.mobility.smartmobilitypricingservice.dto.TripCompletedEvent;
-import com.smart.mobility.smartmobilitypricingservice.model.PricingResult;
+import com.smart.mobility.smartmobilitypricingservice.service.BulkPricingService;
+import com.smart.mobility.smartmobilitypricingservice.service.PricingQuoteService;
 import com.smart.mobility.smartmobilitypricingservice.service.PricingService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 @RestController
 @RequestMapping("/api/pricing")
 @RequiredArgsConstructor
 public class PricingController {
 
     private final PricingService pricingService;
+    private final BulkPricingService bulkPricingService;
+    private final PricingQuoteService pricingQuoteService;
 
     @PostMapping("/calculate")
     public ResponseEntity<PricingResponseDTO> calculatePrice(@RequestBody TripCompletedEvent event) {
-        return ResponseEntity.ok(pricingService.calculateAndProcessTrip(event));
+        try {
+            return ResponseEntity.ok(pricingService.calculateAndProcessTrip(event));
+        } catch (DataIntegrityViolationException e) {
+            // Trajet tarifé en parallèle par une autre requête : on renvoie le résultat enregistré
+            PricingResponseDTO stored = pricingService.findPricedTrip(event.tripId());
+            if (stored == null) {
+                throw e;
+            }
+            return ResponseEntity.ok(stored);
+        }
+    }
+
+    /**
+     * Devis d'un trajet avant l'embarquement : ni audit, ni publication, ni
+     * effet sur le plafond journalier.
+     */
+    @PostMapping("/quote")
+    public ResponseEntity<PricingResponseDTO> quote(@RequestBody PricingQuoteRequest request) {
+        return ResponseEntity.ok(pricingQuoteService.quote(request));
+    }
+
+    /**
+     * Tarification en masse : trajets en NDJSON ou tableau JSON, une ligne
+     * NDJSON de résultat par trajet, écrite dès que son bloc est calculé.
+     */
+    @PostMapping(value = "/bulk", consumes = { MediaType.APPLICATION_NDJSON_VALUE,
+            MediaType.APPLICATION_JSON_VALUE }, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void calculatePrices(@RequestParam(defaultValue = "false") boolean dryRun, InputStream body,
+            HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        bulkPricingService.price(body, response.getOutputStream(), dryRun);
     }
 
     @GetMapping("/trip/{tripId}")
-    public ResponseEntity<PricingResult> getPricingByTripId(@PathVariable Long tripId) {
-        PricingResult result = pricingService.getPricingByTripId(tripId);
+    public ResponseEntity<PricingResultView> getPricingByTripId(@PathVariable Long tripId) {
+        PricingResultView result = pricingService.getPricingByTripId(tripId);
         return result != null ? ResponseEntity.ok(result) : ResponseEntity.notFound().build();
     }
 }
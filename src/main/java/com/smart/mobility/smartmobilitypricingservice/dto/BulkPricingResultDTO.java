@@ -0,0 +1,21 @@
+package com.smart.mobility.smartmobilitypricingservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Ligne de réponse de la tarification en masse : le prix du trajet, ou
+ * l'erreur qui a empêché de le calculer.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkPricingResultDTO {
+    private Long tripId;
+    private String userId;
+    private PricingResponseDTO pricing;
+    private String error;
+}
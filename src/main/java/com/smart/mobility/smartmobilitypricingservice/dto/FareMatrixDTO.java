@@ -0,0 +1,26 @@
+package com.smart.mobility.smartmobilitypricingservice.dto;
+
+import com.smart.mobility.smartmobilitypricingservice.enums.TransportType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Grille des prix de base d'une ligne : {@code fares.get(i).get(j)} est le
+ * prix de la station {@code stations.get(i)} à la station {@code stations.get(j)}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FareMatrixDTO {
+    private Long lineId;
+    private String name;
+    private TransportType transportType;
+    private List<String> stations;
+    private List<List<BigDecimal>> fares;
+}
@@ -0,0 +1,19 @@
+package com.smart.mobility.smartmobilitypricingservice.dto;
+
+import com.smart.mobility.smartmobilitypricingservice.enums.TransportType;
+import lombok.Builder;
+import java.time.LocalDateTime;
+
+/**
+ * Demande de devis : userId facultatif (tarif sans abonnement), départ
+ * immédiat si startTime est absent.
+ */
+@Builder
+public record PricingQuoteRequest(
+                String userId,
+                TransportType transportType,
+                Long transportLineId,
+                String startLocation,
+                String endLocation,
+                LocalDateTime startTime) {
+}
@@ -0,0 +1,37 @@
+package com.smart.mobility.smartmobilitypricingservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Audit d'un trajet tel que renvoyé par l'API : les remises appliquées sont
+ * rendues en JSON, quel que soit leur encodage en base.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PricingResultView {
+    private Long id;
+    private Long tripId;
+    private String userId;
+    private String transportType;
+    private Long transportLineId;
+    private String startLocation;
+    private String endLocation;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private Boolean mismatch;
+    private BigDecimal basePrice;
+    private BigDecimal discountApplied;
+    private BigDecimal finalAmount;
+    private String appliedDiscounts; // JSON string representing the list of applied discounts
+    private Boolean capReached;
+    private Long ruleSetVersion;
+    private LocalDateTime computedAt;
+}
@@ -0,0 +1,10 @@
+package com.smart.mobility.smartmobilitypricingservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Builder;
+
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record SubscriptionChangedEvent(
+        String userId) {
+}
@@ -1,5 +1,6 @@
 package com.smart.mobility.smartmobilitypricingservice.dto;
 
+import com.smart.mobility.smartmobilitypricingservice.enums.TransportType;
 import lombok.Builder;
 import java.time.LocalDateTime;
 
@@ -7,7 +8,7 @@ import java.time.LocalDateTime;
 public record TripCompletedEvent(
                 Long tripId,
                 String userId,
-                String transportType,
+                TransportType transportType,
                 Long transportLineId,
                 String startLocation,
                 String endLocation,
@@ -0,0 +1,8 @@
+package com.smart.mobility.smartmobilitypricingservice.enums;
+
+public enum RepricingJobStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED,
+    CANCELLED
+}
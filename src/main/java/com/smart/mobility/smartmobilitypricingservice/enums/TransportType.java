@@ -1,8 +1,35 @@
 package com.smart.mobility.smartmobilitypricingservice.enums;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+/**
+ * Types de transport. Un nouveau mode s'ajoute ici, avec son
+ * {@code FareStrategy} (prix de base).
+ */
 public enum TransportType {
     BUS,
     TER,
     BRT,
-    ALL
+    ALL;
+
+    private static final TransportType[] VALUES = values();
+
+    /**
+     * Résout un code transport (insensible à la casse), ou {@code null} si
+     * inconnu. Utilisé à la désérialisation des trajets : ni chaîne
+     * intermédiaire ni exception, un code inconnu donne un trajet de type
+     * inconnu au lieu d'un message rejeté.
+     */
+    @JsonCreator
+    public static TransportType fromCode(String code) {
+        if (code == null) {
+            return null;
+        }
+        for (TransportType type : VALUES) {
+            if (type.name().equalsIgnoreCase(code)) {
+                return type;
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,109 @@
+package com.smart.mobility.smartmobilitypricingservice.messaging;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-flight window with additive increase / multiplicative decrease.
+ * <p>
+ * The limit starts at {@code min} and grows by one each time a full window of
+ * messages completes within the target latency. A slow or failed message
+ * halves it, at most once per target latency so that a burst of slow messages
+ * already in flight counts as a single signal. {@link #acquire()} blocks while
+ * the window is full.
+ */
+public final class AdaptiveConcurrencyLimit {
+
+    private final int min;
+    private final int max;
+    private final long targetNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+
+    private int limit;
+    private int inFlight;
+    private int healthyStreak;
+    private long lastDecreaseNanos;
+
+    public AdaptiveConcurrencyLimit(int min, int max, long targetNanos) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("Invalid window bounds: min=" + min + ", max=" + max);
+        }
+        this.min = min;
+        this.max = max;
+        this.targetNanos = targetNanos;
+        this.limit = min;
+        this.lastDecreaseNanos = System.nanoTime() - targetNanos;
+    }
+
+    public void acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= limit) {
+                available.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release(long latencyNanos, boolean success) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (success && latencyNanos <= targetNanos) {
+                if (++healthyStreak >= limit && limit < max) {
+                    limit++;
+                    healthyStreak = 0;
+                }
+            } else {
+                healthyStreak = 0;
+                long now = System.nanoTime();
+                if (now - lastDecreaseNanos >= targetNanos) {
+                    limit = Math.max(min, limit / 2);
+                    lastDecreaseNanos = now;
+                }
+            }
+            if (inFlight < limit) {
+                available.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Frees the slot of a message that was handed back without being
+     * processed; its latency says nothing about the downstream services.
+     */
+    public void cancel() {
+        lock.lock();
+        try {
+            inFlight--;
+            if (inFlight < limit) {
+                available.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int limit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.smart.mobility.smartmobilitypricingservice.messaging;
+
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.dto.TripCompletedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+/**
+ * Concurrent processing of trip.completed messages that keeps the order of
+ * each user's trips.
+ * <p>
+ * Messages are hashed by user onto a fixed set of serial lanes: a user's trips
+ * are always priced one after the other, in delivery order, while different
+ * lanes run in parallel on the worker executor. The number of messages in
+ * flight is bounded by an {@link AdaptiveConcurrencyLimit}; when the window is
+ * full, {@link #dispatch} blocks the consumer thread, which stops it from
+ * taking more deliveries from the broker.
+ * <p>
+ * A failed trip is requeued and its user is parked on the lane: the user's
+ * later trips are requeued unprocessed until the failed trip is redelivered
+ * (or the park times out), so they are never priced before it.
+ */
+@Component
+@ConditionalOnProperty(name = "pricing.listener.dispatch.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class OrderedTripDispatcher {
+
+    // Messages processed by a lane before it yields its worker to the other lanes
+    private static final int LANE_BURST = 32;
+
+    private final Executor executor;
+    private final TripPricingHandler tripPricingHandler;
+    private final AdaptiveConcurrencyLimit window;
+    private final long parkTimeoutNanos;
+    private final Lane[] lanes;
+
+    public OrderedTripDispatcher(@Qualifier("pricingDispatchExecutor") Executor executor,
+            TripPricingHandler tripPricingHandler, MeterRegistry meterRegistry,
+            PricingProperties pricingProperties) {
+        PricingProperties.Listener.Dispatch dispatch = pricingProperties.getListener().getDispatch();
+        this.executor = executor;
+        this.tripPricingHandler = tripPricingHandler;
+        this.window = new AdaptiveConcurrencyLimit(dispatch.getMinPrefetch(), dispatch.getMaxPrefetch(),
+                dispatch.getTargetLatency().toNanos());
+        this.parkTimeoutNanos = dispatch.getParkTimeout().toNanos();
+        this.lanes = new Lane[dispatch.getLanes()];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane();
+        }
+        Gauge.builder("pricing.listener.window", window, AdaptiveConcurrencyLimit::limit)
+                .description("Current limit of trip messages in flight")
+                .register(meterRegistry);
+        Gauge.builder("pricing.listener.in-flight", window, AdaptiveConcurrencyLimit::inFlight)
+                .description("Trip messages received and not yet acknowledged")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the message on its user's lane, waiting first for room in the
+     * in-flight window. Exactly one of the acknowledgement callbacks is invoked
+     * once the message has been processed.
+     */
+    public void dispatch(TripCompletedEvent event, Acknowledgement acknowledgement) throws InterruptedException {
+        window.acquire();
+        Lane lane = lanes[laneOf(event.userId())];
+        lane.execute(() -> process(lane, event, acknowledgement));
+    }
+
+    int laneOf(String userId) {
+        return Math.floorMod(userId == null ? 0 : userId.hashCode(), lanes.length);
+    }
+
+    AdaptiveConcurrencyLimit window() {
+        return window;
+    }
+
+    private void process(Lane lane, TripCompletedEvent event, Acknowledgement acknowledgement) {
+        if (lane.holdsBack(event)) {
+            // An earlier trip of the user failed and has not been redelivered yet
+            window.cancel();
+            settle(event, acknowledgement, false);
+            return;
+        }
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            tripPricingHandler.handle(event);
+            success = true;
+        } catch (Exception e) {
+            // Already logged by the handler; redelivered as with the plain listener
+        } finally {
+            window.release(System.nanoTime() - start, success);
+        }
+        if (!success) {
+            lane.park(event);
+        }
+        settle(event, acknowledgement, success);
+    }
+
+    private static void settle(TripCompletedEvent event, Acknowledgement acknowledgement, boolean success) {
+        try {
+            if (success) {
+                acknowledgement.ack();
+            } else {
+                acknowledgement.requeue();
+            }
+        } catch (Exception e) {
+            // Channel closed: the broker redelivers every unacknowledged message
+            log.warn("Could not acknowledge TripCompletedEvent for tripId: {}", event.tripId(), e);
+        }
+    }
+
+    /**
+     * Settles a delivery on the broker.
+     */
+    public interface Acknowledgement {
+
+        void ack() throws Exception;
+
+        void requeue() throws Exception;
+    }
+
+    /**
+     * Serial executor: runs its tasks one at a time, in submission order, on the
+     * shared worker executor.
+     */
+    private final class Lane implements Runnable {
+
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private boolean scheduled;
+        // Users whose trip failed, with that trip: only read and written by the lane's own tasks
+        private final Map<String, Parked> parked = new HashMap<>();
+
+        void park(TripCompletedEvent event) {
+            parked.put(event.userId(), new Parked(event.tripId(), System.nanoTime() + parkTimeoutNanos));
+        }
+
+        /**
+         * Whether the trip must wait for the redelivery of an earlier failed
+         * trip of its user; that redelivery, or the timeout, lifts the park.
+         */
+        boolean holdsBack(TripCompletedEvent event) {
+            Parked park = parked.get(event.userId());
+            if (park == null) {
+                return false;
+            }
+            if (Objects.equals(park.tripId(), event.tripId()) || System.nanoTime() - park.untilNanos() >= 0) {
+                parked.remove(event.userId());
+                return false;
+            }
+            return true;
+        }
+
+        void execute(Runnable task) {
+            synchronized (this) {
+                tasks.add(task);
+                if (scheduled) {
+                    return;
+                }
+                scheduled = true;
+            }
+            executor.execute(this);
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < LANE_BURST; i++) {
+                Runnable task;
+                synchronized (this) {
+                    task = tasks.poll();
+                    if (task == null) {
+                        scheduled = false;
+                        return;
+                    }
+                }
+                task.run();
+            }
+            executor.execute(this);
+        }
+    }
+
+    private record Parked(Long tripId, long untilNanos) {
+    }
+}
@@ -0,0 +1,39 @@
+package com.smart.mobility.smartmobilitypricingservice.messaging;
+
+import com.rabbitmq.client.Channel;
+import com.smart.mobility.smartmobilitypricingservice.config.RabbitMQConfig;
+import com.smart.mobility.smartmobilitypricingservice.dto.TripCompletedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+
+// Single consumer handing each message to the ordered dispatcher; messages are
+// acknowledged individually once priced, so a slow trip never holds back the
+// acknowledgement of other users' trips.
+@Component
+@ConditionalOnExpression("!${pricing.sharding.enabled:false} && !${pricing.listener.batch.enabled:false}"
+        + " && ${pricing.listener.dispatch.enabled:true}")
+@RequiredArgsConstructor
+public class OrderedTripEventListener {
+
+    private final OrderedTripDispatcher orderedTripDispatcher;
+
+    @RabbitListener(queues = RabbitMQConfig.PRICING_QUEUE, containerFactory = "orderedRabbitListenerContainerFactory")
+    public void handleTripCompletedEvent(TripCompletedEvent event, Channel channel,
+            @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag) throws InterruptedException {
+        orderedTripDispatcher.dispatch(event, new OrderedTripDispatcher.Acknowledgement() {
+            @Override
+            public void ack() throws Exception {
+                channel.basicAck(deliveryTag, false);
+            }
+
+            @Override
+            public void requeue() throws Exception {
+                channel.basicNack(deliveryTag, false, true);
+            }
+        });
+    }
+}
@@ -0,0 +1,63 @@
+package com.smart.mobility.smartmobilitypricingservice.messaging;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.dto.TripPricedEvent;
+import com.smart.mobility.smartmobilitypricingservice.model.OutboxEvent;
+import com.smart.mobility.smartmobilitypricingservice.repository.OutboxEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Écrit les TripPricedEvent dans l'outbox, dans la transaction de
+ * tarification : l'événement n'existe que si la tarification est validée.
+ * La publication vers RabbitMQ est faite par {@link OutboxRelay}.
+ */
+@Component
+@ConditionalOnProperty(name = "pricing.outbox.enabled", havingValue = "true")
+@Slf4j
+public class OutboxPricingEventPublisher implements PricingEventPublisher {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+    private final int buckets;
+
+    public OutboxPricingEventPublisher(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper,
+            PricingProperties pricingProperties) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+        this.buckets = pricingProperties.getOutbox().getBuckets();
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publishTripPricedEvent(TripPricedEvent event) {
+        log.debug("Queueing TripPricedEvent for tripId {} in the outbox", event.tripId());
+        outboxEventRepository.save(OutboxEvent.builder()
+                .tripId(event.tripId())
+                .userId(event.userId())
+                .bucket(bucketOf(event.userId(), buckets))
+                .payload(serialize(event))
+                .build());
+    }
+
+    /**
+     * Partition de relais d'un utilisateur.
+     */
+    static int bucketOf(String userId, int buckets) {
+        return Math.floorMod(userId.hashCode(), buckets);
+    }
+
+    private String serialize(TripPricedEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            // Fait échouer la transaction : pas de tarification sans événement
+            throw new IllegalStateException("Cannot serialize TripPricedEvent for trip " + event.tripId(), e);
+        }
+    }
+}
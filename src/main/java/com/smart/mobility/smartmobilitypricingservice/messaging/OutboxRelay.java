@@ -0,0 +1,172 @@
+package com.smart.mobility.smartmobilitypricingservice.messaging;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.config.RabbitMQConfig;
+import com.smart.mobility.smartmobilitypricingservice.dto.TripPricedEvent;
+import com.smart.mobility.smartmobilitypricingservice.model.OutboxBucket;
+import com.smart.mobility.smartmobilitypricingservice.model.OutboxEvent;
+import com.smart.mobility.smartmobilitypricingservice.repository.OutboxBucketRepository;
+import com.smart.mobility.smartmobilitypricingservice.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Relaie l'outbox vers RabbitMQ par lots, avec confirmations de publication.
+ * Les événements sont répartis en partitions par utilisateur ; une partition
+ * n'est relayée que par une instance à la fois (verrou SKIP LOCKED) et dans
+ * l'ordre d'insertion, ce qui préserve l'ordre par utilisateur. Un lot n'est
+ * marqué publié qu'une fois confirmé par le broker : en cas d'échec il est
+ * republié, avec le même messageId pour la déduplication côté Billing.
+ */
+@Component
+@ConditionalOnProperty(name = "pricing.outbox.enabled", havingValue = "true")
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxBucketRepository outboxBucketRepository;
+    private final RabbitTemplate rabbitTemplate;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final PricingProperties.Outbox properties;
+    private final Counter publishedCounter;
+
+    private volatile boolean bucketsInitialized;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository, OutboxBucketRepository outboxBucketRepository,
+            RabbitTemplate rabbitTemplate, ObjectMapper objectMapper, PlatformTransactionManager transactionManager,
+            Clock clock, MeterRegistry meterRegistry, PricingProperties pricingProperties) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.outboxBucketRepository = outboxBucketRepository;
+        this.rabbitTemplate = rabbitTemplate;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.properties = pricingProperties.getOutbox();
+        this.publishedCounter = Counter.builder("pricing.outbox.published")
+                .description("TripPricedEvents relayed from the outbox and confirmed by the broker")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${pricing.outbox.poll-interval-ms:200}")
+    public void relay() {
+        if (!bucketsInitialized) {
+            initializeBuckets();
+        }
+        for (int bucket = 0; bucket < properties.getBuckets(); bucket++) {
+            try {
+                int published;
+                do {
+                    published = relayBucket(bucket);
+                } while (published == properties.getBatchSize());
+            } catch (Exception e) {
+                log.warn("Outbox relay failed for bucket {}, will retry", bucket, e);
+            }
+        }
+    }
+
+    /**
+     * Publie un lot de la partition, si aucune autre instance ne la détient.
+     *
+     * @return nombre d'événements publiés
+     */
+    private int relayBucket(int bucket) {
+        Integer published = transactionTemplate.execute(status -> {
+            if (outboxBucketRepository.tryLock(bucket).isEmpty()) {
+                return 0;
+            }
+            List<OutboxEvent> pending = outboxEventRepository.findPending(bucket,
+                    PageRequest.of(0, properties.getBatchSize()));
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            publishAndConfirm(pending);
+            outboxEventRepository.markPublished(pending.stream().map(OutboxEvent::getId).toList(),
+                    LocalDateTime.now(clock));
+            return pending.size();
+        });
+        publishedCounter.increment(published);
+        return published;
+    }
+
+    private void publishAndConfirm(List<OutboxEvent> pending) {
+        List<TripPricedEvent> events = new ArrayList<>(pending.size());
+        for (OutboxEvent outboxEvent : pending) {
+            events.add(deserialize(outboxEvent));
+        }
+        rabbitTemplate.invoke(operations -> {
+            for (TripPricedEvent event : events) {
+                operations.convertAndSend(RabbitMQConfig.TRIP_EXCHANGE, RabbitMQConfig.TRIP_PRICED_ROUTING_KEY,
+                        event, message -> {
+                            message.getMessageProperties().setMessageId(messageId(event));
+                            return message;
+                        });
+            }
+            operations.waitForConfirmsOrDie(properties.getConfirmTimeout().toMillis());
+            return null;
+        });
+        log.debug("Relayed {} TripPricedEvents from the outbox", events.size());
+    }
+
+    /**
+     * Identifiant stable d'un événement, identique à chaque republication.
+     */
+    static String messageId(TripPricedEvent event) {
+        return "trip-priced-" + event.tripId();
+    }
+
+    private TripPricedEvent deserialize(OutboxEvent outboxEvent) {
+        try {
+            return objectMapper.readValue(outboxEvent.getPayload(), TripPricedEvent.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Corrupted outbox payload for trip " + outboxEvent.getTripId(), e);
+        }
+    }
+
+    /**
+     * Crée les lignes de verrou manquantes (plusieurs instances peuvent le
+     * faire en même temps).
+     */
+    private void initializeBuckets() {
+        try {
+            List<OutboxBucket> missing = IntStream.range(0, properties.getBuckets())
+                    .filter(bucket -> !outboxBucketRepository.existsById(bucket))
+                    .mapToObj(OutboxBucket::new)
+                    .toList();
+            if (!missing.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> outboxBucketRepository.saveAll(missing));
+            }
+            bucketsInitialized = true;
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Outbox buckets created concurrently by another instance");
+        }
+    }
+
+    /**
+     * Purge des événements publiés au-delà de la durée de conservation.
+     */
+    @Scheduled(cron = "${pricing.outbox.cleanup-cron:0 */15 * * * *}")
+    public void deletePublished() {
+        LocalDateTime cutoff = LocalDateTime.now(clock).minus(properties.getRetention());
+        Integer deleted = transactionTemplate.execute(status -> outboxEventRepository.deletePublishedBefore(cutoff));
+        log.info("Outbox cleanup: deleted {} published events", deleted);
+    }
+}
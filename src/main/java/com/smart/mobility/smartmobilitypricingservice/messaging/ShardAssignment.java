@@ -0,0 +1,62 @@
+package com.smart.mobility.smartmobilitypricingservice.messaging;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Placement of users on shards, and of shards on instances.
+ * <p>
+ * A user always maps to the same shard. Shards are spread over the live
+ * instances by rendezvous hashing: each shard goes to the instance with the
+ * highest score for it, so that when an instance joins or leaves only the
+ * shards it gains or owned move, and every instance computes the same
+ * placement from the same membership without coordination.
+ */
+public final class ShardAssignment {
+
+    private ShardAssignment() {
+    }
+
+    public static int shardOf(String userId, int shards) {
+        return (int) Long.remainderUnsigned(mix(userId == null ? 0 : userId.hashCode()), shards);
+    }
+
+    /**
+     * Shards owned by {@code self} among {@code instances} (which may or may not
+     * contain {@code self} yet), in increasing order.
+     */
+    public static List<Integer> ownedShards(String self, Collection<String> instances, int shards) {
+        List<Integer> owned = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            long selfScore = score(self, shard);
+            boolean owner = true;
+            for (String instance : instances) {
+                if (instance.equals(self)) {
+                    continue;
+                }
+                long score = score(instance, shard);
+                // Ties broken on the instance id, identically on every instance
+                if (score > selfScore || (score == selfScore && instance.compareTo(self) > 0)) {
+                    owner = false;
+                    break;
+                }
+            }
+            if (owner) {
+                owned.add(shard);
+            }
+        }
+        return owned;
+    }
+
+    private static long score(String instance, int shard) {
+        return mix(instance.hashCode() * 0x9E3779B97F4A7C15L + shard);
+    }
+
+    // SplitMix64 finalizer: spreads the bits of neighbouring hash codes
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,27 @@
+package com.smart.mobility.smartmobilitypricingservice.messaging;
+
+import com.smart.mobility.smartmobilitypricingservice.dto.SubscriptionChangedEvent;
+import com.smart.mobility.smartmobilitypricingservice.service.UserContextCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConditionalOnProperty(name = "pricing.context-cache.invalidation.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class SubscriptionChangedListener {
+
+    private final UserContextCache userContextCache;
+
+    // Queue of this instance only (see RabbitMQConfig.subscriptionChangedQueue)
+    @RabbitListener(queues = "#{subscriptionChangedQueue.name}")
+    public void handleSubscriptionChangedEvent(SubscriptionChangedEvent event) {
+        log.info("Received SubscriptionChangedEvent for user: {}", event.userId());
+        if (event.userId() != null) {
+            userContextCache.invalidate(event.userId());
+        }
+    }
+}
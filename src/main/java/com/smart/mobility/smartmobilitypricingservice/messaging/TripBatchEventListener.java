@@ -0,0 +1,34 @@
+package com.smart.mobility.smartmobilitypricingservice.messaging;
+
+import com.smart.mobility.smartmobilitypricingservice.config.RabbitMQConfig;
+import com.smart.mobility.smartmobilitypricingservice.dto.TripCompletedEvent;
+import com.smart.mobility.smartmobilitypricingservice.service.PricingService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+@ConditionalOnExpression("!${pricing.sharding.enabled:false} && ${pricing.listener.batch.enabled:false}")
+@RequiredArgsConstructor
+@Slf4j
+public class TripBatchEventListener {
+
+    private final PricingService pricingService;
+
+    @RabbitListener(queues = RabbitMQConfig.PRICING_QUEUE, containerFactory = "batchRabbitListenerContainerFactory")
+    public void handleTripCompletedEvents(List<TripCompletedEvent> events) {
+        log.info("Received batch of {} TripCompletedEvents", events.size());
+        try {
+            pricingService.calculateAndProcessTrips(events);
+        } catch (Exception e) {
+            log.error("Error processing batch of {} TripCompletedEvents (first tripId: {})", events.size(),
+                    events.isEmpty() ? null : events.get(0).tripId(), e);
+            // The whole batch is rejected and redelivered
+            throw e;
+        }
+    }
+}
@@ -1,30 +1,23 @@
 package com.smart.mobility.smartmobilitypricingservice.messaging;
 
-import com.smart.mobility.smartmobilitypricingservice.service.PricingService;
 import com.smart.mobility.smartmobilitypricingservice.config.RabbitMQConfig;
 import com.smart.mobility.smartmobilitypricingservice.dto.TripCompletedEvent;
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.stereotype.Component;
 
+// Plain one-message-at-a-time listener, used when sharding, the batch and the ordered dispatch listeners are all disabled
 @Component
+@ConditionalOnExpression("!${pricing.sharding.enabled:false} && !${pricing.listener.batch.enabled:false}"
+        + " && !${pricing.listener.dispatch.enabled:true}")
 @RequiredArgsConstructor
-@Slf4j
 public class TripEventListener {
 
-    private final PricingService pricingService;
+    private final TripPricingHandler tripPricingHandler;
 
     @RabbitListener(queues = RabbitMQConfig.PRICING_QUEUE)
     public void handleTripCompletedEvent(TripCompletedEvent event) {
-        log.info("Received TripCompletedEvent for tripId: {}", event.tripId());
-        try {
-            pricingService.calculateAndProcessTrip(event);
-        } catch (Exception e) {
-            log.error("Error processing TripCompletedEvent for tripId: {}", event.tripId(), e);
-            // In a production environment, we would use a dead-letter queue or retry
-            // mechanism here
-            throw e;
-        }
+        tripPricingHandler.handle(event);
     }
 }
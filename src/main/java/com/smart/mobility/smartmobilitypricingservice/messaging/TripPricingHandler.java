@@ -0,0 +1,42 @@
+package com.smart.mobility.smartmobilitypricingservice.messaging;
+
+import com.smart.mobility.smartmobilitypricingservice.dto.TripCompletedEvent;
+import com.smart.mobility.smartmobilitypricingservice.service.PricingService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pricing of a single trip.completed message, shared by the per-message
+ * listeners. Throws when the message must be redelivered.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TripPricingHandler {
+
+    private final PricingService pricingService;
+
+    public void handle(TripCompletedEvent event) {
+        log.info("Received TripCompletedEvent for tripId: {}", event.tripId());
+        try {
+            pricingService.calculateAndProcessTrip(event);
+        } catch (DuplicateKeyException e) {
+            // Trip key committed by another pricing, which published the result; its audit may be written later
+            log.info("Trip {} was already priced and published, duplicate delivery dropped", event.tripId());
+        } catch (DataIntegrityViolationException e) {
+            // Same trip priced concurrently elsewhere: the unique trip_id index rejected this duplicate
+            if (pricingService.findPricedTrip(event.tripId()) == null) {
+                throw e;
+            }
+            log.info("Trip {} was priced concurrently, duplicate delivery dropped", event.tripId());
+        } catch (Exception e) {
+            log.error("Error processing TripCompletedEvent for tripId: {}", event.tripId(), e);
+            // In a production environment, we would use a dead-letter queue or retry
+            // mechanism here
+            throw e;
+        }
+    }
+}
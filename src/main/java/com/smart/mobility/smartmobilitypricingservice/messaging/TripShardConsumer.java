@@ -0,0 +1,159 @@
+package com.smart.mobility.smartmobilitypricingservice.messaging;
+
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.config.RabbitMQConfig;
+import com.smart.mobility.smartmobilitypricingservice.dto.TripCompletedEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.rabbit.config.RetryInterceptorBuilder;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.DirectMessageListenerContainer;
+import org.springframework.amqp.rabbit.retry.RepublishMessageRecoverer;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.cloud.client.serviceregistry.Registration;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Consumes the shard queues this instance owns.
+ * <p>
+ * Ownership is recomputed from the Eureka instances of the service: shards
+ * are added to or removed from the listener container as instances join or
+ * leave. Each shard queue has one consumer thread, so a user's trips are
+ * priced in order, and shards run in parallel. The queues being
+ * single-active-consumer, two instances briefly disagreeing about an owner
+ * (stale registry) never process the same shard at once: the second consumer
+ * waits until the first one is cancelled.
+ * <p>
+ * A failing trip is retried in place with a backoff (the shard waits, keeping
+ * the user's order), then republished to the dead-letter queue and
+ * acknowledged, so a poison message never blocks its shard.
+ */
+@Component
+@ConditionalOnProperty(name = "pricing.sharding.enabled", havingValue = "true")
+@Slf4j
+public class TripShardConsumer implements SmartLifecycle {
+
+    private final ConnectionFactory connectionFactory;
+    private final MessageConverter messageConverter;
+    private final RabbitTemplate rabbitTemplate;
+    private final TripPricingHandler tripPricingHandler;
+    private final DiscoveryClient discoveryClient;
+    private final String serviceId;
+    private final String instanceId;
+    private final PricingProperties.Sharding properties;
+
+    private volatile Set<String> ownedQueues = Set.of();
+    private volatile boolean running;
+    private DirectMessageListenerContainer container;
+
+    public TripShardConsumer(ConnectionFactory connectionFactory, MessageConverter messageConverter,
+            RabbitTemplate rabbitTemplate, TripPricingHandler tripPricingHandler, DiscoveryClient discoveryClient,
+            ObjectProvider<Registration> registration, @Value("${spring.application.name}") String serviceId,
+            MeterRegistry meterRegistry, PricingProperties pricingProperties) {
+        this.connectionFactory = connectionFactory;
+        this.messageConverter = messageConverter;
+        this.rabbitTemplate = rabbitTemplate;
+        this.tripPricingHandler = tripPricingHandler;
+        this.discoveryClient = discoveryClient;
+        this.serviceId = serviceId;
+        Registration self = registration.getIfAvailable();
+        // Not registered (discovery disabled): unknown to the others, the instance owns every shard
+        this.instanceId = self != null && self.getInstanceId() != null ? self.getInstanceId()
+                : serviceId + ":" + UUID.randomUUID();
+        this.properties = pricingProperties.getSharding();
+        Gauge.builder("pricing.sharding.owned", this, consumer -> consumer.ownedQueues.size())
+                .description("Trip shard queues consumed by this instance")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public synchronized void start() {
+        container = new DirectMessageListenerContainer(connectionFactory);
+        container.setConsumersPerQueue(1);
+        container.setPrefetchCount(properties.getPrefetch());
+        container.setAcknowledgeMode(AcknowledgeMode.AUTO);
+        // Single active consumer: a message requeued forever would stall the whole shard
+        container.setDefaultRequeueRejected(false);
+        container.setAdviceChain(RetryInterceptorBuilder.stateless()
+                .maxRetries(properties.getMaxRetries())
+                .backOffOptions(properties.getRetryInitialInterval().toMillis(), 2.0,
+                        properties.getRetryMaxInterval().toMillis())
+                .recoverer(new RepublishMessageRecoverer(rabbitTemplate, "", RabbitMQConfig.SHARD_DEAD_LETTER_QUEUE))
+                .build());
+        container.setMessageListener(message -> {
+            message.getMessageProperties().setInferredArgumentType(TripCompletedEvent.class);
+            tripPricingHandler.handle((TripCompletedEvent) messageConverter.fromMessage(message));
+        });
+        container.afterPropertiesSet();
+        container.start();
+        running = true;
+        rebalance();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (container != null) {
+            container.stop();
+            container.destroy();
+            container = null;
+        }
+        ownedQueues = Set.of();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Scheduled(fixedDelayString = "${pricing.sharding.rebalance-interval-ms:15000}")
+    public synchronized void rebalance() {
+        if (!running) {
+            return;
+        }
+        List<String> instances;
+        try {
+            instances = discoveryClient.getInstances(serviceId).stream()
+                    .map(ServiceInstance::getInstanceId)
+                    .filter(Objects::nonNull)
+                    .toList();
+        } catch (Exception e) {
+            log.warn("Could not list {} instances, keeping shards {}", serviceId, ownedQueues, e);
+            return;
+        }
+        Set<String> owned = new LinkedHashSet<>();
+        for (int shard : ShardAssignment.ownedShards(instanceId, instances, properties.getShards())) {
+            owned.add(RabbitMQConfig.shardQueue(shard));
+        }
+        String[] released = ownedQueues.stream().filter(queue -> !owned.contains(queue)).toArray(String[]::new);
+        String[] acquired = owned.stream().filter(queue -> !ownedQueues.contains(queue)).toArray(String[]::new);
+        if (released.length == 0 && acquired.length == 0) {
+            return;
+        }
+        if (released.length > 0) {
+            container.removeQueueNames(released);
+        }
+        if (acquired.length > 0) {
+            container.addQueueNames(acquired);
+        }
+        ownedQueues = owned;
+        log.info("Trip shards rebalanced over {} registered instances: {} owned, released {}, acquired {}",
+                instances.size(), owned.size(), List.of(released), List.of(acquired));
+    }
+}
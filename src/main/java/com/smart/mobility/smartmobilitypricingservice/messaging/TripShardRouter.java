@@ -0,0 +1,61 @@
+package com.smart.mobility.smartmobilitypricingservice.messaging;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.config.RabbitMQConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.List;
+
+// Moves trip.completed messages from the router queue to their user's shard
+// queue, unchanged. The router queue has a single active consumer, so messages
+// are forwarded in delivery order; a batch is acknowledged only once the broker
+// has confirmed every copy, and is forwarded again if it fails.
+@Component
+@ConditionalOnProperty(name = "pricing.sharding.enabled", havingValue = "true")
+@Slf4j
+public class TripShardRouter {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final ObjectMapper objectMapper;
+    private final PricingProperties.Sharding properties;
+
+    public TripShardRouter(RabbitTemplate rabbitTemplate, ObjectMapper objectMapper,
+            PricingProperties pricingProperties) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.objectMapper = objectMapper;
+        this.properties = pricingProperties.getSharding();
+    }
+
+    @RabbitListener(queues = RabbitMQConfig.SHARD_ROUTER_QUEUE, containerFactory = "shardRouterContainerFactory")
+    public void route(List<Message> messages) {
+        rabbitTemplate.invoke(operations -> {
+            for (Message message : messages) {
+                operations.send(properties.getExchange(), String.valueOf(shardOf(message)), message);
+            }
+            operations.waitForConfirmsOrDie(properties.getConfirmTimeout().toMillis());
+            return null;
+        });
+    }
+
+    int shardOf(Message message) {
+        String userId = null;
+        try {
+            JsonNode userIdNode = objectMapper.readTree(message.getBody()).get("userId");
+            if (userIdNode != null && !userIdNode.isNull()) {
+                userId = userIdNode.asText();
+            }
+        } catch (IOException e) {
+            // Unreadable: the shard consumer rejects it the same way the plain listener would
+            log.warn("Could not read userId of a TripCompletedEvent, routing it as a trip without user", e);
+        }
+        return ShardAssignment.shardOf(userId, properties.getShards());
+    }
+}
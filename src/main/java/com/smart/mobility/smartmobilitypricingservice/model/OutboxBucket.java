@@ -0,0 +1,23 @@
+package com.smart.mobility.smartmobilitypricingservice.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Verrou d'une partition du relais de l'outbox : une seule instance relaie
+ * une partition à la fois.
+ */
+@Entity
+@Table(name = "pricing_outbox_buckets")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxBucket {
+
+    @Id
+    private Integer bucket;
+}
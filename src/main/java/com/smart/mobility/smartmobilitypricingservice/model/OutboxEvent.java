@@ -0,0 +1,45 @@
+package com.smart.mobility.smartmobilitypricingservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "pricing_outbox", indexes = {
+        @Index(name = "idx_pricing_outbox_pending", columnList = "bucket, published_at, id") })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OutboxEvent {
+
+    // Pooled sequence, as for pricing_results, so outbox inserts are JDBC-batched
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pricing_outbox_seq")
+    @SequenceGenerator(name = "pricing_outbox_seq", sequenceName = "pricing_outbox_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "trip_id", nullable = false)
+    private Long tripId;
+
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+
+    @Column(nullable = false)
+    private Integer bucket; // relay partition derived from userId (per-user ordering)
+
+    @Column(nullable = false, columnDefinition = "JSON")
+    private String payload; // serialized TripPricedEvent
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "published_at")
+    private LocalDateTime publishedAt;
+}
@@ -0,0 +1,47 @@
+package com.smart.mobility.smartmobilitypricingservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Tarif de pénalité (trajet hors ligne validée) par type de transport, ou pour
+ * une ligne précise lorsque {@code lineId} est renseigné.
+ */
+@Entity
+@Table(name = "penalty_fares", uniqueConstraints = @UniqueConstraint(name = "uk_penalty_fares_type_line",
+        columnNames = { "transport_type", "line_id" }))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PenaltyFare {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "transport_type", length = 10, nullable = false)
+    private String transportType; // BUS, BRT, TER, ALL (types inconnus)
+
+    @Column(name = "line_id")
+    private Long lineId; // null : tarif du type de transport
+
+    @Column(precision = 10, scale = 2, nullable = false)
+    private BigDecimal amount;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -5,21 +5,26 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import org.hibernate.annotations.CreationTimestamp;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "pricing_results")
+// Partitionnée par mois de computed_at (db/partition-pricing-results.sql) : l'unicité
+// de trip_id est portée par pricing_trip_keys
+@Table(name = "pricing_results", indexes = {
+        @Index(name = "idx_pricing_results_trip_id", columnList = "trip_id"),
+        @Index(name = "idx_pricing_results_computed_at", columnList = "computed_at") })
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class PricingResult {
 
+    // Pooled sequence (table-backed on MySQL) so audit inserts can be JDBC-batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pricing_results_seq")
+    @SequenceGenerator(name = "pricing_results_seq", sequenceName = "pricing_results_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "trip_id", nullable = false)
@@ -31,6 +36,25 @@ public class PricingResult {
     @Column(name = "transport_type", length = 10, nullable = false)
     private String transportType;
 
+    // Données du trajet, conservées pour pouvoir le re-tarifer (null avant leur ajout)
+    @Column(name = "transport_line_id")
+    private Long transportLineId;
+
+    @Column(name = "start_location")
+    private String startLocation;
+
+    @Column(name = "end_location")
+    private String endLocation;
+
+    @Column(name = "start_time")
+    private LocalDateTime startTime;
+
+    @Column(name = "end_time")
+    private LocalDateTime endTime;
+
+    @Column(name = "mismatch")
+    private Boolean mismatch;
+
     @Column(name = "base_price", precision = 10, scale = 2, nullable = false)
     private BigDecimal basePrice;
 
@@ -40,10 +64,28 @@ public class PricingResult {
     @Column(name = "final_amount", precision = 10, scale = 2, nullable = false)
     private BigDecimal finalAmount;
 
+    // Lignes antérieures à l'encodage compact, ou remises qu'il ne peut pas représenter
     @Column(name = "applied_discounts", columnDefinition = "JSON")
     private String appliedDiscounts; // JSON string representing the list of applied discounts
 
-    @CreationTimestamp
+    // Remises appliquées, encodées par AppliedDiscountCodec
+    @Column(name = "applied_discount_codes", length = 1024)
+    private byte[] appliedDiscountCodes;
+
+    @Column(name = "cap_reached")
+    private Boolean capReached;
+
+    @Column(name = "rule_set_version")
+    private Long ruleSetVersion; // version of the compiled discount rule set used
+
+    // Horodatage de la réservation du trajet (pricing_trip_keys), reporté à la construction de l'audit
     @Column(name = "computed_at", updatable = false)
     private LocalDateTime computedAt;
+
+    @PrePersist
+    void defaultComputedAt() {
+        if (computedAt == null) {
+            computedAt = LocalDateTime.now();
+        }
+    }
 }
@@ -0,0 +1,32 @@
+package com.smart.mobility.smartmobilitypricingservice.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Trajet tarifé et date de son calcul. {@code pricing_results} étant
+ * partitionnée par mois, elle ne peut pas porter d'index unique sur
+ * {@code trip_id} : cette table garantit l'unicité et indique dans quelle
+ * partition (ou quelle archive) chercher le résultat.
+ */
+@Entity
+@Table(name = "pricing_trip_keys")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PricingTripKey {
+
+    @Id
+    @Column(name = "trip_id")
+    private Long tripId;
+
+    @Column(name = "computed_at", nullable = false)
+    private LocalDateTime computedAt;
+}
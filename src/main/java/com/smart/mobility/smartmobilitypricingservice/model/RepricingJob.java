@@ -0,0 +1,69 @@
+package com.smart.mobility.smartmobilitypricingservice.model;
+
+import com.smart.mobility.smartmobilitypricingservice.enums.RepricingJobStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "repricing_jobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class RepricingJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Résultats calculés dans [fromDate, toDate)
+    @Column(name = "from_date", nullable = false)
+    private LocalDateTime fromDate;
+
+    @Column(name = "to_date", nullable = false)
+    private LocalDateTime toDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16, nullable = false)
+    private RepricingJobStatus status;
+
+    // Point de reprise : dernier pricing_results.id traité
+    @Column(name = "last_result_id", nullable = false)
+    private Long lastResultId;
+
+    @Column(nullable = false)
+    private Long processed;
+
+    @Column(nullable = false)
+    private Long changed;
+
+    @Column(nullable = false)
+    private Long skipped; // trajets sans données d'entrée ou en erreur
+
+    @Column(name = "total_delta", precision = 14, scale = 2, nullable = false)
+    private BigDecimal totalDelta;
+
+    @Column(name = "report_file", nullable = false)
+    private String reportFile;
+
+    @Column(name = "error_message")
+    private String errorMessage;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    // Une annulation ou une reprise depuis une autre instance fait échouer le point de reprise suivant
+    @Version
+    private Long version;
+}
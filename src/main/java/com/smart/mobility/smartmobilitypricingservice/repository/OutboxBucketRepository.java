@@ -0,0 +1,18 @@
+package com.smart.mobility.smartmobilitypricingservice.repository;
+
+import com.smart.mobility.smartmobilitypricingservice.model.OutboxBucket;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface OutboxBucketRepository extends JpaRepository<OutboxBucket, Integer> {
+
+    // Verrou de partition pris jusqu'à la fin de la transaction ; vide si une autre instance le détient
+    @Query(value = "SELECT bucket FROM pricing_outbox_buckets WHERE bucket = :bucket FOR UPDATE SKIP LOCKED",
+            nativeQuery = true)
+    Optional<Integer> tryLock(@Param("bucket") int bucket);
+}
@@ -0,0 +1,14 @@
+package com.smart.mobility.smartmobilitypricingservice.repository;
+
+import com.smart.mobility.smartmobilitypricingservice.model.PenaltyFare;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PenaltyFareRepository extends JpaRepository<PenaltyFare, Long> {
+
+    // lineId null : tarifs du type de transport (line_id IS NULL)
+    List<PenaltyFare> findByTransportTypeAndLineId(String transportType, Long lineId);
+}
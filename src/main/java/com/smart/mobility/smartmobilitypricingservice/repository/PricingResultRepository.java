@@ -1,12 +1,58 @@
 package com.smart.mobility.smartmobilitypricingservice.repository;
 
 import com.smart.mobility.smartmobilitypricingservice.model.PricingResult;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.Optional;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
 
 @Repository
-public interface PricingResultRepository extends JpaRepository<PricingResult, Long> {
-    Optional<PricingResult> findByTripId(Long tripId);
+public interface PricingResultRepository extends JpaRepository<PricingResult, Long>,
+        PricingResultStorage<PricingResult> {
+
+    @Query("SELECT r.tripId FROM PricingResult r WHERE r.computedAt >= :since")
+    List<Long> findTripIdsComputedSince(@Param("since") LocalDateTime since);
+
+    /**
+     * Page suivante (pagination par clé sur l'id) des résultats calculés dans
+     * l'intervalle [from, to).
+     */
+    @Query("SELECT r FROM PricingResult r WHERE r.id > :afterId AND r.computedAt >= :from AND r.computedAt < :to "
+            + "ORDER BY r.id")
+    List<PricingResult> findComputedBetweenAfter(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+            @Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Page suivante, par trip_id croissant, des résultats calculés dans
+     * l'intervalle [from, to) (archivage d'un mois).
+     */
+    @Query("SELECT r FROM PricingResult r WHERE r.tripId > :afterTripId AND r.computedAt >= :from "
+            + "AND r.computedAt < :to ORDER BY r.tripId")
+    List<PricingResult> findComputedBetweenAfterTripId(@Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to, @Param("afterTripId") Long afterTripId, Pageable pageable);
+
+    /**
+     * Montant enregistré des trajets d'un utilisateur partis dans
+     * [from, before), hors résultats calculés dans [replayFrom, replayTo)
+     * d'id supérieur à {@code afterId} (ceux qu'un job de re-tarification
+     * rejoue).
+     */
+    @Query("SELECT COALESCE(SUM(r.finalAmount), 0) FROM PricingResult r WHERE r.userId = :userId "
+            + "AND r.startTime >= :from AND r.startTime < :before AND NOT (r.id > :afterId "
+            + "AND r.computedAt >= :replayFrom AND r.computedAt < :replayTo)")
+    BigDecimal sumFinalAmountStartedBetween(@Param("userId") String userId, @Param("from") LocalDateTime from,
+            @Param("before") LocalDateTime before, @Param("replayFrom") LocalDateTime replayFrom,
+            @Param("replayTo") LocalDateTime replayTo, @Param("afterId") Long afterId);
+
+    @Query("SELECT r.id FROM PricingResult r WHERE r.computedAt >= :from AND r.computedAt < :to")
+    List<Long> findIdsComputedBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+            Pageable pageable);
+
+    @Query("SELECT MIN(r.computedAt) FROM PricingResult r")
+    LocalDateTime findOldestComputedAt();
 }
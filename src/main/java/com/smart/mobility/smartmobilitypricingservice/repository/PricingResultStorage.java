@@ -0,0 +1,40 @@
+package com.smart.mobility.smartmobilitypricingservice.repository;
+
+import com.smart.mobility.smartmobilitypricingservice.model.PricingResult;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Écriture et lecture d'un résultat par trajet à travers les partitions
+ * mensuelles et les archives (implémentée par {@link PricingResultStorageImpl}).
+ * Générique comme {@code CrudRepository}, afin que {@code save} et
+ * {@code saveAll} remplacent ceux du repository.
+ */
+public interface PricingResultStorage<T> {
+
+    /**
+     * Réserve un trajet avant sa tarification en insérant sa clé dans
+     * {@code pricing_trip_keys}, immédiatement (sans attendre le commit).
+     * Une réservation concurrente du même trajet attend la fin de la
+     * transaction qui le détient.
+     *
+     * @return {@code false} si le trajet est déjà réservé
+     */
+    boolean claimTrip(Long tripId, LocalDateTime computedAt);
+
+    /**
+     * Enregistre un nouveau résultat ; son trajet a été réservé par
+     * {@link #claimTrip} dans la transaction de tarification.
+     */
+    <S extends T> S save(S result);
+
+    <S extends T> List<S> saveAll(Iterable<S> results);
+
+    /**
+     * Résultat d'un trajet, cherché dans la partition de son mois puis, si
+     * elle a été archivée, dans le fichier d'archive.
+     */
+    Optional<PricingResult> findByTripId(Long tripId);
+}
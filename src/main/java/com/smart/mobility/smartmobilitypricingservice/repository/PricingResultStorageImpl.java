@@ -0,0 +1,81 @@
+package com.smart.mobility.smartmobilitypricingservice.repository;
+
+import com.smart.mobility.smartmobilitypricingservice.model.PricingResult;
+import com.smart.mobility.smartmobilitypricingservice.model.PricingTripKey;
+import com.smart.mobility.smartmobilitypricingservice.service.PricingArchive;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Fragment de {@link PricingResultRepository}.
+ */
+class PricingResultStorageImpl implements PricingResultStorage<PricingResult> {
+
+    // L'audit reprend le computed_at de la clé ; tolérance pour les lignes écrites avant ce report
+    private static final Duration KEY_SKEW = Duration.ofHours(1);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final PricingArchive pricingArchive;
+
+    PricingResultStorageImpl(PricingArchive pricingArchive) {
+        this.pricingArchive = pricingArchive;
+    }
+
+    @Override
+    public boolean claimTrip(Long tripId, LocalDateTime computedAt) {
+        // INSERT IGNORE : 0 ligne si la clé existe ; une clé insérée par une transaction en cours bloque jusqu'à sa fin
+        return entityManager.createNativeQuery(
+                "INSERT IGNORE INTO pricing_trip_keys (trip_id, computed_at) VALUES (:tripId, :computedAt)")
+                .setParameter("tripId", tripId)
+                .setParameter("computedAt", computedAt)
+                .executeUpdate() == 1;
+    }
+
+    @Override
+    public <S extends PricingResult> S save(S result) {
+        if (result.getId() != null) {
+            return entityManager.merge(result);
+        }
+        entityManager.persist(result);
+        return result;
+    }
+
+    @Override
+    public <S extends PricingResult> List<S> saveAll(Iterable<S> results) {
+        List<S> saved = new ArrayList<>();
+        for (S result : results) {
+            saved.add(save(result));
+        }
+        return saved;
+    }
+
+    @Override
+    public Optional<PricingResult> findByTripId(Long tripId) {
+        PricingTripKey key = entityManager.find(PricingTripKey.class, tripId);
+        if (key == null) {
+            return Optional.empty();
+        }
+        LocalDateTime from = key.getComputedAt().minus(KEY_SKEW);
+        LocalDateTime to = key.getComputedAt().plus(KEY_SKEW);
+        List<PricingResult> stored = entityManager.createQuery("SELECT r FROM PricingResult r "
+                + "WHERE r.tripId = :tripId AND r.computedAt BETWEEN :from AND :to", PricingResult.class)
+                .setParameter("tripId", tripId)
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .setMaxResults(1)
+                .getResultList();
+        if (!stored.isEmpty()) {
+            return Optional.of(stored.get(0));
+        }
+        return pricingArchive.find(tripId, YearMonth.from(from), YearMonth.from(to));
+    }
+}
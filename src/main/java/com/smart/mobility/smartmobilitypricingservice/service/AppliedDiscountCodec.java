@@ -0,0 +1,172 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.smart.mobility.smartmobilitypricingservice.dto.AppliedDiscountDto;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodage binaire compact des remises appliquées, stocké dans l'audit à la
+ * place du JSON.
+ * <p>
+ * Format (version 1) : un octet de version, le nombre de remises, puis pour
+ * chacune le code du type de règle, un octet d'indicateurs (pourcentage et
+ * montant présents) et les deux décimaux. Les types de règle courants sont
+ * internés sur un octet ; les autres sont écrits en UTF-8 derrière le code 0.
+ * Un décimal est écrit comme son échelle puis sa valeur non mise à l'échelle,
+ * en varints zigzag : l'encodage est sans perte. Une liste vide tient en deux
+ * octets, une remise courante en moins de dix.
+ */
+public final class AppliedDiscountCodec {
+
+    private static final int VERSION = 1;
+    private static final int INLINE_CODE = 0;
+    private static final int HAS_PERCENTAGE = 1;
+    private static final int HAS_AMOUNT = 2;
+
+    // Codes internés : liste en ajout seul, l'indice + 1 est écrit en base
+    private static final String[] RULE_TYPES = { "SUBSCRIPTION", "DAILY_CAP", "DAILY_CAP_LIMIT",
+            "PENALTY_MISMATCH", "OFFPEAK", "LOYALTY", "STUDENT", "SENIOR", "WEEKEND", "EVENT" };
+    private static final Map<String, Integer> CODES = new HashMap<>();
+
+    static {
+        for (int i = 0; i < RULE_TYPES.length; i++) {
+            CODES.put(RULE_TYPES[i], i + 1);
+        }
+    }
+
+    private AppliedDiscountCodec() {
+    }
+
+    /**
+     * Encode les remises, ou renvoie {@code null} si une valeur ne tient pas
+     * dans le format (l'audit garde alors le JSON).
+     */
+    public static byte[] encode(List<AppliedDiscountDto> discounts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(2 + discounts.size() * 12);
+        out.write(VERSION);
+        writeVarint(out, discounts.size());
+        for (AppliedDiscountDto discount : discounts) {
+            String ruleType = discount.getRuleType();
+            Integer code = ruleType != null ? CODES.get(ruleType) : null;
+            if (code != null) {
+                out.write(code);
+            } else {
+                out.write(INLINE_CODE);
+                // Longueur + 1, 0 pour un type absent
+                byte[] name = ruleType != null ? ruleType.getBytes(StandardCharsets.UTF_8) : null;
+                writeVarint(out, name != null ? name.length + 1 : 0);
+                if (name != null) {
+                    out.write(name, 0, name.length);
+                }
+            }
+            int flags = (discount.getPercentage() != null ? HAS_PERCENTAGE : 0)
+                    | (discount.getAmountDeducted() != null ? HAS_AMOUNT : 0);
+            out.write(flags);
+            if (!writeDecimal(out, discount.getPercentage()) || !writeDecimal(out, discount.getAmountDeducted())) {
+                return null;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    public static List<AppliedDiscountDto> decode(byte[] encoded) {
+        Reader in = new Reader(encoded);
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported applied discounts encoding version " + version);
+        }
+        int count = (int) in.readVarint();
+        List<AppliedDiscountDto> discounts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int code = in.readByte();
+            String ruleType;
+            if (code == INLINE_CODE) {
+                int length = (int) in.readVarint();
+                ruleType = length > 0 ? in.readString(length - 1) : null;
+            } else {
+                ruleType = RULE_TYPES[code - 1];
+            }
+            int flags = in.readByte();
+            discounts.add(AppliedDiscountDto.builder()
+                    .ruleType(ruleType)
+                    .percentage((flags & HAS_PERCENTAGE) != 0 ? in.readDecimal() : null)
+                    .amountDeducted((flags & HAS_AMOUNT) != 0 ? in.readDecimal() : null)
+                    .build());
+        }
+        return discounts;
+    }
+
+    private static boolean writeDecimal(ByteArrayOutputStream out, BigDecimal value) {
+        if (value == null) {
+            return true;
+        }
+        BigInteger unscaled = value.unscaledValue();
+        if (unscaled.bitLength() > 63) {
+            return false;
+        }
+        writeVarint(out, zigzag(value.scale()));
+        writeVarint(out, zigzag(unscaled.longValue()));
+        return true;
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static final class Reader {
+
+        private final byte[] bytes;
+        private int position;
+
+        private Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int readByte() {
+            return bytes[position++] & 0xFF;
+        }
+
+        long readVarint() {
+            long value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        long readZigzag() {
+            long value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        BigDecimal readDecimal() {
+            int scale = (int) readZigzag();
+            return BigDecimal.valueOf(readZigzag(), scale);
+        }
+
+        String readString(int length) {
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.dto.BulkPricingResultDTO;
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingResponseDTO;
+import com.smart.mobility.smartmobilitypricingservice.dto.TripCompletedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Tarification en masse d'un flux de trajets (NDJSON ou tableau JSON), par
+ * exemple pour re-tarifer une journée après un changement de tarif.
+ * Les trajets sont lus par blocs ; dans un bloc, ceux d'un même utilisateur
+ * sont tarifés ensemble et dans l'ordre (contexte et daily spent récupérés
+ * une seule fois), les utilisateurs étant répartis entre plusieurs threads.
+ * Les résultats sont écrits en NDJSON au fur et à mesure, sans conserver
+ * le flux en mémoire.
+ */
+@Service
+@Slf4j
+public class BulkPricingService {
+
+    private final PricingService pricingService;
+    private final ObjectMapper objectMapper;
+    private final Executor executor;
+    private final PricingProperties.Bulk properties;
+
+    public BulkPricingService(PricingService pricingService, ObjectMapper objectMapper,
+            @Qualifier("pricingBulkExecutor") Executor executor, PricingProperties pricingProperties) {
+        this.pricingService = pricingService;
+        this.objectMapper = objectMapper;
+        this.executor = executor;
+        this.properties = pricingProperties.getBulk();
+    }
+
+    /**
+     * Tarifie les trajets lus sur {@code in} et écrit une ligne de résultat
+     * par trajet sur {@code out}, dans l'ordre de fin de calcul.
+     *
+     * @param dryRun simulation : ni audit, ni publication, ni mise à jour du
+     *               cumul du jour
+     * @return nombre de trajets traités
+     */
+    public long price(InputStream in, OutputStream out, boolean dryRun) throws IOException {
+        long processed = 0;
+        try (MappingIterator<TripCompletedEvent> trips = objectMapper.readerFor(TripCompletedEvent.class)
+                .readValues(in);
+                SequenceWriter results = objectMapper.writer().withRootValueSeparator("\n").writeValues(out)) {
+            List<TripCompletedEvent> chunk = new ArrayList<>(properties.getChunkSize());
+            while (trips.hasNextValue()) {
+                chunk.add(trips.nextValue());
+                if (chunk.size() == properties.getChunkSize()) {
+                    processed += priceChunk(chunk, dryRun, results, out);
+                    chunk = new ArrayList<>(properties.getChunkSize());
+                }
+            }
+            if (!chunk.isEmpty()) {
+                processed += priceChunk(chunk, dryRun, results, out);
+            }
+        }
+        log.info("Bulk pricing {}: {} trips processed", dryRun ? "dry-run" : "run", processed);
+        return processed;
+    }
+
+    /**
+     * Tarifie un bloc, partition par partition en parallèle, et attend la fin
+     * du bloc avant de lire le suivant : les trajets d'un utilisateur restent
+     * traités dans l'ordre d'un bloc à l'autre.
+     */
+    private int priceChunk(List<TripCompletedEvent> chunk, boolean dryRun, SequenceWriter results,
+            OutputStream out) throws IOException {
+        List<List<TripCompletedEvent>> partitions = partitionByUser(chunk);
+        List<CompletableFuture<Void>> pending = new ArrayList<>(partitions.size());
+        for (List<TripCompletedEvent> partition : partitions) {
+            pending.add(CompletableFuture.supplyAsync(() -> pricePartition(partition, dryRun), executor)
+                    .thenAccept(lines -> write(results, lines)));
+        }
+        try {
+            CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                // Client déconnecté : inutile de continuer
+                throw io.getCause();
+            }
+            throw e;
+        }
+        out.flush();
+        return chunk.size();
+    }
+
+    private List<List<TripCompletedEvent>> partitionByUser(List<TripCompletedEvent> chunk) {
+        int count = Math.max(1, properties.getParallelism());
+        List<List<TripCompletedEvent>> partitions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (TripCompletedEvent trip : chunk) {
+            int hash = trip.userId() != null ? trip.userId().hashCode() : 0;
+            partitions.get(Math.floorMod(hash, count)).add(trip);
+        }
+        partitions.removeIf(List::isEmpty);
+        return partitions;
+    }
+
+    /**
+     * Tarifie une partition en un seul lot ; si le lot échoue (et est annulé),
+     * chaque trajet est repris seul pour isoler les trajets en erreur.
+     */
+    private List<BulkPricingResultDTO> pricePartition(List<TripCompletedEvent> partition, boolean dryRun) {
+        try {
+            List<PricingResponseDTO> responses = dryRun ? pricingService.previewTrips(partition)
+                    : pricingService.calculateAndProcessTrips(partition);
+            List<BulkPricingResultDTO> lines = new ArrayList<>(partition.size());
+            for (int i = 0; i < partition.size(); i++) {
+                lines.add(responses.get(i) != null ? success(partition.get(i), responses.get(i))
+                        : priceAlone(partition.get(i), dryRun));
+            }
+            return lines;
+        } catch (RuntimeException e) {
+            log.warn("Bulk pricing of {} trips failed, pricing them one by one", partition.size(), e);
+            List<BulkPricingResultDTO> lines = new ArrayList<>(partition.size());
+            for (TripCompletedEvent trip : partition) {
+                lines.add(priceAlone(trip, dryRun));
+            }
+            return lines;
+        }
+    }
+
+    private BulkPricingResultDTO priceAlone(TripCompletedEvent trip, boolean dryRun) {
+        try {
+            PricingResponseDTO response = dryRun ? pricingService.previewTrips(List.of(trip)).get(0)
+                    : pricingService.calculateAndProcessTrip(trip);
+            return success(trip, response);
+        } catch (DataIntegrityViolationException e) {
+            // Trajet tarifé en parallèle ailleurs : résultat enregistré
+            PricingResponseDTO stored = pricingService.findPricedTrip(trip.tripId());
+            return stored != null ? success(trip, stored) : failure(trip, e);
+        } catch (RuntimeException e) {
+            return failure(trip, e);
+        }
+    }
+
+    private static BulkPricingResultDTO failure(TripCompletedEvent trip, RuntimeException e) {
+        log.error("Bulk pricing failed for trip {}", trip.tripId(), e);
+        return BulkPricingResultDTO.builder()
+                .tripId(trip.tripId())
+                .userId(trip.userId())
+                .error(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName())
+                .build();
+    }
+
+    private static BulkPricingResultDTO success(TripCompletedEvent trip, PricingResponseDTO response) {
+        return BulkPricingResultDTO.builder()
+                .tripId(trip.tripId())
+                .userId(trip.userId())
+                .pricing(response)
+                .build();
+    }
+
+    private static void write(SequenceWriter results, List<BulkPricingResultDTO> lines) {
+        // Plusieurs partitions se terminent en même temps
+        synchronized (results) {
+            try {
+                results.writeAll(lines);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
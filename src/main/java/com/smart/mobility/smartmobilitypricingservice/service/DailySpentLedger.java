@@ -0,0 +1,202 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Cumul local de la dépense du jour par utilisateur.
+ * Amorcé depuis le Billing Service au premier trajet de la journée, puis mis à
+ * jour par chaque trajet tarifé. La lecture du cumul, l'évaluation du plafond
+ * et l'ajout du montant facturé se font sous le même verrou, ce qui empêche
+ * deux trajets simultanés de dépasser ensemble le plafond. Les montants sont
+ * en centimes (voir {@link Money}).
+ */
+@Component
+@Slf4j
+public class DailySpentLedger {
+
+    private final Clock clock;
+    private final Duration reseedAfter;
+    private final Stripe[] stripes;
+
+    public DailySpentLedger(Clock clock, PricingProperties pricingProperties) {
+        PricingProperties.Ledger properties = pricingProperties.getLedger();
+        this.clock = clock;
+        this.reseedAfter = properties.getReseedAfter();
+        // Nombre de segments arrondi à une puissance de deux
+        int count = Integer.highestOneBit(Math.max(1, properties.getStripes() - 1)) << 1;
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    public LocalDate today() {
+        return LocalDate.now(clock);
+    }
+
+    /**
+     * Vrai si le cumul de ce jour doit être (ré)amorcé depuis le Billing Service.
+     */
+    public boolean needsSeed(String userId, LocalDate day) {
+        Stripe stripe = stripeFor(userId);
+        stripe.lock.lock();
+        try {
+            Entry entry = stripe.entries.get(userId);
+            return entry == null || !entry.day.equals(day)
+                    || entry.seededAt.plus(reseedAfter).isBefore(clock.instant());
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Amorce le cumul avec la valeur du Billing Service. Si un cumul local
+     * existe déjà pour ce jour, le plus grand des deux est conservé : le
+     * Billing Service peut ne pas avoir encore reçu les derniers trajets.
+     */
+    public void seed(String userId, LocalDate day, long billedSpent) {
+        Stripe stripe = stripeFor(userId);
+        stripe.lock.lock();
+        try {
+            Entry entry = stripe.entries.get(userId);
+            if (entry == null || !entry.day.equals(day)) {
+                stripe.entries.put(userId, new Entry(day, billedSpent, clock.instant()));
+            } else {
+                entry.spent = Math.max(entry.spent, billedSpent);
+                entry.seededAt = clock.instant();
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Billing Service indisponible : le cumul local est conservé (0 s'il
+     * n'existe pas encore) et sera réamorcé au prochain trajet.
+     */
+    public void markUnseeded(String userId, LocalDate day) {
+        Stripe stripe = stripeFor(userId);
+        stripe.lock.lock();
+        try {
+            Entry entry = stripe.entries.get(userId);
+            if (entry == null || !entry.day.equals(day)) {
+                stripe.entries.put(userId, new Entry(day, 0L, Instant.EPOCH));
+            } else {
+                entry.seededAt = Instant.EPOCH;
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Dépense du jour connue localement (0 si le cumul n'est pas amorcé), sans
+     * la modifier.
+     */
+    public long spent(String userId, LocalDate day) {
+        Stripe stripe = stripeFor(userId);
+        stripe.lock.lock();
+        try {
+            Entry entry = stripe.entries.get(userId);
+            return entry != null && entry.day.equals(day) ? entry.spent : 0L;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Évalue un trajet contre la dépense du jour et y ajoute le montant
+     * facturé, de façon atomique pour cet utilisateur.
+     *
+     * @param evaluator calcul à partir de la dépense courante
+     * @param charged   montant facturé extrait du résultat
+     */
+    public <T> T settle(String userId, LocalDate day, LongFunction<T> evaluator, ToLongFunction<T> charged) {
+        Stripe stripe = stripeFor(userId);
+        stripe.lock.lock();
+        try {
+            Entry entry = stripe.entries.get(userId);
+            if (entry == null || !entry.day.equals(day)) {
+                // Nouveau jour entre l'amorçage et le calcul : rien n'a encore été dépensé
+                entry = new Entry(day, 0L, clock.instant());
+                stripe.entries.put(userId, entry);
+            }
+            T result = evaluator.apply(entry.spent);
+            entry.spent += charged.applyAsLong(result);
+            return result;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Annule un montant ajouté par {@link #settle} (transaction annulée).
+     */
+    public void refund(String userId, LocalDate day, long amount) {
+        Stripe stripe = stripeFor(userId);
+        stripe.lock.lock();
+        try {
+            Entry entry = stripe.entries.get(userId);
+            if (entry != null && entry.day.equals(day)) {
+                entry.spent = Math.max(0L, entry.spent - amount);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Supprime les cumuls des jours passés (après minuit).
+     */
+    @Scheduled(cron = "${pricing.ledger.eviction-cron:0 5 0 * * *}")
+    public void evictPastDays() {
+        LocalDate today = today();
+        int evicted = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                int before = stripe.entries.size();
+                stripe.entries.values().removeIf(entry -> entry.day.isBefore(today));
+                evicted += before - stripe.entries.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        log.info("Daily spent ledger: evicted {} entries from past days", evicted);
+    }
+
+    private Stripe stripeFor(String userId) {
+        int hash = userId.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Map<String, Entry> entries = new HashMap<>();
+    }
+
+    private static final class Entry {
+        private final LocalDate day;
+        private long spent;
+        private Instant seededAt;
+
+        private Entry(LocalDate day, long spent, Instant seededAt) {
+            this.day = day;
+            this.spent = spent;
+            this.seededAt = seededAt;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.smart.mobility.smartmobilitypricingservice.model.DiscountRule;
+import com.smart.mobility.smartmobilitypricingservice.repository.DiscountRuleRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Moteur de règles de remise : détient le jeu de règles compilé courant et le
+ * remplace atomiquement lorsque les règles changent en base. La version d'un
+ * jeu de règles est tirée de son contenu : toutes les instances donnent la
+ * même version aux mêmes règles, y compris après un redémarrage.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DiscountRuleEngine {
+
+    private final DiscountRuleRepository discountRuleRepository;
+
+    private volatile DiscountRuleSnapshot snapshot;
+
+    /**
+     * Jeu de règles courant, chargé à la première utilisation.
+     */
+    public DiscountRuleSnapshot current() {
+        DiscountRuleSnapshot current = snapshot;
+        return current != null ? current : reload();
+    }
+
+    /**
+     * Recharge les règles actives. Une nouvelle version n'est publiée que si
+     * les règles ont réellement changé.
+     */
+    public synchronized DiscountRuleSnapshot reload() {
+        List<DiscountRule> activeRules = discountRuleRepository.findByActiveTrueOrderByPriorityAsc();
+        DiscountRuleSnapshot current = snapshot;
+        if (current != null && current.getSource().equals(activeRules)) {
+            return current;
+        }
+        DiscountRuleSnapshot compiled = DiscountRuleSnapshot.compile(version(activeRules), activeRules);
+        snapshot = compiled;
+        log.info("Discount rule set v{} compiled: {} rules", compiled.getVersion(), compiled.ruleCount());
+        return compiled;
+    }
+
+    /**
+     * Installe des règles déjà chargées (snapshot de démarrage) ; le
+     * rechargement suivant les conserve si la base n'a pas changé.
+     */
+    public synchronized DiscountRuleSnapshot install(List<DiscountRule> activeRules) {
+        DiscountRuleSnapshot compiled = DiscountRuleSnapshot.compile(version(activeRules), activeRules);
+        snapshot = compiled;
+        log.info("Discount rule set v{} installed: {} rules", compiled.getVersion(), compiled.ruleCount());
+        return compiled;
+    }
+
+    /**
+     * Empreinte (SHA-256 tronquée, positive) des règles actives dans leur
+     * ordre de priorité ; les dates de création et de mise à jour n'en font
+     * pas partie.
+     */
+    public static long version(List<DiscountRule> activeRules) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        StringBuilder canonical = new StringBuilder();
+        for (DiscountRule rule : activeRules) {
+            canonical.setLength(0);
+            append(canonical, rule.getId());
+            append(canonical, rule.getRuleType());
+            BigDecimal percentage = rule.getPercentage();
+            append(canonical, percentage != null ? percentage.stripTrailingZeros().toPlainString() : null);
+            append(canonical, rule.getPriority());
+            append(canonical, rule.getCondition());
+            append(canonical, rule.getStartHour());
+            append(canonical, rule.getEndHour());
+            append(canonical, rule.getStartDay());
+            append(canonical, rule.getEndDay());
+            append(canonical, rule.getStartDate());
+            append(canonical, rule.getEndDate());
+            append(canonical, rule.getActive());
+            digest.update(canonical.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return ByteBuffer.wrap(digest.digest()).getLong() & Long.MAX_VALUE;
+    }
+
+    // Champ préfixé de sa longueur : deux règles différentes ne donnent jamais le même texte
+    private static void append(StringBuilder canonical, Object value) {
+        if (value == null) {
+            canonical.append("-;");
+            return;
+        }
+        String text = value.toString();
+        canonical.append(text.length()).append(':').append(text).append(';');
+    }
+
+    @Scheduled(fixedDelayString = "${pricing.discount-rules.refresh-interval-ms:60000}",
+            initialDelayString = "${pricing.discount-rules.refresh-interval-ms:60000}")
+    public void refresh() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("Discount rules refresh failed, keeping rule set v{}",
+                    snapshot != null ? snapshot.getVersion() : 0, e);
+        }
+    }
+}
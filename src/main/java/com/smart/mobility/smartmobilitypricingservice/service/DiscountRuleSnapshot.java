@@ -0,0 +1,311 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.smart.mobility.smartmobilitypricingservice.dto.AppliedDiscountDto;
+import com.smart.mobility.smartmobilitypricingservice.enums.TransportType;
+import com.smart.mobility.smartmobilitypricingservice.model.DiscountRule;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Jeu de règles de remise compilé et immuable.
+ * Les règles sont pré-réparties par type de transport et par heure de la
+ * semaine (masques de bits), de sorte qu'un trajet n'évalue que les règles
+ * candidates, dans l'ordre de priorité.
+ */
+public final class DiscountRuleSnapshot {
+
+    static final int HOURS_PER_WEEK = 7 * 24;
+
+    public static final long NOT_CACHEABLE = -1L;
+
+    private static final byte SLOT_HOUR = 0;
+    private static final byte SLOT_DAY = 1;
+    private static final byte SLOT_NONE = 2;
+
+    private static final TransportType[] TRANSPORT_TYPES = TransportType.values();
+    // Un bucket par type de transport connu, plus un pour les types inconnus
+    private static final int UNKNOWN_TRANSPORT = TRANSPORT_TYPES.length;
+
+    public static final DiscountRuleSnapshot EMPTY = compile(0L, List.of());
+
+    private final long version;
+    private final List<DiscountRule> source;
+    private final CompiledRule[] rules;
+    // candidates[transport][hourOfWeek] : masque des règles candidates
+    private final long[][][] candidates;
+    // Règles sans fenêtre horaire, journalière ni de dates (trajet sans horodatage)
+    private final long[][] untimedCandidates;
+    // quoteSlots[transport][hourOfWeek] : granularité de la clé de cache des devis
+    private final byte[][] quoteSlots;
+
+    private DiscountRuleSnapshot(long version, List<DiscountRule> source, CompiledRule[] rules,
+            long[][][] candidates, long[][] untimedCandidates) {
+        this.version = version;
+        this.source = source;
+        this.rules = rules;
+        this.candidates = candidates;
+        this.untimedCandidates = untimedCandidates;
+        this.quoteSlots = new byte[candidates.length][HOURS_PER_WEEK];
+        for (int transport = 0; transport < candidates.length; transport++) {
+            for (int hourOfWeek = 0; hourOfWeek < HOURS_PER_WEEK; hourOfWeek++) {
+                quoteSlots[transport][hourOfWeek] = quoteSlot(candidates[transport][hourOfWeek], hourOfWeek % 24);
+            }
+        }
+    }
+
+    /**
+     * Compile les règles actives (hors SUBSCRIPTION, géré par les abonnements
+     * utilisateur).
+     */
+    public static DiscountRuleSnapshot compile(long version, List<DiscountRule> activeRules) {
+        List<DiscountRule> applicable = new ArrayList<>();
+        for (DiscountRule rule : activeRules) {
+            if (!Boolean.FALSE.equals(rule.getActive()) && !"SUBSCRIPTION".equalsIgnoreCase(rule.getRuleType())) {
+                applicable.add(rule);
+            }
+        }
+        applicable.sort(Comparator.comparing(DiscountRule::getPriority,
+                Comparator.nullsLast(Comparator.naturalOrder())));
+
+        CompiledRule[] rules = new CompiledRule[applicable.size()];
+        for (int i = 0; i < rules.length; i++) {
+            rules[i] = new CompiledRule(applicable.get(i));
+        }
+
+        int words = Math.max(1, (rules.length + 63) >>> 6);
+        long[][][] candidates = new long[UNKNOWN_TRANSPORT + 1][HOURS_PER_WEEK][words];
+        long[][] untimed = new long[UNKNOWN_TRANSPORT + 1][words];
+        for (int i = 0; i < rules.length; i++) {
+            CompiledRule rule = rules[i];
+            for (int transport = 0; transport <= UNKNOWN_TRANSPORT; transport++) {
+                if (!rule.appliesToTransport(transport)) {
+                    continue;
+                }
+                for (int hourOfWeek = 0; hourOfWeek < HOURS_PER_WEEK; hourOfWeek++) {
+                    if (rule.isCandidate(hourOfWeek / 24 + 1, hourOfWeek % 24)) {
+                        candidates[transport][hourOfWeek][i >>> 6] |= 1L << i;
+                    }
+                }
+                if (rule.isUntimed()) {
+                    untimed[transport][i >>> 6] |= 1L << i;
+                }
+            }
+        }
+        return new DiscountRuleSnapshot(version, List.copyOf(activeRules), rules, candidates, untimed);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int ruleCount() {
+        return rules.length;
+    }
+
+    List<DiscountRule> getSource() {
+        return source;
+    }
+
+    /**
+     * Applique successivement les règles applicables au trajet et renvoie le
+     * montant restant, en centimes.
+     */
+    public long apply(long currentAmount, TransportType transportType, LocalDateTime startTime,
+            List<AppliedDiscountDto> appliedDiscounts) {
+        int transport = transportType != null ? transportType.ordinal() : UNKNOWN_TRANSPORT;
+        long[] mask = startTime != null
+                ? candidates[transport][hourOfWeek(startTime)]
+                : untimedCandidates[transport];
+
+        long amount = currentAmount;
+        for (int word = 0; word < mask.length; word++) {
+            long bits = mask[word];
+            while (bits != 0) {
+                CompiledRule rule = rules[(word << 6) + Long.numberOfTrailingZeros(bits)];
+                bits &= bits - 1;
+                if (startTime != null && !rule.matchesExactly(startTime)) {
+                    continue;
+                }
+                long deduction = Money.percentOf(amount, rule.discountBasisPoints);
+                appliedDiscounts.add(AppliedDiscountDto.builder()
+                        .ruleType(rule.ruleType)
+                        .percentage(rule.percentage)
+                        .amountDeducted(Money.toBigDecimal(deduction))
+                        .build());
+                amount -= deduction;
+            }
+        }
+        return amount;
+    }
+
+    /**
+     * Clé de cache d'un devis : deux trajets du même transport ayant la même
+     * clé reçoivent exactement les mêmes règles. C'est l'heure de la semaine,
+     * complétée du jour si une règle candidate a des dates de validité, ou
+     * {@link #NOT_CACHEABLE} si une règle commence ou finit au cours de l'heure.
+     */
+    public long quoteBucket(TransportType transportType, LocalDateTime startTime) {
+        if (startTime == null) {
+            return HOURS_PER_WEEK;
+        }
+        int transport = transportType != null ? transportType.ordinal() : UNKNOWN_TRANSPORT;
+        int hourOfWeek = hourOfWeek(startTime);
+        return switch (quoteSlots[transport][hourOfWeek]) {
+            case SLOT_HOUR -> hourOfWeek;
+            case SLOT_DAY -> (startTime.toLocalDate().toEpochDay() + 2) * HOURS_PER_WEEK + hourOfWeek;
+            default -> NOT_CACHEABLE;
+        };
+    }
+
+    private byte quoteSlot(long[] mask, int hour) {
+        byte slot = SLOT_HOUR;
+        for (int word = 0; word < mask.length; word++) {
+            long bits = mask[word];
+            while (bits != 0) {
+                CompiledRule rule = rules[(word << 6) + Long.numberOfTrailingZeros(bits)];
+                bits &= bits - 1;
+                if (!rule.isUniformOver(hour)) {
+                    return SLOT_NONE;
+                }
+                if (rule.startDate != null) {
+                    slot = SLOT_DAY;
+                }
+            }
+        }
+        return slot;
+    }
+
+    static int hourOfWeek(LocalDateTime time) {
+        return (time.getDayOfWeek().getValue() - 1) * 24 + time.getHour();
+    }
+
+    /**
+     * Règle compilée : transports ciblés pré-calculés et facteur de remise
+     * arrondi une seule fois.
+     */
+    private static final class CompiledRule {
+
+        private final String ruleType;
+        private final BigDecimal percentage;
+        // Facteur de remise arrondi au centième (ex: 12.5 % → 0.13), en points de base
+        private final long discountBasisPoints;
+        private final EnumSet<TransportType> transports = EnumSet.noneOf(TransportType.class);
+        // Règle sans condition de transport : s'applique aussi aux types inconnus
+        private final boolean allTransports;
+        private final LocalTime startHour;
+        private final LocalTime endHour;
+        private final Integer startDay;
+        private final Integer endDay;
+        private final LocalDate startDate;
+        private final LocalDate endDate;
+
+        private CompiledRule(DiscountRule rule) {
+            this.ruleType = rule.getRuleType();
+            this.percentage = rule.getPercentage();
+            this.discountBasisPoints = Money.basisPoints(rule.getPercentage()
+                    .divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP).movePointRight(2));
+
+            // Condition vide ou ALL : tous les transports, sinon liste de codes (ex: "BUS,TER")
+            String condition = rule.getCondition();
+            this.allTransports = condition == null || condition.isEmpty() || "ALL".equalsIgnoreCase(condition);
+            String upperCondition = condition != null ? condition.toUpperCase(Locale.ROOT) : "";
+            for (TransportType type : TRANSPORT_TYPES) {
+                if (allTransports || upperCondition.contains(type.name())) {
+                    transports.add(type);
+                }
+            }
+
+            boolean hourWindow = rule.getStartHour() != null && rule.getEndHour() != null;
+            this.startHour = hourWindow ? rule.getStartHour() : null;
+            this.endHour = hourWindow ? rule.getEndHour() : null;
+            boolean dayWindow = rule.getStartDay() != null && rule.getEndDay() != null;
+            this.startDay = dayWindow ? rule.getStartDay() : null;
+            this.endDay = dayWindow ? rule.getEndDay() : null;
+            boolean dateWindow = rule.getStartDate() != null && rule.getEndDate() != null;
+            this.startDate = dateWindow ? rule.getStartDate() : null;
+            this.endDate = dateWindow ? rule.getEndDate() : null;
+        }
+
+        boolean appliesToTransport(int transport) {
+            return transport == UNKNOWN_TRANSPORT ? allTransports : transports.contains(TRANSPORT_TYPES[transport]);
+        }
+
+        boolean isUntimed() {
+            return startHour == null && startDay == null && startDate == null;
+        }
+
+        /**
+         * Vrai si la règle peut s'appliquer à au moins une minute de cette heure
+         * de ce jour (1 = lundi).
+         */
+        boolean isCandidate(int day, int hour) {
+            if (startDay != null) {
+                // Cas classique : Lundi -> Vendredi, sinon chevauchement Vendredi -> Lundi
+                boolean inDays = startDay <= endDay
+                        ? day >= startDay && day <= endDay
+                        : day >= startDay || day <= endDay;
+                if (!inDays) {
+                    return false;
+                }
+            }
+            if (startHour != null) {
+                // Cas classique : 09:00 -> 17:00, sinon cas nocturne : 22:00 -> 05:00
+                return startHour.isBefore(endHour)
+                        ? hour >= startHour.getHour() && hour <= endHour.getHour()
+                        : hour >= startHour.getHour() || hour <= endHour.getHour();
+            }
+            return true;
+        }
+
+        /**
+         * Vérification exacte (minutes et dates de validité) d'une règle
+         * candidate.
+         */
+        boolean matchesExactly(LocalDateTime startTime) {
+            if (startHour != null && !matchesTime(startTime.toLocalTime())) {
+                return false;
+            }
+            if (startDate != null) {
+                LocalDate tripDate = startTime.toLocalDate();
+                return !tripDate.isBefore(startDate) && !tripDate.isAfter(endDate);
+            }
+            return true;
+        }
+
+        private boolean matchesTime(LocalTime tripTime) {
+            if (startHour.isBefore(endHour)) {
+                return !tripTime.isBefore(startHour) && !tripTime.isAfter(endHour);
+            }
+            return !(tripTime.isBefore(startHour) && tripTime.isAfter(endHour));
+        }
+
+        /**
+         * Vrai si la fenêtre horaire donne le même résultat pour toute l'heure :
+         * le résultat ne peut changer qu'aux bornes de la fenêtre.
+         */
+        boolean isUniformOver(int hour) {
+            if (startHour == null) {
+                return true;
+            }
+            LocalTime from = LocalTime.of(hour, 0);
+            LocalTime to = from.plusMinutes(59).plusSeconds(59).plusNanos(999_999_999);
+            boolean matches = matchesTime(from);
+            for (LocalTime edge : new LocalTime[] { to, startHour, startHour.minusNanos(1), endHour,
+                    endHour.plusNanos(1) }) {
+                if (!edge.isBefore(from) && !edge.isAfter(to) && matchesTime(edge) != matches) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.smart.mobility.smartmobilitypricingservice.dto.FareMatrixDTO;
+import com.smart.mobility.smartmobilitypricingservice.model.FareSection;
+import com.smart.mobility.smartmobilitypricingservice.model.PenaltyFare;
+import com.smart.mobility.smartmobilitypricingservice.model.TransportLine;
+import com.smart.mobility.smartmobilitypricingservice.repository.FareSectionRepository;
+import com.smart.mobility.smartmobilitypricingservice.repository.PenaltyFareRepository;
+import com.smart.mobility.smartmobilitypricingservice.repository.TransportLineRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Détient le snapshot courant du réseau tarifaire.
+ * Le snapshot est rechargé à chaque modification via l'admin et
+ * périodiquement pour propager les changements faits sur les autres instances.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FareNetworkService {
+
+    private final FareSectionRepository fareSectionRepository;
+    private final TransportLineRepository transportLineRepository;
+    private final PenaltyFareRepository penaltyFareRepository;
+    private final FareStrategies fareStrategies;
+
+    private volatile FareNetworkSnapshot snapshot;
+    // Données du snapshot courant : un rechargement sans changement le conserve
+    private List<TransportLine> sourceLines;
+    private List<FareSection> sourceSections;
+    private List<PenaltyFare> sourcePenaltyFares;
+
+    /**
+     * Snapshot courant, chargé à la première utilisation.
+     */
+    public FareNetworkSnapshot current() {
+        FareNetworkSnapshot current = snapshot;
+        return current != null ? current : reload();
+    }
+
+    /**
+     * Recompile le réseau depuis la base et remplace le snapshot de façon
+     * atomique. Le snapshot n'est remplacé que si les lignes, les sections ou
+     * les tarifs de pénalité ont changé.
+     */
+    public synchronized FareNetworkSnapshot reload() {
+        List<TransportLine> lines = transportLineRepository.findAll();
+        List<FareSection> sections = fareSectionRepository.findAll();
+        List<PenaltyFare> penalties = penaltyFareRepository.findAll();
+        FareNetworkSnapshot current = snapshot;
+        if (current != null && lines.equals(sourceLines) && sections.equals(sourceSections)
+                && penalties.equals(sourcePenaltyFares)) {
+            return current;
+        }
+        FareNetworkSnapshot compiled = install(lines, sections, penalties);
+        log.debug("Fare network snapshot reloaded: {} lines", compiled.lineCount());
+        return compiled;
+    }
+
+    /**
+     * Installe un réseau déjà chargé (snapshot de démarrage) ; le
+     * rechargement suivant le conserve si la base n'a pas changé.
+     */
+    public synchronized FareNetworkSnapshot install(List<TransportLine> lines, List<FareSection> sections,
+            List<PenaltyFare> penalties) {
+        FareNetworkSnapshot compiled = FareNetworkSnapshot.compile(lines, sections, penalties, fareStrategies);
+        sourceLines = lines;
+        sourceSections = sections;
+        sourcePenaltyFares = penalties;
+        snapshot = compiled;
+        return compiled;
+    }
+
+    synchronized List<TransportLine> sourceLines() {
+        return sourceLines;
+    }
+
+    synchronized List<FareSection> sourceSections() {
+        return sourceSections;
+    }
+
+    synchronized List<PenaltyFare> sourcePenaltyFares() {
+        return sourcePenaltyFares;
+    }
+
+    /**
+     * Grille tarifaire précalculée d'une ligne, telle qu'utilisée pour la
+     * tarification ; vide si la ligne est inconnue ou n'a pas de matrice.
+     */
+    public Optional<FareMatrixDTO> fareMatrix(Long lineId) {
+        FareNetworkSnapshot.CompiledLine line = current().line(lineId);
+        int[][] matrix = line != null ? line.fareMatrix() : null;
+        if (matrix == null) {
+            return Optional.empty();
+        }
+        List<String> stations = new ArrayList<>(line.size());
+        List<List<BigDecimal>> fares = new ArrayList<>(line.size());
+        for (int from = 0; from < line.size(); from++) {
+            stations.add(line.stationAt(from));
+            List<BigDecimal> row = new ArrayList<>(line.size());
+            for (int fare : matrix[from]) {
+                row.add(Money.toBigDecimal(fare));
+            }
+            fares.add(row);
+        }
+        return Optional.of(FareMatrixDTO.builder()
+                .lineId(line.getLineId())
+                .name(line.getName())
+                .transportType(line.getTransportType())
+                .stations(stations)
+                .fares(fares)
+                .build());
+    }
+
+    @Scheduled(fixedDelayString = "${pricing.fare-network.refresh-interval-ms:60000}",
+            initialDelayString = "${pricing.fare-network.refresh-interval-ms:60000}")
+    public void refresh() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("Fare network refresh failed, keeping previous snapshot", e);
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.smart.mobility.smartmobilitypricingservice.enums.TransportType;
+import com.smart.mobility.smartmobilitypricingservice.model.FareSection;
+import com.smart.mobility.smartmobilitypricingservice.model.PenaltyFare;
+import com.smart.mobility.smartmobilitypricingservice.model.TransportLine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Vue immuable et compilée du réseau tarifaire (lignes, sections, tarifs de
+ * pénalité). Construite une fois à partir de la base, puis partagée sans
+ * verrou entre les threads de tarification.
+ */
+public final class FareNetworkSnapshot {
+
+    // Un emplacement par type de transport connu, plus un pour les types inconnus
+    private static final int UNKNOWN_TRANSPORT = TransportType.values().length;
+    private static final long NO_PENALTY = -1L;
+
+    public static final FareNetworkSnapshot EMPTY = compile(List.of(), List.of());
+
+    private final Map<Long, CompiledLine> lines;
+    // Pénalités en centimes, par ordinal de TransportType
+    private final long[] penaltyFares;
+    // Surcharges par ligne, par ordinal (NO_PENALTY : tarif du type de transport)
+    private final Map<Long, long[]> linePenaltyFares;
+
+    private FareNetworkSnapshot(Map<Long, CompiledLine> lines, long[] penaltyFares,
+            Map<Long, long[]> linePenaltyFares) {
+        this.lines = lines;
+        this.penaltyFares = penaltyFares;
+        this.linePenaltyFares = linePenaltyFares;
+    }
+
+    public static FareNetworkSnapshot compile(List<TransportLine> transportLines, List<FareSection> fareSections) {
+        return compile(transportLines, fareSections, List.of());
+    }
+
+    public static FareNetworkSnapshot compile(List<TransportLine> transportLines, List<FareSection> fareSections,
+            List<PenaltyFare> penalties) {
+        return compile(transportLines, fareSections, penalties, FareStrategies.STANDARD);
+    }
+
+    public static FareNetworkSnapshot compile(List<TransportLine> transportLines, List<FareSection> fareSections,
+            List<PenaltyFare> penalties, FareStrategies strategies) {
+        Map<Long, TransportLine> lineById = new HashMap<>();
+        for (TransportLine line : transportLines) {
+            lineById.put(line.getId(), line);
+        }
+
+        Map<Long, List<FareSection>> sectionsByLine = new HashMap<>();
+        for (FareSection section : fareSections) {
+            if (section.getLineId() == null || section.getSectionOrder() == null) {
+                continue;
+            }
+            sectionsByLine.computeIfAbsent(section.getLineId(), id -> new ArrayList<>()).add(section);
+        }
+
+        Map<Long, CompiledLine> compiled = new HashMap<>();
+        sectionsByLine.forEach((lineId, sections) -> {
+            sections.sort(Comparator.comparing(FareSection::getSectionOrder));
+            compiled.put(lineId, new CompiledLine(lineId, lineById.get(lineId), sections, strategies));
+        });
+
+        long[] penaltyFares = defaultPenaltyFares();
+        Map<Long, long[]> linePenaltyFares = new HashMap<>();
+        for (PenaltyFare penalty : penalties) {
+            TransportType type = TransportType.fromCode(penalty.getTransportType());
+            if (type == null || penalty.getAmount() == null) {
+                continue;
+            }
+            long amount = Money.of(penalty.getAmount());
+            long[] target = penaltyFares;
+            if (penalty.getLineId() != null) {
+                target = linePenaltyFares.computeIfAbsent(penalty.getLineId(), id -> {
+                    long[] overrides = new long[UNKNOWN_TRANSPORT + 1];
+                    Arrays.fill(overrides, NO_PENALTY);
+                    return overrides;
+                });
+            }
+            target[type.ordinal()] = amount;
+            // ALL : tarif des types de transport inconnus
+            if (type == TransportType.ALL) {
+                target[UNKNOWN_TRANSPORT] = amount;
+            }
+        }
+        return new FareNetworkSnapshot(Map.copyOf(compiled), penaltyFares, Map.copyOf(linePenaltyFares));
+    }
+
+    /**
+     * Barème historique, appliqué aux types sans tarif de pénalité en base :
+     * BUS 500, BRT 1000, TER 2500, autres 500.
+     */
+    private static long[] defaultPenaltyFares() {
+        long[] fares = new long[UNKNOWN_TRANSPORT + 1];
+        Arrays.fill(fares, Money.ofUnits(500));
+        fares[TransportType.BRT.ordinal()] = Money.ofUnits(1000);
+        fares[TransportType.TER.ordinal()] = Money.ofUnits(2500);
+        return fares;
+    }
+
+    /**
+     * Tarif de pénalité d'un trajet, en centimes : surcharge de la ligne si
+     * elle existe, sinon tarif du type de transport.
+     */
+    public long penaltyFare(Long lineId, TransportType transportType) {
+        int transport = transportType != null ? transportType.ordinal() : UNKNOWN_TRANSPORT;
+        long[] overrides = lineId != null ? linePenaltyFares.get(lineId) : null;
+        if (overrides != null && overrides[transport] != NO_PENALTY) {
+            return overrides[transport];
+        }
+        return penaltyFares[transport];
+    }
+
+    /**
+     * Ligne compilée, ou {@code null} si aucune section n'est définie pour cet
+     * identifiant.
+     */
+    public CompiledLine line(Long lineId) {
+        return lineId == null ? null : lines.get(lineId);
+    }
+
+    public int lineCount() {
+        return lines.size();
+    }
+
+    Collection<CompiledLine> lines() {
+        return lines.values();
+    }
+
+    static String normalize(String stationName) {
+        return stationName.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Une ligne : index station → position, zones par position, table de
+     * préfixes permettant de compter les zones distinctes d'un trajet en O(1)
+     * et matrice des prix de base pour le type de transport de la ligne,
+     * calculée par son {@link FareStrategy}.
+     */
+    public static final class CompiledLine {
+
+        private static final int NO_ZONE = Integer.MIN_VALUE;
+        // Au-delà, la matrice (size² entiers) n'est pas construite et le prix est calculé
+        static final int MAX_MATRIX_STATIONS = 1024;
+
+        private final Long lineId;
+        private final String name;
+        private final TransportType transportType;
+        private final FareStrategies strategies;
+        private final Map<String, Integer> stationIndex;
+        private final String[] stations;
+        private final int[] zones;
+        // runsUpTo[k] : nombre de séquences de zones commencées aux positions <= k
+        private final int[] runsUpTo;
+        // nextZoned[k] : première position >= k ayant une zone (ou size si aucune)
+        private final int[] nextZoned;
+        private final boolean contiguousZones;
+        // fares[from * size + to] : prix de base en centimes (null si la ligne n'a pas de type tarifé)
+        private final int[] fares;
+
+        private CompiledLine(Long lineId, TransportLine line, List<FareSection> sections,
+                FareStrategies strategies) {
+            this.lineId = lineId;
+            this.name = line != null ? line.getName() : null;
+            this.transportType = line != null ? TransportType.fromCode(line.getTransportType()) : null;
+            this.strategies = strategies;
+
+            int size = sections.size();
+            Map<String, Integer> index = new HashMap<>();
+            this.stations = new String[size];
+            this.zones = new int[size];
+            for (int i = 0; i < size; i++) {
+                FareSection section = sections.get(i);
+                stations[i] = section.getStationName();
+                if (section.getStationName() != null) {
+                    index.putIfAbsent(normalize(section.getStationName()), i);
+                }
+                zones[i] = section.getZone() != null ? section.getZone() : NO_ZONE;
+            }
+            this.stationIndex = Map.copyOf(index);
+
+            this.runsUpTo = new int[size];
+            Set<Integer> closedZones = new HashSet<>();
+            boolean contiguous = true;
+            int runs = 0;
+            int previousZone = NO_ZONE;
+            for (int i = 0; i < size; i++) {
+                int zone = zones[i];
+                if (zone != NO_ZONE && zone != previousZone) {
+                    if (previousZone != NO_ZONE) {
+                        closedZones.add(previousZone);
+                    }
+                    // Une zone qui réapparaît après avoir été quittée casse la table de préfixes
+                    if (closedZones.contains(zone)) {
+                        contiguous = false;
+                    }
+                    runs++;
+                    previousZone = zone;
+                }
+                runsUpTo[i] = runs;
+            }
+            this.contiguousZones = contiguous;
+
+            this.nextZoned = new int[size + 1];
+            nextZoned[size] = size;
+            for (int i = size - 1; i >= 0; i--) {
+                nextZoned[i] = zones[i] != NO_ZONE ? i : nextZoned[i + 1];
+            }
+
+            this.fares = buildFareMatrix();
+        }
+
+        private int[] buildFareMatrix() {
+            int size = zones.length;
+            FareStrategy strategy = strategies.get(transportType);
+            if (strategy == null || size > MAX_MATRIX_STATIONS) {
+                return null;
+            }
+            int[] matrix = new int[size * size];
+            for (int from = 0; from < size; from++) {
+                for (int to = 0; to < size; to++) {
+                    matrix[from * size + to] = Math.toIntExact(strategy.baseFare(this, from, to));
+                }
+            }
+            return matrix;
+        }
+
+        public Long getLineId() {
+            return lineId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public TransportType getTransportType() {
+            return transportType;
+        }
+
+        public int size() {
+            return zones.length;
+        }
+
+        /**
+         * Position de la station sur la ligne (insensible à la casse), ou -1.
+         */
+        public int indexOf(String stationName) {
+            if (stationName == null) {
+                return -1;
+            }
+            Integer index = stationIndex.get(normalize(stationName));
+            return index != null ? index : -1;
+        }
+
+        public String stationAt(int index) {
+            return stations[index];
+        }
+
+        public Integer zoneAt(int index) {
+            return zones[index] != NO_ZONE ? zones[index] : null;
+        }
+
+        /**
+         * Nombre de zones distinctes traversées entre deux positions (bornes
+         * incluses, dans n'importe quel ordre).
+         */
+        public int distinctZones(int from, int to) {
+            int lo = Math.min(from, to);
+            int hi = Math.max(from, to);
+            if (!contiguousZones) {
+                return countDistinctZones(lo, hi);
+            }
+            int first = nextZoned[lo];
+            if (first > hi) {
+                return 0;
+            }
+            return runsUpTo[hi] - runsUpTo[first] + 1;
+        }
+
+        /**
+         * Prix de base en centimes entre deux positions. Lu dans la matrice
+         * si le trajet est du type de transport de la ligne, calculé par le
+         * barème de son type sinon (0 si le type n'est pas tarifé).
+         */
+        public long baseFare(int from, int to, TransportType tripTransportType) {
+            if (fares != null && transportType == tripTransportType) {
+                return fares[from * zones.length + to];
+            }
+            FareStrategy strategy = strategies.get(tripTransportType);
+            return strategy != null ? strategy.baseFare(this, from, to) : 0L;
+        }
+
+        /**
+         * Matrice des prix de base en centimes, [départ][arrivée] par position,
+         * ou {@code null} si elle n'est pas construite pour cette ligne.
+         */
+        public int[][] fareMatrix() {
+            if (fares == null) {
+                return null;
+            }
+            int size = zones.length;
+            int[][] rows = new int[size][];
+            for (int from = 0; from < size; from++) {
+                rows[from] = Arrays.copyOfRange(fares, from * size, (from + 1) * size);
+            }
+            return rows;
+        }
+
+        private int countDistinctZones(int lo, int hi) {
+            Set<Integer> distinct = new HashSet<>();
+            for (int i = lo; i <= hi; i++) {
+                if (zones[i] != NO_ZONE) {
+                    distinct.add(zones[i]);
+                }
+            }
+            return distinct.size();
+        }
+    }
+}
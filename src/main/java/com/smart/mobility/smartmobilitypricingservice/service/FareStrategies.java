@@ -0,0 +1,39 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.smart.mobility.smartmobilitypricingservice.enums.TransportType;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.List;
+
+/**
+ * Barèmes de prix de base par type de transport : grille officielle
+ * (BUS 150+50/zone, TER 500+500/zone, BRT 400 ou 500), complétée ou remplacée
+ * par les beans {@link FareStrategy} déclarés.
+ */
+@Component
+public class FareStrategies {
+
+    static final FareStrategies STANDARD = new FareStrategies(List.of());
+
+    private final EnumMap<TransportType, FareStrategy> strategies = new EnumMap<>(TransportType.class);
+
+    public FareStrategies(List<FareStrategy> custom) {
+        register(new ZoneCountFareStrategy(TransportType.BUS, Money.ofUnits(150), Money.ofUnits(50)));
+        register(new ZoneCountFareStrategy(TransportType.TER, Money.ofUnits(500), Money.ofUnits(500)));
+        register(new ZoneFlatFareStrategy(TransportType.BRT, Money.ofUnits(400), Money.ofUnits(500)));
+        custom.forEach(this::register);
+    }
+
+    private void register(FareStrategy strategy) {
+        strategies.put(strategy.transportType(), strategy);
+    }
+
+    /**
+     * Barème du type de transport, ou {@code null} si le type n'est pas tarifé
+     * (prix de base nul).
+     */
+    public FareStrategy get(TransportType transportType) {
+        return transportType != null ? strategies.get(transportType) : null;
+    }
+}
@@ -0,0 +1,19 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.smart.mobility.smartmobilitypricingservice.enums.TransportType;
+
+/**
+ * Prix de base d'un type de transport. Un nouveau mode (tram, bateau...)
+ * s'ajoute avec sa constante {@link TransportType} et un bean implémentant
+ * cette interface ; un bean peut aussi remplacer le barème d'un type existant.
+ */
+public interface FareStrategy {
+
+    TransportType transportType();
+
+    /**
+     * Prix de base en centimes entre deux positions de la ligne (dans
+     * n'importe quel ordre).
+     */
+    long baseFare(FareNetworkSnapshot.CompiledLine line, int from, int to);
+}
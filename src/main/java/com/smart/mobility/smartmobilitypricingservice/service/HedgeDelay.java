@@ -0,0 +1,49 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import java.util.Arrays;
+
+/**
+ * Délai avant la requête de secours d'un service : percentile des dernières
+ * latences réussies, borné. Recalculé tous les {@value #RECOMPUTE_EVERY}
+ * appels ; tant qu'il n'y a pas assez de mesures, le délai maximum est utilisé.
+ */
+final class HedgeDelay {
+
+    private static final int WINDOW = 256;
+    private static final int RECOMPUTE_EVERY = 32;
+
+    private final double percentile;
+    private final long minNanos;
+    private final long maxNanos;
+    private final long[] samples = new long[WINDOW];
+    private int count;
+    private int next;
+
+    private volatile long delayNanos;
+
+    HedgeDelay(double percentile, long minNanos, long maxNanos) {
+        this.percentile = percentile;
+        this.minNanos = minNanos;
+        this.maxNanos = Math.max(minNanos, maxNanos);
+        this.delayNanos = this.maxNanos;
+    }
+
+    long delayNanos() {
+        return delayNanos;
+    }
+
+    synchronized void record(long latencyNanos) {
+        samples[next] = latencyNanos;
+        next = (next + 1) % WINDOW;
+        if (count < WINDOW) {
+            count++;
+        }
+        if (next % RECOMPUTE_EVERY == 0) {
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile * count) - 1;
+            long value = sorted[Math.max(0, Math.min(count - 1, rank))];
+            delayNanos = Math.max(minNanos, Math.min(maxNanos, value));
+        }
+    }
+}
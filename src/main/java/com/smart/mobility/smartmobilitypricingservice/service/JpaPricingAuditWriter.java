@@ -0,0 +1,30 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.smart.mobility.smartmobilitypricingservice.model.PricingResult;
+import com.smart.mobility.smartmobilitypricingservice.repository.PricingResultRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Insertion des audits dans la transaction de tarification (mode par défaut).
+ */
+@Component
+@ConditionalOnProperty(name = "pricing.audit.mode", havingValue = "sync", matchIfMissing = true)
+@RequiredArgsConstructor
+public class JpaPricingAuditWriter implements PricingAuditWriter {
+
+    private final PricingResultRepository pricingResultRepository;
+
+    @Override
+    public void write(PricingResult audit) {
+        pricingResultRepository.save(audit);
+    }
+
+    @Override
+    public void writeAll(List<PricingResult> audits) {
+        pricingResultRepository.saveAll(audits);
+    }
+}
@@ -0,0 +1,103 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Arithmétique monétaire en virgule fixe : les montants sont des {@code long}
+ * en centimes et les pourcentages des {@code long} en points de base
+ * (1/100 de pourcent). Les arrondis reproduisent exactement
+ * {@code setScale(2, RoundingMode.HALF_UP)} ; la conversion en
+ * {@link BigDecimal} n'a lieu qu'aux frontières (DTO, entités).
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+
+    private static final long CENTS_PER_UNIT = 100;
+    private static final long BASIS_POINTS_PER_UNIT = 10_000;
+
+    private Money() {
+    }
+
+    /**
+     * Montant entier (ex: un tarif de 150) en centimes.
+     */
+    public static long ofUnits(long units) {
+        return Math.multiplyExact(units, CENTS_PER_UNIT);
+    }
+
+    /**
+     * Montant reçu d'un autre service, arrondi au centime (HALF_UP).
+     */
+    public static long ofDouble(double value) {
+        double scaled = value * CENTS_PER_UNIT;
+        long cents = Math.round(scaled);
+        // Chemin rapide exact pour les montants déjà au centime
+        if (Math.abs(scaled) < 1e15 && (double) cents / CENTS_PER_UNIT == value) {
+            return cents;
+        }
+        return BigDecimal.valueOf(value).setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Montant {@link BigDecimal} arrondi au centime (HALF_UP).
+     */
+    public static long of(BigDecimal value) {
+        return value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toBigDecimal(long cents) {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    /**
+     * Pourcentage en points de base ({@code 12.5} → {@code 1250}), ou
+     * {@code -1} s'il n'est pas représentable exactement au 1/100 de pourcent.
+     */
+    public static long basisPoints(double percentage) {
+        double scaled = percentage * 100;
+        long basisPoints = Math.round(scaled);
+        return Math.abs(scaled) < 1e15 && (double) basisPoints / 100 == percentage ? basisPoints : -1;
+    }
+
+    /**
+     * Pourcentage {@link BigDecimal} en points de base, arrondi (HALF_UP).
+     */
+    public static long basisPoints(BigDecimal percentage) {
+        return percentage.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * {@code cents × basisPoints / 10000}, arrondi au centime (HALF_UP) :
+     * équivalent de {@code amount.multiply(pct / 100).setScale(2, HALF_UP)}.
+     */
+    public static long percentOf(long cents, long basisPoints) {
+        return divideHalfUp(Math.multiplyExact(cents, basisPoints), BASIS_POINTS_PER_UNIT);
+    }
+
+    /**
+     * Remise d'un pourcentage quelconque ; repli exact en {@link BigDecimal}
+     * lorsque le pourcentage a plus de deux décimales.
+     */
+    public static long percentOf(long cents, double percentage) {
+        long basisPoints = basisPoints(percentage);
+        if (basisPoints >= 0) {
+            return percentOf(cents, basisPoints);
+        }
+        BigDecimal rate = BigDecimal.valueOf(percentage).divide(BigDecimal.valueOf(100));
+        return of(toBigDecimal(cents).multiply(rate));
+    }
+
+    /**
+     * Division entière arrondie HALF_UP (à l'écart de zéro sur la moitié).
+     */
+    static long divideHalfUp(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (Math.abs(remainder) * 2 >= Math.abs(divisor)) {
+            quotient += Long.signum(dividend) * Long.signum(divisor);
+        }
+        return quotient;
+    }
+}
@@ -0,0 +1,154 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingResponseDTO;
+import com.smart.mobility.smartmobilitypricingservice.model.PricingResult;
+import com.smart.mobility.smartmobilitypricingservice.repository.PricingResultRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Trajets déjà tarifés, pour répondre aux doublons sans recalculer ni
+ * republier. Les réponses récentes sont gardées en mémoire (LRU) ; un filtre
+ * de Bloom évite l'accès à la base pour la grande majorité des trajets, qui
+ * sont nouveaux. Ce n'est qu'un raccourci de lecture : avant d'être tarifé,
+ * un trajet est toujours réservé dans {@code pricing_trip_keys} ({@link #claim}),
+ * seule garantie valable entre plusieurs instances.
+ */
+@Component
+@Slf4j
+public class PricedTripRegistry {
+
+    private final PricingResultRepository pricingResultRepository;
+    private final Clock clock;
+    private final PricingProperties.Idempotency properties;
+    private final Cache<Long, PricingResponseDTO> recent;
+    private final AtomicLong insertions = new AtomicLong();
+
+    // Deux générations : la précédente reste consultée après une rotation
+    private volatile TripIdBloomFilter current;
+    private volatile TripIdBloomFilter previous;
+    // Tant que le filtre n'est pas amorcé, une réponse négative n'est pas fiable
+    private volatile boolean seeded;
+
+    public PricedTripRegistry(PricingResultRepository pricingResultRepository, Clock clock,
+            PricingProperties pricingProperties) {
+        this.pricingResultRepository = pricingResultRepository;
+        this.clock = clock;
+        this.properties = pricingProperties.getIdempotency();
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(properties.getRecentSize())
+                .expireAfterWrite(properties.getRecentTtl())
+                .build();
+        this.current = newFilter();
+    }
+
+    /**
+     * Réponse déjà calculée pour ce trajet, ou {@code null} s'il est nouveau.
+     */
+    public PricingResponseDTO find(Long tripId) {
+        if (!properties.isEnabled() || tripId == null) {
+            return null;
+        }
+        PricingResponseDTO response = recent.getIfPresent(tripId);
+        if (response != null) {
+            return response;
+        }
+        if (seeded && !mightContain(tripId)) {
+            return null;
+        }
+        response = pricingResultRepository.findByTripId(tripId).map(PricedTripRegistry::toResponse).orElse(null);
+        if (response != null) {
+            recent.put(tripId, response);
+        }
+        return response;
+    }
+
+    /**
+     * Réserve un trajet avant sa tarification, dans la transaction de
+     * l'appelant, même si le filtre de Bloom le donne pour nouveau : il ne
+     * connaît pas les trajets tarifés par les autres instances. Toujours
+     * faite, y compris avec {@code pricing.idempotency.enabled=false}, qui ne
+     * désactive que le cache et le filtre : sans elle, un trajet redélivré
+     * serait publié deux fois.
+     *
+     * @return l'horodatage de la réservation, à reporter sur l'audit (c'est
+     *         autour de lui que {@code findByTripId} cherche la ligne), ou
+     *         {@code null} si le trajet est déjà tarifé (ou en cours de
+     *         tarification) ailleurs
+     */
+    public LocalDateTime claim(Long tripId) {
+        LocalDateTime claimedAt = LocalDateTime.now(clock);
+        return tripId == null || pricingResultRepository.claimTrip(tripId, claimedAt) ? claimedAt : null;
+    }
+
+    /**
+     * Enregistre un trajet tarifé (appelé après le commit).
+     */
+    public void record(Long tripId, PricingResponseDTO response) {
+        if (!properties.isEnabled() || tripId == null) {
+            return;
+        }
+        recent.put(tripId, response);
+        put(tripId);
+    }
+
+    /**
+     * Charge les trajets récents dans le filtre de Bloom.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        LocalDateTime since = LocalDateTime.now(clock).minus(properties.getSeedWindow());
+        List<Long> tripIds = pricingResultRepository.findTripIdsComputedSince(since);
+        tripIds.forEach(this::put);
+        seeded = true;
+        log.info("Priced trip registry seeded with {} trips since {}", tripIds.size(), since);
+    }
+
+    public static PricingResponseDTO toResponse(PricingResult result) {
+        return PricingResponseDTO.builder()
+                .basePrice(result.getBasePrice())
+                .discountApplied(result.getDiscountApplied())
+                .finalPrice(result.getFinalAmount())
+                .capReached(Boolean.TRUE.equals(result.getCapReached()))
+                .build();
+    }
+
+    private boolean mightContain(long tripId) {
+        TripIdBloomFilter older = previous;
+        return current.mightContain(tripId) || (older != null && older.mightContain(tripId));
+    }
+
+    private void put(long tripId) {
+        current.put(tripId);
+        if (insertions.incrementAndGet() > properties.getExpectedTrips()) {
+            rotate();
+        }
+    }
+
+    private synchronized void rotate() {
+        if (insertions.get() <= properties.getExpectedTrips()) {
+            return;
+        }
+        previous = current;
+        current = newFilter();
+        insertions.set(0);
+        log.info("Priced trip bloom filter rotated after {} trips", properties.getExpectedTrips());
+    }
+
+    private TripIdBloomFilter newFilter() {
+        return new TripIdBloomFilter(properties.getExpectedTrips(), properties.getFalsePositiveRate());
+    }
+}
@@ -0,0 +1,319 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.model.PricingResult;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Archives mensuelles de pricing_results.
+ * <p>
+ * Un mois est un fichier NDJSON trié par trip_id et découpé en blocs de
+ * {@code blockSize} lignes, chaque bloc étant un membre gzip indépendant. Un
+ * fichier d'index à côté donne le premier trip_id et la position de chaque
+ * bloc : retrouver un trajet demande une recherche dichotomique dans l'index
+ * (gardé en mémoire) et la décompression d'un seul bloc. Les deux fichiers
+ * sont écrits sous un nom temporaire puis renommés : un mois est archivé si et
+ * seulement si son index existe.
+ */
+@Component
+public class PricingArchive {
+
+    private static final int INDEX_MAGIC = 0x50524131; // "PRA1"
+
+    private final ObjectMapper objectMapper;
+    private final Path dir;
+    private final int blockSize;
+    private final Map<YearMonth, BlockIndex> indexes = new ConcurrentHashMap<>();
+
+    public PricingArchive(ObjectMapper objectMapper, PricingProperties pricingProperties) {
+        this.objectMapper = objectMapper;
+        this.dir = Path.of(pricingProperties.getArchive().getDir());
+        this.blockSize = pricingProperties.getArchive().getBlockSize();
+    }
+
+    public boolean isArchived(YearMonth month) {
+        return Files.exists(indexFile(month));
+    }
+
+    /**
+     * Résultat archivé d'un trajet, cherché dans les mois donnés.
+     */
+    public Optional<PricingResult> find(Long tripId, YearMonth... months) {
+        for (YearMonth month : new LinkedHashSet<>(Arrays.asList(months))) {
+            if (!isArchived(month)) {
+                continue;
+            }
+            try {
+                Optional<PricingResult> result = findIn(month, tripId);
+                if (result.isPresent()) {
+                    return result;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unreadable pricing archive " + dataFile(month), e);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Ouvre l'écriture de l'archive d'un mois. Les résultats doivent être
+     * ajoutés par trip_id croissant ; l'archive n'existe qu'après
+     * {@link Writer#commit()}.
+     */
+    public Writer writer(YearMonth month) throws IOException {
+        Files.createDirectories(dir);
+        return new Writer(month);
+    }
+
+    private Optional<PricingResult> findIn(YearMonth month, long tripId) throws IOException {
+        BlockIndex index = indexes.get(month);
+        if (index == null) {
+            index = readIndex(month);
+            indexes.put(month, index);
+        }
+        int block = index.blockOf(tripId);
+        if (block < 0) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(dataFile(month), StandardOpenOption.READ)) {
+            channel.position(index.offsets[block]);
+            InputStream member = new BoundedInputStream(Channels.newInputStream(channel),
+                    index.offsets[block + 1] - index.offsets[block]);
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new GZIPInputStream(member), StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                PricingResult result = objectMapper.readValue(line, PricingResult.class);
+                if (result.getTripId() == tripId) {
+                    return Optional.of(result);
+                }
+                if (result.getTripId() > tripId) {
+                    break;
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private BlockIndex readIndex(YearMonth month) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(indexFile(month))))) {
+            if (in.readInt() != INDEX_MAGIC) {
+                throw new IOException("Not a pricing archive index: " + indexFile(month));
+            }
+            int blocks = in.readInt();
+            long[] firstTripIds = new long[blocks];
+            long[] offsets = new long[blocks + 1];
+            for (int i = 0; i < blocks; i++) {
+                firstTripIds[i] = in.readLong();
+                offsets[i] = in.readLong();
+            }
+            offsets[blocks] = in.readLong();
+            return new BlockIndex(firstTripIds, offsets);
+        }
+    }
+
+    private Path dataFile(YearMonth month) {
+        return dir.resolve("pricing-results-" + month + ".ndjson.gz");
+    }
+
+    private Path indexFile(YearMonth month) {
+        return dir.resolve("pricing-results-" + month + ".idx");
+    }
+
+    /**
+     * Écriture de l'archive d'un mois.
+     */
+    public final class Writer implements AutoCloseable {
+
+        private final YearMonth month;
+        private final Path dataTemp;
+        private final Path indexTemp;
+        private final FileChannel channel;
+        private final OutputStream file;
+        private long[] firstTripIds = new long[16];
+        private long[] offsets = new long[17];
+        private int blocks;
+        private int rowsInBlock;
+        private long lastTripId = Long.MIN_VALUE;
+        private GZIPOutputStream block;
+        private long rows;
+        private boolean committed;
+
+        private Writer(YearMonth month) throws IOException {
+            this.month = month;
+            this.dataTemp = dataFile(month).resolveSibling(dataFile(month).getFileName() + ".tmp");
+            this.indexTemp = indexFile(month).resolveSibling(indexFile(month).getFileName() + ".tmp");
+            this.channel = FileChannel.open(dataTemp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            this.file = Channels.newOutputStream(channel);
+        }
+
+        public void append(PricingResult result) throws IOException {
+            if (result.getTripId() <= lastTripId) {
+                throw new IllegalArgumentException("Archive rows must be appended by increasing trip id");
+            }
+            if (block == null) {
+                openBlock(result.getTripId());
+            }
+            block.write(objectMapper.writeValueAsBytes(result));
+            block.write('\n');
+            lastTripId = result.getTripId();
+            rows++;
+            if (++rowsInBlock == blockSize) {
+                closeBlock();
+            }
+        }
+
+        public long rows() {
+            return rows;
+        }
+
+        /**
+         * Termine les fichiers, les force sur disque et les rend visibles
+         * (l'index en dernier).
+         */
+        public void commit() throws IOException {
+            if (block != null) {
+                closeBlock();
+            }
+            offsets[blocks] = channel.position();
+            channel.force(true);
+            channel.close();
+            try (DataOutputStream index = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(indexTemp)))) {
+                index.writeInt(INDEX_MAGIC);
+                index.writeInt(blocks);
+                for (int i = 0; i < blocks; i++) {
+                    index.writeLong(firstTripIds[i]);
+                    index.writeLong(offsets[i]);
+                }
+                index.writeLong(offsets[blocks]);
+            }
+            try (FileChannel index = FileChannel.open(indexTemp, StandardOpenOption.WRITE)) {
+                index.force(true);
+            }
+            Files.move(dataTemp, dataFile(month), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            Files.move(indexTemp, indexFile(month), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            indexes.remove(month);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                channel.close();
+                Files.deleteIfExists(dataTemp);
+                Files.deleteIfExists(indexTemp);
+            }
+        }
+
+        private void openBlock(long firstTripId) throws IOException {
+            if (blocks == firstTripIds.length) {
+                firstTripIds = Arrays.copyOf(firstTripIds, blocks * 2);
+                offsets = Arrays.copyOf(offsets, blocks * 2 + 1);
+            }
+            firstTripIds[blocks] = firstTripId;
+            offsets[blocks] = channel.position();
+            // finish() termine le membre gzip sans fermer le fichier
+            block = new GZIPOutputStream(new FilterOutputStream(file) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+
+                @Override
+                public void close() {
+                }
+            }, 64 * 1024);
+        }
+
+        private void closeBlock() throws IOException {
+            block.finish();
+            block.flush();
+            block = null;
+            blocks++;
+            rowsInBlock = 0;
+        }
+    }
+
+    /**
+     * Premier trip_id et position de chaque bloc ; {@code offsets} a une
+     * entrée de plus, la fin du fichier.
+     */
+    private record BlockIndex(long[] firstTripIds, long[] offsets) {
+
+        int blockOf(long tripId) {
+            int position = Arrays.binarySearch(firstTripIds, tripId);
+            return position >= 0 ? position : -position - 2;
+        }
+    }
+
+    /**
+     * Lecture limitée à un bloc.
+     */
+    private static final class BoundedInputStream extends InputStream {
+
+        private final InputStream in;
+        private long remaining;
+
+        private BoundedInputStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(b, off, (int) Math.min(len, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.model.PricingResult;
+import com.smart.mobility.smartmobilitypricingservice.repository.PricingResultRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Maintenance de pricing_results : crée à l'avance les partitions mensuelles
+ * et archive les mois plus anciens que {@code retainMonths} (fichier puis
+ * suppression de la partition). Si la table n'est pas partitionnée, les mois
+ * archivés sont supprimés par lots. À n'activer que sur une instance.
+ */
+@Component
+@ConditionalOnProperty(name = "pricing.archive.enabled", havingValue = "true")
+@Slf4j
+public class PricingArchiveJob {
+
+    private static final String TABLE = "pricing_results";
+    private static final String OVERFLOW_PARTITION = "p_max";
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private final PricingResultRepository pricingResultRepository;
+    private final PricingArchive pricingArchive;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final PricingProperties.Archive properties;
+
+    public PricingArchiveJob(PricingResultRepository pricingResultRepository, PricingArchive pricingArchive,
+            JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, Clock clock,
+            PricingProperties pricingProperties) {
+        this.pricingResultRepository = pricingResultRepository;
+        this.pricingArchive = pricingArchive;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.properties = pricingProperties.getArchive();
+    }
+
+    @Scheduled(cron = "${pricing.archive.cron:0 30 3 * * *}")
+    public void run() {
+        YearMonth current = YearMonth.now(clock);
+        TreeSet<YearMonth> partitions = partitions();
+        if (!partitions.isEmpty()) {
+            createPartitionsAhead(current, partitions);
+        }
+        YearMonth cutoff = current.minusMonths(properties.getRetainMonths());
+        for (YearMonth month : monthsBefore(cutoff, partitions)) {
+            try {
+                archive(month, partitions.contains(month));
+            } catch (Exception e) {
+                // Le mois reste en base et sera repris au prochain passage
+                log.error("Archival of pricing results for {} failed", month, e);
+                return;
+            }
+        }
+    }
+
+    private void archive(YearMonth month, boolean partitioned) throws IOException {
+        LocalDateTime from = month.atDay(1).atStartOfDay();
+        LocalDateTime to = month.plusMonths(1).atDay(1).atStartOfDay();
+        // Index présent : fichier déjà écrit, seule la suppression a pu échouer
+        if (!pricingArchive.isArchived(month)) {
+            try (PricingArchive.Writer writer = pricingArchive.writer(month)) {
+                long afterTripId = Long.MIN_VALUE;
+                List<PricingResult> page;
+                do {
+                    page = pricingResultRepository.findComputedBetweenAfterTripId(from, to, afterTripId,
+                            PageRequest.of(0, properties.getPageSize()));
+                    for (PricingResult result : page) {
+                        writer.append(result);
+                    }
+                    if (!page.isEmpty()) {
+                        afterTripId = page.get(page.size() - 1).getTripId();
+                    }
+                } while (page.size() == properties.getPageSize());
+                writer.commit();
+                log.info("Archived {} pricing results for {}", writer.rows(), month);
+            }
+        }
+        if (partitioned) {
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " DROP PARTITION " + PARTITION_NAME.format(month));
+        } else {
+            List<Long> ids;
+            do {
+                ids = pricingResultRepository.findIdsComputedBetween(from, to,
+                        PageRequest.of(0, properties.getPageSize()));
+                List<Long> batch = ids;
+                transactionTemplate.executeWithoutResult(
+                        status -> pricingResultRepository.deleteAllByIdInBatch(batch));
+            } while (ids.size() == properties.getPageSize());
+        }
+        log.info("Pricing results for {} removed from {}", month, TABLE);
+    }
+
+    /**
+     * Mois à archiver, du plus ancien au plus récent : les partitions (ou, sans
+     * partitionnement, les mois depuis le plus ancien résultat) avant la limite.
+     */
+    private Set<YearMonth> monthsBefore(YearMonth cutoff, Set<YearMonth> partitions) {
+        Set<YearMonth> months = new TreeSet<>();
+        if (!partitions.isEmpty()) {
+            partitions.stream().filter(month -> month.isBefore(cutoff)).forEach(months::add);
+            return months;
+        }
+        LocalDateTime oldest = pricingResultRepository.findOldestComputedAt();
+        if (oldest != null) {
+            for (YearMonth month = YearMonth.from(oldest); month.isBefore(cutoff); month = month.plusMonths(1)) {
+                months.add(month);
+            }
+        }
+        return months;
+    }
+
+    /**
+     * Partitions mensuelles existantes (vide si la table n'est pas partitionnée).
+     */
+    private TreeSet<YearMonth> partitions() {
+        TreeSet<YearMonth> months = new TreeSet<>();
+        for (String name : jdbcTemplate.queryForList("SELECT PARTITION_NAME FROM information_schema.PARTITIONS "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL",
+                String.class, TABLE)) {
+            if (!name.equals(OVERFLOW_PARTITION)) {
+                months.add(YearMonth.parse(name.substring(1), DateTimeFormatter.ofPattern("yyyyMM")));
+            }
+        }
+        return months;
+    }
+
+    /**
+     * Découpe la partition de débordement pour que le mois courant et les
+     * {@code partitionsAhead} suivants aient chacun la leur.
+     */
+    private void createPartitionsAhead(YearMonth current, TreeSet<YearMonth> partitions) {
+        YearMonth last = partitions.last();
+        YearMonth until = current.plusMonths(properties.getPartitionsAhead());
+        for (YearMonth month = last.plusMonths(1); !month.isAfter(until); month = month.plusMonths(1)) {
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " REORGANIZE PARTITION " + OVERFLOW_PARTITION
+                    + " INTO (PARTITION " + PARTITION_NAME.format(month) + " VALUES LESS THAN ('"
+                    + month.plusMonths(1).atDay(1) + "'), PARTITION " + OVERFLOW_PARTITION
+                    + " VALUES LESS THAN (MAXVALUE))");
+            log.info("Created partition {} of {}", PARTITION_NAME.format(month), TABLE);
+        }
+    }
+}
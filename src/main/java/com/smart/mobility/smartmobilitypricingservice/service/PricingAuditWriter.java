@@ -0,0 +1,16 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.smart.mobility.smartmobilitypricingservice.model.PricingResult;
+
+import java.util.List;
+
+/**
+ * Persistance des audits de tarification, synchrone ou différée selon
+ * {@code pricing.audit.mode}.
+ */
+public interface PricingAuditWriter {
+
+    void write(PricingResult audit);
+
+    void writeAll(List<PricingResult> audits);
+}
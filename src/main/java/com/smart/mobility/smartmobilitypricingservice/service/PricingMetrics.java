@@ -0,0 +1,135 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.smart.mobility.smartmobilitypricingservice.enums.TransportType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Instrumentation du pipeline de tarification.
+ * <p>
+ * Les étapes d'entrée/sortie (trajet complet, audit, publication) sont des
+ * observations : un timer et un span Zipkin chacune. Les étapes de calcul
+ * (prix de base, remises, plafond) ne durent que quelques microsecondes ;
+ * un span coûterait plus cher que l'étape, elles alimentent donc seulement le
+ * timer {@code pricing.stage}, créé une fois pour toutes par étape et type de
+ * transport.
+ */
+@Component
+public class PricingMetrics {
+
+    public static final String TRIP_OBSERVATION = "pricing.trip";
+    public static final String AUDIT_OBSERVATION = "pricing.audit";
+    public static final String PUBLISH_OBSERVATION = "pricing.publish";
+
+    // Valeur du tag transport pour les opérations portant sur un lot
+    public static final String BATCH_TRANSPORT = "BATCH";
+
+    // Un tag par type de transport connu, plus OTHER pour les types inconnus
+    private static final String[] TRANSPORTS = transportTags();
+
+    private final ObservationRegistry observationRegistry;
+    private final Timer[][] stageTimers;
+
+    public PricingMetrics(MeterRegistry meterRegistry, ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+        Stage[] stages = Stage.values();
+        this.stageTimers = new Timer[stages.length][TRANSPORTS.length];
+        for (Stage stage : stages) {
+            for (int transport = 0; transport < TRANSPORTS.length; transport++) {
+                stageTimers[stage.ordinal()][transport] = Timer.builder("pricing.stage")
+                        .description("Time spent in a CPU-bound stage of trip pricing")
+                        .tag("stage", stage.tag)
+                        .tag("transport", TRANSPORTS[transport])
+                        .register(meterRegistry);
+            }
+        }
+    }
+
+    private static String[] transportTags() {
+        TransportType[] types = TransportType.values();
+        String[] tags = new String[types.length + 1];
+        for (TransportType type : types) {
+            tags[type.ordinal()] = type.name();
+        }
+        tags[types.length] = "OTHER";
+        return tags;
+    }
+
+    /**
+     * Index du type de transport dans les timers.
+     */
+    public int transportIndex(TransportType transportType) {
+        return transportType != null ? transportType.ordinal() : TRANSPORTS.length - 1;
+    }
+
+    public void record(Stage stage, int transportIndex, long nanos) {
+        stageTimers[stage.ordinal()][transportIndex].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Observation du calcul d'un trajet. Les tags de résultat ont une valeur par
+     * défaut, remplacée avant l'arrêt : toutes les séries ont les mêmes clés.
+     */
+    public Observation tripObservation(int transportIndex) {
+        return Observation.createNotStarted(TRIP_OBSERVATION, observationRegistry)
+                .contextualName("price-trip")
+                .lowCardinalityKeyValue("transport", TRANSPORTS[transportIndex])
+                .lowCardinalityKeyValue("outcome", Outcome.PRICED.tag)
+                .lowCardinalityKeyValue("penalty", "false")
+                .lowCardinalityKeyValue("cap.reached", "false")
+                .lowCardinalityKeyValue("fallback.profile", "false");
+    }
+
+    /**
+     * Observation d'une étape d'entrée/sortie ({@link #AUDIT_OBSERVATION},
+     * {@link #PUBLISH_OBSERVATION}) ; {@code transport} est un type de transport
+     * ou {@link #BATCH_TRANSPORT}.
+     */
+    public Observation stageObservation(String name, String transport) {
+        return Observation.createNotStarted(name, observationRegistry)
+                .lowCardinalityKeyValue("transport", transport);
+    }
+
+    public String transportTag(int transportIndex) {
+        return TRANSPORTS[transportIndex];
+    }
+
+    /**
+     * Étapes de calcul d'un trajet.
+     */
+    public enum Stage {
+        BASE_PRICE("base_price"),
+        SUBSCRIPTION_DISCOUNT("subscription_discount"),
+        DISCOUNT_RULES("discount_rules"),
+        DAILY_CAP("daily_cap");
+
+        private final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * Issue du calcul d'un trajet.
+     */
+    public enum Outcome {
+        PRICED("priced"),
+        DUPLICATE("duplicate");
+
+        private final String tag;
+
+        Outcome(String tag) {
+            this.tag = tag;
+        }
+
+        public String tag() {
+            return tag;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingContextDTO;
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingQuoteRequest;
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingResponseDTO;
+import com.smart.mobility.smartmobilitypricingservice.dto.TripCompletedEvent;
+import com.smart.mobility.smartmobilitypricingservice.enums.TransportType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+
+/**
+ * Devis d'un trajet avant l'embarquement, sans audit, publication ni
+ * modification du cumul du jour.
+ * <p>
+ * Le prix avant plafond ne dépend que du trajet, de l'heure (au sens des
+ * règles compilées) et du meilleur taux d'abonnement applicable : il est mis
+ * en cache sur ces critères. Le cache est vidé dès que le réseau tarifaire ou
+ * le jeu de règles change de snapshot. Seul le plafond, évalué contre le cumul
+ * local du jour, est calculé à chaque demande : un devis n'accède jamais à la
+ * base.
+ */
+@Service
+@Slf4j
+public class PricingQuoteService {
+
+    private final PricingService pricingService;
+    private final FareNetworkService fareNetworkService;
+    private final DiscountRuleEngine discountRuleEngine;
+    private final TripContextFetcher tripContextFetcher;
+    private final DailySpentLedger dailySpentLedger;
+    private final Clock clock;
+    private final boolean cacheEnabled;
+    private final Cache<QuoteKey, PricingService.FareQuote> cache;
+
+    // Snapshots pour lesquels le cache est valide ; la génération fait partie de la clé
+    private volatile Tariff tariff = new Tariff(null, null, 0);
+
+    public PricingQuoteService(PricingService pricingService, FareNetworkService fareNetworkService,
+            DiscountRuleEngine discountRuleEngine, TripContextFetcher tripContextFetcher,
+            DailySpentLedger dailySpentLedger, Clock clock, MeterRegistry meterRegistry,
+            PricingProperties pricingProperties) {
+        this.pricingService = pricingService;
+        this.fareNetworkService = fareNetworkService;
+        this.discountRuleEngine = discountRuleEngine;
+        this.tripContextFetcher = tripContextFetcher;
+        this.dailySpentLedger = dailySpentLedger;
+        this.clock = clock;
+        PricingProperties.Quote properties = pricingProperties.getQuote();
+        this.cacheEnabled = properties.isCacheEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getCacheMaxSize())
+                .expireAfterWrite(properties.getCacheTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "pricingQuote");
+    }
+
+    public PricingResponseDTO quote(PricingQuoteRequest request) {
+        TripCompletedEvent trip = TripCompletedEvent.builder()
+                .userId(request.userId())
+                .transportType(request.transportType())
+                .transportLineId(request.transportLineId())
+                .startLocation(request.startLocation())
+                .endLocation(request.endLocation())
+                .startTime(request.startTime() != null ? request.startTime() : LocalDateTime.now(clock))
+                .build();
+        // Contexte issu du cache des contextes en régime normal ; sans utilisateur, tarif de base
+        TripContextFetcher.TripContext context = request.userId() != null
+                ? tripContextFetcher.fetch(request.userId(), false)
+                : null;
+        PricingContextDTO summary = context != null ? context.summary() : TripContextFetcher.defaultProfile();
+        SubscriptionRates subscriptionRates = context != null ? context.subscriptionRates() : SubscriptionRates.NONE;
+
+        Tariff current = currentTariff();
+        long bucket = current.rules().quoteBucket(trip.transportType(), trip.startTime());
+        PricingService.FareQuote fare;
+        if (!cacheEnabled || bucket == DiscountRuleSnapshot.NOT_CACHEABLE) {
+            fare = pricingService.quoteFare(trip, subscriptionRates, current.network(), current.rules());
+        } else {
+            QuoteKey key = new QuoteKey(current.generation(), trip.transportLineId(), trip.startLocation(),
+                    trip.endLocation(), trip.transportType(), bucket,
+                    subscriptionRates.best(trip.transportType()));
+            fare = cache.get(key,
+                    k -> pricingService.quoteFare(trip, subscriptionRates, current.network(), current.rules()));
+        }
+
+        long spent = request.userId() != null ? dailySpentLedger.spent(request.userId(), dailySpentLedger.today())
+                : 0L;
+        return pricingService.quoteResponse(fare, summary, spent);
+    }
+
+    /**
+     * Snapshots courants ; un changement de réseau ou de règles ouvre une
+     * nouvelle génération et vide le cache.
+     */
+    private Tariff currentTariff() {
+        FareNetworkSnapshot network = fareNetworkService.current();
+        DiscountRuleSnapshot rules = discountRuleEngine.current();
+        Tariff current = tariff;
+        if (current.network() == network && current.rules() == rules) {
+            return current;
+        }
+        synchronized (this) {
+            current = tariff;
+            if (current.network() != network || current.rules() != rules) {
+                current = new Tariff(network, rules, current.generation() + 1);
+                tariff = current;
+                cache.invalidateAll();
+                log.info("Quote cache cleared: fare network or discount rules changed (rule set v{})",
+                        rules.getVersion());
+            }
+            return current;
+        }
+    }
+
+    private record Tariff(FareNetworkSnapshot network, DiscountRuleSnapshot rules, int generation) {
+    }
+
+    /**
+     * Critères dont dépend le prix avant plafond ; {@code subscriptionRate}
+     * est le meilleur taux d'abonnement applicable au transport.
+     */
+    private record QuoteKey(int generation, Long lineId, String startLocation, String endLocation,
+            TransportType transportType, long ruleBucket, double subscriptionRate) {
+    }
+}
@@ -3,30 +3,35 @@ package com.smart.mobility.smartmobilitypricingservice.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.smart.mobility.smartmobilitypricingservice.dto.PricingContextDTO;
-import com.smart.mobility.smartmobilitypricingservice.dto.SubscriptionContextDTO;
 import com.smart.mobility.smartmobilitypricingservice.dto.TripCompletedEvent;
 import com.smart.mobility.smartmobilitypricingservice.dto.PricingResponseDTO;
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingResultView;
 import com.smart.mobility.smartmobilitypricingservice.dto.AppliedDiscountDto;
 import com.smart.mobility.smartmobilitypricingservice.dto.TripPricedEvent;
-import com.smart.mobility.smartmobilitypricingservice.model.DiscountRule;
-import com.smart.mobility.smartmobilitypricingservice.model.FareSection;
 import com.smart.mobility.smartmobilitypricingservice.model.PricingResult;
-import com.smart.mobility.smartmobilitypricingservice.proxy.AccountServiceClient;
-import com.smart.mobility.smartmobilitypricingservice.repository.DiscountRuleRepository;
-import com.smart.mobility.smartmobilitypricingservice.repository.FareSectionRepository;
 import com.smart.mobility.smartmobilitypricingservice.repository.PricingResultRepository;
-import com.smart.mobility.smartmobilitypricingservice.proxy.UserServiceClient;
 import com.smart.mobility.smartmobilitypricingservice.messaging.PricingEventPublisher;
+import io.micrometer.observation.Observation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.time.LocalTime;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 
 /**
  * Service de tarification dynamique.
@@ -38,16 +43,28 @@ import java.util.List;
 @Slf4j
 public class PricingService {
 
-    // Référentiels pour les règles de remise et les résultats d'audit
-    private final DiscountRuleRepository discountRuleRepository;
+    private static final BigDecimal FULL_PERCENTAGE = BigDecimal.valueOf(100);
+    // Type de transport audité pour les trajets de type inconnu (re-tarifés de la même façon)
+    private static final String UNKNOWN_TRANSPORT_CODE = "OTHER";
+
+    // Règles de remise compilées et référentiel des résultats d'audit
+    private final DiscountRuleEngine discountRuleEngine;
     private final PricingResultRepository pricingResultRepository;
-    private final FareSectionRepository fareSectionRepository;
 
-    // Clients pour la communication inter-services (User Service)
-    private final UserServiceClient userServiceClient;
+    // Écriture des audits, dans la transaction ou différée (pricing.audit.mode)
+    private final PricingAuditWriter pricingAuditWriter;
+
+    // Trajets déjà tarifés (redélivrances, nouvelles tentatives)
+    private final PricedTripRegistry pricedTripRegistry;
+
+    // Réseau tarifaire compilé en mémoire (sections, zones)
+    private final FareNetworkService fareNetworkService;
 
-    // Client pour la communication inter-services (Billing Service)
-    private final AccountServiceClient accountServiceClient;
+    // Appels concurrents vers le User Service et le Billing Service
+    private final TripContextFetcher tripContextFetcher;
+
+    // Cumul local de la dépense du jour (plafond journalier)
+    private final DailySpentLedger dailySpentLedger;
 
     // Publication des événements de prix vers RabbitMQ
     private final PricingEventPublisher pricingEventPublisher;
@@ -55,6 +72,9 @@ public class PricingService {
     // Utilitaire pour transformer les objets en JSON (Audit)
     private final ObjectMapper objectMapper;
 
+    // Timers des étapes de calcul et observations (spans) des entrées/sorties
+    private final PricingMetrics pricingMetrics;
+
     /**
      * Calcule le prix final d'un trajet et publie le résultat.
      */
@@ -62,336 +82,603 @@ public class PricingService {
     public PricingResponseDTO calculateAndProcessTrip(TripCompletedEvent event) {
         log.info("Calculating dynamic pricing for trip {} and user {}", event.tripId(), event.userId());
 
-        // 1a. Récupération du contexte utilisateur (Abonnements, Plafond)
-        PricingContextDTO summary = fetchUserSummary(event.userId());
+        int transport = pricingMetrics.transportIndex(event.transportType());
+        Observation observation = pricingMetrics.tripObservation(transport).start();
+        Observation.Scope scope = observation.openScope();
+        try {
+            // 0. Trajet déjà tarifé : résultat enregistré, sans recalcul ni publication
+            PricingResponseDTO alreadyPriced = pricedTripRegistry.find(event.tripId());
+            if (alreadyPriced != null) {
+                log.info("Trip {} already priced, returning the stored result", event.tripId());
+                observation.lowCardinalityKeyValue("outcome", PricingMetrics.Outcome.DUPLICATE.tag());
+                return alreadyPriced;
+            }
+            // Réservation du trajet avant tout calcul, cumul du jour ou publication
+            LocalDateTime claimedAt = pricedTripRegistry.claim(event.tripId());
+            if (claimedAt == null) {
+                log.info("Trip {} already claimed by a concurrent pricing", event.tripId());
+                observation.lowCardinalityKeyValue("outcome", PricingMetrics.Outcome.DUPLICATE.tag());
+                return storedResponse(event.tripId());
+            }
+
+            // 1. Contexte utilisateur (Abonnements, Plafond) et, au premier trajet du jour, daily spent
+            LocalDate day = dailySpentLedger.today();
+            TripContextFetcher.TripContext context = tripContextFetcher.fetch(event.userId(),
+                    dailySpentLedger.needsSeed(event.userId(), day));
+            seedDailySpent(event.userId(), day, context);
+
+            PricedTrip priced = priceTrip(event, context.subscriptionRates(),
+                    settleDailyCap(event, day, context.summary()));
+            stampAudit(priced, claimedAt);
+            observation.lowCardinalityKeyValue("penalty", String.valueOf(event.mismatch()))
+                    .lowCardinalityKeyValue("cap.reached", String.valueOf(priced.response().isCapReached()))
+                    .lowCardinalityKeyValue("fallback.profile", String.valueOf(context.fallbackProfile()));
+
+            // 5. Audit & Log
+            if (priced.audit() != null) {
+                pricingMetrics.stageObservation(PricingMetrics.AUDIT_OBSERVATION, pricingMetrics.transportTag(transport))
+                        .observe(() -> pricingAuditWriter.write(priced.audit()));
+            }
+
+            // 6. Publication de l'événement vers Billing Service (avec flag penalty)
+            pricingMetrics.stageObservation(PricingMetrics.PUBLISH_OBSERVATION, pricingMetrics.transportTag(transport))
+                    .observe(() -> pricingEventPublisher.publishTripPricedEvent(priced.pricedEvent()));
+
+            recordPriced(List.of(priced));
+            return priced.response();
+        } catch (RuntimeException e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            scope.close();
+            observation.stop();
+        }
+    }
+
+    /**
+     * Tarifie un lot de trajets dans une seule transaction : contexte récupéré
+     * une fois par utilisateur, audits écrits en un seul lot, puis
+     * publication des événements. Chaque nouveau trajet est réservé avant le
+     * calcul ; les trajets déjà tarifés (ou réservés ailleurs), ou présents
+     * deux fois dans le lot, reçoivent la réponse enregistrée, {@code null}
+     * si le trajet réservé ailleurs n'a pas encore son audit (écriture
+     * différée) : il est déjà publié, le lot n'a pas à échouer pour lui.
+     */
+    @Transactional
+    public List<PricingResponseDTO> calculateAndProcessTrips(List<TripCompletedEvent> events) {
+        log.info("Calculating dynamic pricing for a batch of {} trips", events.size());
+
+        Map<Long, PricingResponseDTO> responsesByTrip = new HashMap<>();
+        Set<Long> batchTripIds = new HashSet<>();
+        List<TripCompletedEvent> newTrips = new ArrayList<>(events.size());
+        for (TripCompletedEvent event : events) {
+            if (event.tripId() != null && !batchTripIds.add(event.tripId())) {
+                continue;
+            }
+            PricingResponseDTO alreadyPriced = pricedTripRegistry.find(event.tripId());
+            if (alreadyPriced != null) {
+                responsesByTrip.put(event.tripId(), alreadyPriced);
+            } else {
+                newTrips.add(event);
+            }
+        }
+        // Réservations par trip_id croissant : deux lots concurrents ne s'attendent pas mutuellement
+        Map<Long, LocalDateTime> claimedAt = new HashMap<>();
+        Set<Long> claimedElsewhere = new HashSet<>();
+        newTrips.stream().map(TripCompletedEvent::tripId).filter(Objects::nonNull).sorted().forEach(tripId -> {
+            LocalDateTime claimed = pricedTripRegistry.claim(tripId);
+            if (claimed != null) {
+                claimedAt.put(tripId, claimed);
+            } else {
+                claimedElsewhere.add(tripId);
+            }
+        });
+        if (!claimedElsewhere.isEmpty()) {
+            newTrips.removeIf(event -> claimedElsewhere.contains(event.tripId()));
+            claimedElsewhere.forEach(tripId -> responsesByTrip.put(tripId, findPricedTrip(tripId)));
+        }
+        if (newTrips.size() < events.size()) {
+            log.info("{} trips of the batch were already priced", events.size() - newTrips.size());
+        }
+
+        LocalDate day = dailySpentLedger.today();
+        Map<String, TripContextFetcher.TripContext> contexts = tripContextFetcher.fetchAll(
+                newTrips.stream().map(TripCompletedEvent::userId).toList(),
+                userId -> dailySpentLedger.needsSeed(userId, day));
+        contexts.forEach((userId, context) -> seedDailySpent(userId, day, context));
+
+        List<PricedTrip> pricedTrips = new ArrayList<>(newTrips.size());
+        for (TripCompletedEvent event : newTrips) {
+            TripContextFetcher.TripContext context = contexts.get(event.userId());
+            PricedTrip priced = priceTrip(event, context.subscriptionRates(),
+                    settleDailyCap(event, day, context.summary()));
+            stampAudit(priced, claimedAt.get(event.tripId()));
+            pricedTrips.add(priced);
+            responsesByTrip.put(event.tripId(), priced.response());
+        }
+
+        List<PricingResult> audits = new ArrayList<>(pricedTrips.size());
+        for (PricedTrip priced : pricedTrips) {
+            if (priced.audit() != null) {
+                audits.add(priced.audit());
+            }
+        }
+        pricingMetrics.stageObservation(PricingMetrics.AUDIT_OBSERVATION, PricingMetrics.BATCH_TRANSPORT)
+                .observe(() -> pricingAuditWriter.writeAll(audits));
+
+        pricingMetrics.stageObservation(PricingMetrics.PUBLISH_OBSERVATION, PricingMetrics.BATCH_TRANSPORT)
+                .observe(() -> {
+                    for (PricedTrip priced : pricedTrips) {
+                        pricingEventPublisher.publishTripPricedEvent(priced.pricedEvent());
+                    }
+                });
+        recordPriced(pricedTrips);
+
+        List<PricingResponseDTO> responses = new ArrayList<>(events.size());
+        for (TripCompletedEvent event : events) {
+            responses.add(responsesByTrip.get(event.tripId()));
+        }
+        return responses;
+    }
+
+    /**
+     * Simulation d'un lot (dry-run) : prix calculés avec le contexte et les
+     * règles courants, y compris pour des trajets déjà tarifés, sans audit ni
+     * publication. Le cumul du jour n'est pas modifié : le plafond est évalué
+     * contre le cumul courant augmenté des trajets précédents du lot.
+     */
+    public List<PricingResponseDTO> previewTrips(List<TripCompletedEvent> events) {
+        LocalDate day = dailySpentLedger.today();
+        Map<String, TripContextFetcher.TripContext> contexts = tripContextFetcher.fetchAll(
+                events.stream().map(TripCompletedEvent::userId).toList(),
+                userId -> dailySpentLedger.needsSeed(userId, day));
+        contexts.forEach((userId, context) -> seedDailySpent(userId, day, context));
+
+        return simulateTrips(events, contexts, new HashMap<>(), TripCompletedEvent::userId,
+                event -> dailySpentLedger.spent(event.userId(), day), false);
+    }
+
+    /**
+     * Re-tarification de trajets passés avec les règles et le contexte
+     * utilisateur courants, sans effet de bord. Le plafond est rejoué par
+     * utilisateur et jour de départ, dans l'ordre des trajets reçus (à trier
+     * par heure de départ), à partir du cumul des trajets qui ne sont pas
+     * rejoués. Un trajet qui ne peut plus être tarifé (ex: station supprimée)
+     * reçoit une réponse {@code null} au lieu de faire échouer le lot.
+     *
+     * @param simulatedSpent cumul rejoué, par clé {@link #dailyCapKey}, complété
+     *                       d'un appel à l'autre
+     * @param initialSpent   cumul du jour (centimes) avant le premier trajet
+     *                       rejoué d'une clé
+     */
+    public List<PricingResponseDTO> repriceTrips(List<TripCompletedEvent> events, Map<String, Long> simulatedSpent,
+            ToLongFunction<TripCompletedEvent> initialSpent) {
+        Map<String, TripContextFetcher.TripContext> contexts = tripContextFetcher.fetchAll(
+                events.stream().map(TripCompletedEvent::userId).toList(), userId -> false);
+        return simulateTrips(events, contexts, simulatedSpent, PricingService::dailyCapKey, initialSpent, true);
+    }
+
+    /**
+     * Clé du cumul rejoué par {@link #repriceTrips} : utilisateur et jour de départ.
+     */
+    public static String dailyCapKey(TripCompletedEvent event) {
+        return event.userId() + "@" + (event.startTime() != null ? event.startTime().toLocalDate() : "");
+    }
+
+    private List<PricingResponseDTO> simulateTrips(List<TripCompletedEvent> events,
+            Map<String, TripContextFetcher.TripContext> contexts, Map<String, Long> simulatedSpent,
+            Function<TripCompletedEvent, String> capKey, ToLongFunction<TripCompletedEvent> initialSpent,
+            boolean skipFailures) {
+        List<PricingResponseDTO> responses = new ArrayList<>(events.size());
+        for (TripCompletedEvent event : events) {
+            TripContextFetcher.TripContext context = contexts.get(event.userId());
+            PricingContextDTO summary = context.summary();
+            String key = capKey.apply(event);
+            CapSettlement capSettlement = (amount, penalty) -> {
+                long spent = simulatedSpent.computeIfAbsent(key, ignored -> initialSpent.applyAsLong(event));
+                CapOutcome outcome = applyDailyCap(amount, spent, summary, penalty);
+                simulatedSpent.put(key, spent + outcome.finalAmount());
+                return outcome;
+            };
+            try {
+                responses.add(priceTrip(event, context.subscriptionRates(), capSettlement).response());
+            } catch (RuntimeException e) {
+                if (!skipFailures) {
+                    throw e;
+                }
+                log.warn("Trip {} cannot be priced anymore: {}", event.tripId(), e.getMessage());
+                responses.add(null);
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * Prix d'un trajet avant plafond (base, abonnement, règles), sans audit,
+     * publication ni métriques, pour les devis. Les remises appliquées ne sont
+     * pas conservées.
+     */
+    FareQuote quoteFare(TripCompletedEvent event, SubscriptionRates subscriptionRates, FareNetworkSnapshot network,
+            DiscountRuleSnapshot ruleSet) {
+        List<AppliedDiscountDto> discounts = new ArrayList<>(4);
+        long basePrice = calculateBasePrice(event, network);
+        long amount = applySubscriptionDiscount(basePrice, event, subscriptionRates, discounts);
+        amount = applyDatabaseDiscountRules(amount, event, ruleSet, discounts);
+        return new FareQuote(basePrice, amount);
+    }
+
+    /**
+     * Réponse d'un devis : plafond évalué contre le cumul du jour donné, qui
+     * n'est pas modifié.
+     */
+    PricingResponseDTO quoteResponse(FareQuote quote, PricingContextDTO summary, long currentSpent) {
+        CapOutcome cap = applyDailyCap(quote.amountBeforeCap(), currentSpent, summary, false);
+        return PricingResponseDTO.builder()
+                .basePrice(Money.toBigDecimal(quote.basePrice()))
+                .discountApplied(Money.toBigDecimal(quote.basePrice() - cap.finalAmount()))
+                .finalPrice(Money.toBigDecimal(cap.finalAmount()))
+                .capReached(cap.capReached())
+                .build();
+    }
+
+    /**
+     * Réponse enregistrée d'un trajet déjà tarifé (ex: après un conflit sur
+     * l'index unique de {@code trip_id}), ou {@code null}.
+     */
+    @Transactional(readOnly = true)
+    public PricingResponseDTO findPricedTrip(Long tripId) {
+        return pricingResultRepository.findByTripId(tripId).map(PricedTripRegistry::toResponse).orElse(null);
+    }
+
+    /**
+     * Réponse d'un trajet réservé par une autre tarification, désormais
+     * validée, donc déjà publiée. Si son audit n'est pas encore écrit
+     * (écriture différée), le doublon est signalé par une
+     * {@link DuplicateKeyException}, à acquitter sans nouvelle tentative.
+     */
+    private PricingResponseDTO storedResponse(Long tripId) {
+        PricingResponseDTO stored = findPricedTrip(tripId);
+        if (stored == null) {
+            throw new DuplicateKeyException("Trip " + tripId + " is already priced, its result is not stored yet");
+        }
+        return stored;
+    }
 
-        // 1b. Récupération du daily spent
-        Double dailySpent = accountServiceClient.getDailySpent(event.userId()).getDailySpent();
+    /**
+     * Enregistre les trajets tarifés une fois la transaction validée.
+     */
+    private void recordPriced(List<PricedTrip> pricedTrips) {
+        Runnable record = () -> pricedTrips.forEach(
+                priced -> pricedTripRegistry.record(priced.pricedEvent().tripId(), priced.response()));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record.run();
+                }
+            });
+        } else {
+            record.run();
+        }
+    }
 
+    /**
+     * Calcul du prix d'un trajet (base, remises, plafond). Seul le cumul du
+     * jour est mis à jour ; audit et publication sont laissés à l'appelant.
+     * Tous les montants intermédiaires sont en centimes ({@link Money}).
+     */
+    private PricedTrip priceTrip(TripCompletedEvent event, SubscriptionRates subscriptionRates,
+            CapSettlement capSettlement) {
         // 2. Prix de base (BUS, TER, BRT)
-        BigDecimal basePrice;
+        int transport = pricingMetrics.transportIndex(event.transportType());
+        long stageStart = System.nanoTime();
+        long basePrice;
         boolean penalty = event.mismatch();
         List<AppliedDiscountDto> appliedDiscounts = new ArrayList<>();
 
         if (penalty) {
-            // Apply Penalty (Strategy 1)
-            basePrice = switch (event.transportType().toUpperCase()) {
-                case "BUS" -> BigDecimal.valueOf(500);
-                case "BRT" -> BigDecimal.valueOf(1000);
-                case "TER" -> BigDecimal.valueOf(2500);
-                default -> BigDecimal.valueOf(500);
-            };
+            // Apply Penalty (Strategy 1) : tarif de la ligne ou du type de transport
+            basePrice = fareNetworkService.current().penaltyFare(event.transportLineId(), event.transportType());
             appliedDiscounts.add(AppliedDiscountDto.builder()
                     .ruleType("PENALTY_MISMATCH")
                     .percentage(BigDecimal.ZERO)
                     .amountDeducted(BigDecimal.ZERO)
                     .build());
             log.info("Transport line mismatch detected for trip {}. Applying max penalty fare: {}", event.tripId(),
-                    basePrice);
+                    Money.toBigDecimal(basePrice));
         } else {
             basePrice = calculateBasePrice(event);
         }
+        stageStart = recordStage(PricingMetrics.Stage.BASE_PRICE, transport, stageStart);
 
         // 3a. Réduction par ABONNEMENT (la meilleure remise applicable)
         // Subscription and other discounts are NOT applied if it's a penalty
-        BigDecimal amountAfterSub = penalty ? basePrice
-                : applySubscriptionDiscount(basePrice, event, summary, appliedDiscounts);
-
-        // 3b. Autres règles de remise (BDD : OFFPEAK, etc.)
-        BigDecimal amountAfterDatabaseRules = penalty ? amountAfterSub
-                : applyDatabaseDiscountRules(amountAfterSub, event, appliedDiscounts);
-
-        // 4. Gestion du Daily Cap (Plafond Journalier)
-        // Daily Cap is also bypassed for penalties to ensure deterrence
-        BigDecimal finalAmount = amountAfterDatabaseRules.max(BigDecimal.ZERO);
-        boolean capReached = false;
-
-        if (!penalty) {
-            BigDecimal dailyCap = BigDecimal
-                    .valueOf(summary.getDailyCapAmount() != null ? summary.getDailyCapAmount() : 0.0);
-            BigDecimal currentSpent = BigDecimal
-                    .valueOf(dailySpent != null ? dailySpent : 0.0);
-            BigDecimal remainingCap = dailyCap.subtract(currentSpent).max(BigDecimal.ZERO);
-
-            if (summary.isHasActivePass() && remainingCap.compareTo(BigDecimal.ZERO) <= 0
-                    && dailyCap.compareTo(BigDecimal.ZERO) > 0) {
-                // Plafond atteint : Gratuité
-                finalAmount = BigDecimal.ZERO;
-                capReached = true;
-                appliedDiscounts.add(AppliedDiscountDto.builder()
-                        .ruleType("DAILY_CAP")
-                        .percentage(BigDecimal.valueOf(100))
-                        .amountDeducted(amountAfterDatabaseRules)
-                        .build());
-            } else if (summary.isHasActivePass() && amountAfterDatabaseRules.compareTo(remainingCap) > 0
-                    && dailyCap.compareTo(BigDecimal.ZERO) > 0) {
-                // Dépassement du plafond : On ne facture que le reste
-                BigDecimal capDiscount = amountAfterDatabaseRules.subtract(remainingCap);
-                finalAmount = remainingCap;
-                capReached = true;
-                appliedDiscounts.add(AppliedDiscountDto.builder()
-                        .ruleType("DAILY_CAP_LIMIT")
-                        .percentage(BigDecimal.ZERO)
-                        .amountDeducted(capDiscount)
-                        .build());
-            }
+        long amountAfterSub = penalty ? basePrice
+                : applySubscriptionDiscount(basePrice, event, subscriptionRates, appliedDiscounts);
+        stageStart = recordStage(PricingMetrics.Stage.SUBSCRIPTION_DISCOUNT, transport, stageStart);
+
+        // 3b. Autres règles de remise (OFFPEAK, etc.) depuis le jeu de règles compilé
+        DiscountRuleSnapshot ruleSet = discountRuleEngine.current();
+        long amountAfterDatabaseRules = penalty ? amountAfterSub
+                : applyDatabaseDiscountRules(amountAfterSub, event, ruleSet, appliedDiscounts);
+        stageStart = recordStage(PricingMetrics.Stage.DISCOUNT_RULES, transport, stageStart);
+
+        // 4. Gestion du Daily Cap (Plafond Journalier), atomique sur le cumul du jour
+        CapOutcome cap = capSettlement.settle(amountAfterDatabaseRules, penalty);
+        recordStage(PricingMetrics.Stage.DAILY_CAP, transport, stageStart);
+        if (cap.capDiscount() != null) {
+            appliedDiscounts.add(cap.capDiscount());
         }
 
-        BigDecimal totalDiscountApplied = basePrice.subtract(finalAmount);
-
-        // 5. Audit & Log
-        savePricingAudit(event, basePrice, totalDiscountApplied, finalAmount, appliedDiscounts);
+        // Conversion en BigDecimal une seule fois, pour la réponse, l'audit et l'événement
+        BigDecimal base = Money.toBigDecimal(basePrice);
+        BigDecimal finalAmount = Money.toBigDecimal(cap.finalAmount());
+        BigDecimal totalDiscountApplied = Money.toBigDecimal(basePrice - cap.finalAmount());
 
-        // 6. Publication de l'événement vers Billing Service (avec flag penalty)
-        publishTripPricedEvent(event, basePrice, finalAmount, appliedDiscounts, penalty);
-
-        return PricingResponseDTO.builder()
-                .basePrice(basePrice)
+        PricingResponseDTO response = PricingResponseDTO.builder()
+                .basePrice(base)
                 .discountApplied(totalDiscountApplied)
                 .finalPrice(finalAmount)
-                .capReached(capReached)
+                .capReached(cap.capReached())
                 .build();
+        return new PricedTrip(response,
+                buildPricingAudit(event, base, totalDiscountApplied, finalAmount, cap.capReached(),
+                        appliedDiscounts, ruleSet.getVersion()),
+                buildTripPricedEvent(event, base, finalAmount, appliedDiscounts, penalty));
     }
 
     /**
-     * Récupère le résultat de tarification pour un trajet donné.
+     * Enregistre la durée d'une étape de calcul et renvoie le début de la suivante.
      */
-    @Transactional(readOnly = true)
-    public PricingResult getPricingByTripId(Long tripId) {
-        return pricingResultRepository.findByTripId(tripId).orElse(null);
+    private long recordStage(PricingMetrics.Stage stage, int transport, long stageStart) {
+        long now = System.nanoTime();
+        pricingMetrics.record(stage, transport, now - stageStart);
+        return now;
     }
 
     /**
-     * Applique la meilleure réduction d'abonnement disponible.
+     * Amorce le cumul du jour avec la valeur renvoyée par le Billing Service ;
+     * en mode dégradé, le cumul local est utilisé jusqu'au prochain amorçage.
      */
-    private BigDecimal applySubscriptionDiscount(BigDecimal price, TripCompletedEvent event, PricingContextDTO summary,
-            List<AppliedDiscountDto> discounts) {
-
-        double maxDiscountRate = summary.getActiveSubscriptions().stream()
-                .filter(sub -> isSubscriptionApplicable(sub, event))
-                .mapToDouble(SubscriptionContextDTO::getDiscountPercentage)
-                .max()
-                .orElse(0.0);
-
-        if (maxDiscountRate > 0) {
-            BigDecimal rate = BigDecimal.valueOf(maxDiscountRate).divide(BigDecimal.valueOf(100));
-            BigDecimal amount = price.multiply(rate).setScale(2, RoundingMode.HALF_UP);
-
-            discounts.add(AppliedDiscountDto.builder()
-                    .ruleType("SUBSCRIPTION")
-                    .percentage(BigDecimal.valueOf(maxDiscountRate))
-                    .amountDeducted(amount)
-                    .build());
-
-            return price.subtract(amount);
+    private void seedDailySpent(String userId, LocalDate day, TripContextFetcher.TripContext context) {
+        if (context.dailySpentFetched()) {
+            Double dailySpent = context.dailySpent();
+            dailySpentLedger.seed(userId, day, dailySpent != null ? Money.ofDouble(dailySpent) : 0L);
+        } else if (context.dailySpentFallback()) {
+            dailySpentLedger.markUnseeded(userId, day);
         }
-        return price;
     }
 
     /**
-     * Vérifie si un abonnement est valide pour ce transport.
+     * Évalue le plafond contre le cumul du jour et y ajoute le montant facturé.
+     * Le montant est retiré du cumul si la transaction est annulée.
      */
-    private boolean isSubscriptionApplicable(SubscriptionContextDTO sub, TripCompletedEvent event) {
-        if (sub.getApplicableTransport() == null)
-            return false;
-        if (sub.getApplicableTransport().name().equals("ALL"))
-            return true;
-        return sub.getApplicableTransport().name().equalsIgnoreCase(event.transportType());
+    private CapSettlement settleDailyCap(TripCompletedEvent event, LocalDate day, PricingContextDTO summary) {
+        return (amount, penalty) -> settleDailyCap(event, day, summary, amount, penalty);
+    }
+
+    private CapOutcome settleDailyCap(TripCompletedEvent event, LocalDate day, PricingContextDTO summary,
+            long amount, boolean penalty) {
+        CapOutcome outcome = dailySpentLedger.settle(event.userId(), day,
+                currentSpent -> applyDailyCap(amount, currentSpent, summary, penalty), CapOutcome::finalAmount);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive() && outcome.finalAmount() > 0) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        dailySpentLedger.refund(event.userId(), day, outcome.finalAmount());
+                    }
+                }
+            });
+        }
+        return outcome;
     }
 
     /**
-     * Applique les règles de remise stockées en base de données (ex: OFFPEAK).
+     * Règle du plafond journalier pour une dépense courante donnée.
      */
-    private BigDecimal applyDatabaseDiscountRules(BigDecimal currentAmount, TripCompletedEvent event,
-            List<AppliedDiscountDto> appliedDiscounts) {
-        List<DiscountRule> activeRules = discountRuleRepository.findByActiveTrueOrderByPriorityAsc();
-        BigDecimal amount = currentAmount;
+    private CapOutcome applyDailyCap(long amountAfterDatabaseRules, long currentSpent,
+            PricingContextDTO summary, boolean penalty) {
+        long finalAmount = Math.max(amountAfterDatabaseRules, 0L);
 
-        for (DiscountRule rule : activeRules) {
-            if ("SUBSCRIPTION".equalsIgnoreCase(rule.getRuleType()))
-                continue;
-
-            if (isRuleApplicable(rule, event)) {
-                BigDecimal percentage = rule.getPercentage();
-                BigDecimal discountFactor = percentage.divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
-                BigDecimal deduction = amount.multiply(discountFactor).setScale(2, RoundingMode.HALF_UP);
+        // Daily Cap is also bypassed for penalties to ensure deterrence
+        if (penalty) {
+            return new CapOutcome(finalAmount, false, null);
+        }
 
-                appliedDiscounts.add(AppliedDiscountDto.builder()
-                        .ruleType(rule.getRuleType())
-                        .percentage(percentage)
-                        .amountDeducted(deduction)
-                        .build());
+        long dailyCap = summary.getDailyCapAmount() != null ? Money.ofDouble(summary.getDailyCapAmount()) : 0L;
+        long remainingCap = Math.max(dailyCap - currentSpent, 0L);
 
-                amount = amount.subtract(deduction);
-            }
+        if (summary.isHasActivePass() && remainingCap <= 0 && dailyCap > 0) {
+            // Plafond atteint : Gratuité
+            return new CapOutcome(0L, true, AppliedDiscountDto.builder()
+                    .ruleType("DAILY_CAP")
+                    .percentage(FULL_PERCENTAGE)
+                    .amountDeducted(Money.toBigDecimal(amountAfterDatabaseRules))
+                    .build());
+        } else if (summary.isHasActivePass() && amountAfterDatabaseRules > remainingCap && dailyCap > 0) {
+            // Dépassement du plafond : On ne facture que le reste
+            long capDiscount = amountAfterDatabaseRules - remainingCap;
+            return new CapOutcome(remainingCap, true, AppliedDiscountDto.builder()
+                    .ruleType("DAILY_CAP_LIMIT")
+                    .percentage(BigDecimal.ZERO)
+                    .amountDeducted(Money.toBigDecimal(capDiscount))
+                    .build());
         }
-        return amount;
+        return new CapOutcome(finalAmount, false, null);
     }
 
     /**
-     * Vérifie l'applicabilité d'une règle selon sa condition (transport) et ses
-     * horaires (off-peak).
+     * Récupère le résultat de tarification pour un trajet donné.
      */
-    private boolean isRuleApplicable(DiscountRule rule, TripCompletedEvent event) {
-        // 1. Vérification du type de transport (Condition)
-        boolean transportMatch = false;
-        if (rule.getCondition() == null || rule.getCondition().isEmpty()
-                || "ALL".equalsIgnoreCase(rule.getCondition())) {
-            transportMatch = true;
-        } else if (rule.getCondition().contains(event.transportType())) {
-            transportMatch = true;
-        }
-
-        if (!transportMatch)
-            return false;
-
-        // 2. Vérification des horaires (Heures creuses / Off-peak)
-        if (rule.getStartHour() != null && rule.getEndHour() != null) {
-            LocalTime tripTime = event.startTime().toLocalTime();
+    @Transactional(readOnly = true)
+    public PricingResultView getPricingByTripId(Long tripId) {
+        return pricingResultRepository.findByTripId(tripId).map(this::toView).orElse(null);
+    }
 
-            // Cas classique : 09:00 -> 17:00
-            if (rule.getStartHour().isBefore(rule.getEndHour())) {
-                if (tripTime.isBefore(rule.getStartHour()) || tripTime.isAfter(rule.getEndHour())) {
-                    return false;
-                }
-            }
-            // Cas nocturne : 22:00 -> 05:00
-            else {
-                if (tripTime.isBefore(rule.getStartHour()) && tripTime.isAfter(rule.getEndHour())) {
-                    return false;
-                }
+    /**
+     * Vue de l'audit, les remises étant rendues en JSON comme à l'origine.
+     */
+    private PricingResultView toView(PricingResult result) {
+        String appliedDiscounts = result.getAppliedDiscounts();
+        if (result.getAppliedDiscountCodes() != null) {
+            try {
+                appliedDiscounts = objectMapper.writeValueAsString(
+                        AppliedDiscountCodec.decode(result.getAppliedDiscountCodes()));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Applied discounts of trip " + result.getTripId() + " unreadable", e);
             }
         }
+        return PricingResultView.builder()
+                .id(result.getId())
+                .tripId(result.getTripId())
+                .userId(result.getUserId())
+                .transportType(result.getTransportType())
+                .transportLineId(result.getTransportLineId())
+                .startLocation(result.getStartLocation()).endLocation(result.getEndLocation())
+                .startTime(result.getStartTime()).endTime(result.getEndTime())
+                .mismatch(result.getMismatch())
+                .basePrice(result.getBasePrice())
+                .discountApplied(result.getDiscountApplied())
+                .finalAmount(result.getFinalAmount())
+                .appliedDiscounts(appliedDiscounts)
+                .capReached(result.getCapReached())
+                .ruleSetVersion(result.getRuleSetVersion())
+                .computedAt(result.getComputedAt())
+                .build();
+    }
 
-        // 3. Vérification des dates de validité (ex: Vacances)
-        if (rule.getStartDate() != null && rule.getEndDate() != null) {
-            java.time.LocalDate tripDate = event.startTime().toLocalDate();
-            if (tripDate.isBefore(rule.getStartDate()) || tripDate.isAfter(rule.getEndDate())) {
-                return false;
-            }
-        }
+    /**
+     * Applique la meilleure réduction d'abonnement disponible.
+     */
+    long applySubscriptionDiscount(long price, TripCompletedEvent event, SubscriptionRates subscriptionRates,
+            List<AppliedDiscountDto> discounts) {
 
-        // 4. Vérification des jours de validité (ex: Week-end)
-        if (rule.getStartDay() != null && rule.getEndDay() != null) {
-            int tripDay = event.startTime().getDayOfWeek().getValue(); // 1 (Mon) - 7 (Sun)
+        double maxDiscountRate = subscriptionRates.best(event.transportType());
+        if (maxDiscountRate > 0) {
+            long amount = Money.percentOf(price, maxDiscountRate);
 
-            // Cas classique : Lundi -> Vendredi (1 -> 5)
-            if (rule.getStartDay() <= rule.getEndDay()) {
-                if (tripDay < rule.getStartDay() || tripDay > rule.getEndDay()) {
-                    return false;
-                }
-            }
-            // Cas chevauchement : Vendredi -> Lundi (5 -> 1)
-            else {
-                if (tripDay < rule.getStartDay() && tripDay > rule.getEndDay()) {
-                    return false;
-                }
-            }
+            discounts.add(AppliedDiscountDto.builder()
+                    .ruleType("SUBSCRIPTION")
+                    .percentage(BigDecimal.valueOf(maxDiscountRate))
+                    .amountDeducted(Money.toBigDecimal(amount))
+                    .build());
+
+            return price - amount;
         }
+        return price;
+    }
 
-        return true;
+    /**
+     * Applique les règles de remise stockées en base de données (ex: OFFPEAK).
+     */
+    long applyDatabaseDiscountRules(long currentAmount, TripCompletedEvent event,
+            DiscountRuleSnapshot ruleSet, List<AppliedDiscountDto> appliedDiscounts) {
+        return ruleSet.apply(currentAmount, event.transportType(), event.startTime(), appliedDiscounts);
     }
 
     /**
-     * Barème officiel : BUS (150+50/sect), TER (500+500/sect), BRT (400 ou 500).
+     * Barème officiel : BUS (150+50/sect), TER (500+500/sect), BRT (400 ou 500),
+     * en centimes, lu dans la matrice tarifaire précalculée de la ligne.
      */
-    private BigDecimal calculateBasePrice(TripCompletedEvent event) {
+    long calculateBasePrice(TripCompletedEvent event) {
+        return calculateBasePrice(event, fareNetworkService.current());
+    }
+
+    private long calculateBasePrice(TripCompletedEvent event, FareNetworkSnapshot network) {
         if (event.transportLineId() == null || event.startLocation() == null || event.endLocation() == null) {
             log.warn("Données de trajet incomplètes pour le calcul du prix : {}", event);
-            return BigDecimal.ZERO;
+            return 0L;
         }
 
-        List<FareSection> sections = fareSectionRepository.findByLineIdOrderBySectionOrderAsc(event.transportLineId());
+        FareNetworkSnapshot.CompiledLine line = network.line(event.transportLineId());
+        int startIndex = line != null ? line.indexOf(event.startLocation()) : -1;
+        int endIndex = line != null ? line.indexOf(event.endLocation()) : -1;
 
-        FareSection startSection = sections.stream()
-                .filter(s -> s.getStationName().equalsIgnoreCase(event.startLocation()))
-                .findFirst().orElse(null);
-
-        FareSection endSection = sections.stream()
-                .filter(s -> s.getStationName().equalsIgnoreCase(event.endLocation()))
-                .findFirst().orElse(null);
-
-        if (startSection == null || endSection == null) {
+        if (startIndex < 0 || endIndex < 0) {
             log.error("Stations non trouvées pour la ligne {} : {} -> {}", event.transportLineId(),
                     event.startLocation(), event.endLocation());
-            return BigDecimal.ZERO;
-        }
-
-        int startOrder = startSection.getSectionOrder();
-        int endOrder = endSection.getSectionOrder();
-
-        if ("BRT".equalsIgnoreCase(event.transportType())) {
-            Integer startZone = startSection.getZone();
-            Integer endZone = endSection.getZone();
-            return BigDecimal.valueOf((startZone != null && endZone != null && startZone.equals(endZone)) ? 400 : 500);
+            return 0L;
         }
 
-        // Logic for BUS and TER: count distinct zones traversed
-        int minOrder = Math.min(startOrder, endOrder);
-        int maxOrder = Math.max(startOrder, endOrder);
-
-        long distinctZones = sections.stream()
-                .filter(s -> s.getSectionOrder() >= minOrder && s.getSectionOrder() <= maxOrder)
-                .map(FareSection::getZone)
-                .filter(java.util.Objects::nonNull)
-                .distinct()
-                .count();
-
-        long numZonesAdded = Math.max(0, distinctZones - 1);
-
-        if ("BUS".equalsIgnoreCase(event.transportType())) {
-            return BigDecimal.valueOf(150 + (numZonesAdded * 50));
-        } else if ("TER".equalsIgnoreCase(event.transportType())) {
-            return BigDecimal.valueOf(500 + (numZonesAdded * 500));
-        }
-        return BigDecimal.ZERO;
+        return line.baseFare(startIndex, endIndex, event.transportType());
     }
 
     /**
-     * Récupère le contexte utilisateur ou renvoie un profil par défaut si hors
-     * ligne.
+     * Reporte sur l'audit l'horodatage de la réservation du trajet : la ligne
+     * est retrouvée (et partitionnée) par lui, même écrite plus tard.
      */
-    private PricingContextDTO fetchUserSummary(String userId) {
-        try {
-            return userServiceClient.getPricingContext(userId);
-        } catch (Exception e) {
-            log.warn("UserService injoignable pour {}, utilisation des valeurs par défaut", userId);
-            return PricingContextDTO.builder()
-                    .hasActivePass(false)
-                    .dailyCapAmount(2500.0)
-                    .activeSubscriptions(new ArrayList<>())
-                    .build();
+    private static void stampAudit(PricedTrip priced, LocalDateTime claimedAt) {
+        if (priced.audit() != null && claimedAt != null) {
+            priced.audit().setComputedAt(claimedAt);
         }
     }
 
     /**
-     * Sauvegarde du calcul en BDD pour audit.
+     * Construit la ligne d'audit du calcul (null si la sérialisation échoue).
+     * Les remises sont encodées en binaire ; le JSON ne sert que si elles ne
+     * tiennent pas dans l'encodage.
      */
-    private void savePricingAudit(TripCompletedEvent event, BigDecimal base, BigDecimal disc, BigDecimal fin,
-            List<AppliedDiscountDto> list) {
+    private PricingResult buildPricingAudit(TripCompletedEvent event, BigDecimal base, BigDecimal disc,
+            BigDecimal fin, boolean capReached, List<AppliedDiscountDto> list, long ruleSetVersion) {
         try {
-            String json = objectMapper.writeValueAsString(list);
-            PricingResult result = PricingResult.builder()
+            byte[] codes = AppliedDiscountCodec.encode(list);
+            String json = codes == null ? objectMapper.writeValueAsString(list) : null;
+            return PricingResult.builder()
                     .tripId(event.tripId())
                     .userId(event.userId())
-                    .transportType(event.transportType())
+                    .transportType(event.transportType() != null ? event.transportType().name()
+                            : UNKNOWN_TRANSPORT_CODE)
+                    .transportLineId(event.transportLineId())
+                    .startLocation(event.startLocation()).endLocation(event.endLocation())
+                    .startTime(event.startTime()).endTime(event.endTime())
+                    .mismatch(event.mismatch())
                     .basePrice(base).discountApplied(disc).finalAmount(fin)
-                    .appliedDiscounts(json).build();
-            pricingResultRepository.save(result);
+                    .capReached(capReached)
+                    .appliedDiscounts(json)
+                    .appliedDiscountCodes(codes)
+                    .ruleSetVersion(ruleSetVersion).build();
         } catch (JsonProcessingException e) {
             log.error("Audit pricing échoué", e);
+            return null;
         }
     }
 
     /**
-     * Publie le prix final vers RabbitMQ.
+     * Construit l'événement de prix final destiné à RabbitMQ.
      */
-    private void publishTripPricedEvent(TripCompletedEvent event, BigDecimal base, BigDecimal fin,
+    private TripPricedEvent buildTripPricedEvent(TripCompletedEvent event, BigDecimal base, BigDecimal fin,
             List<AppliedDiscountDto> list, boolean penalty) {
-        TripPricedEvent pricedEvent = TripPricedEvent.builder()
+        return TripPricedEvent.builder()
                 .tripId(event.tripId()).userId(event.userId())
                 .basePrice(base).appliedDiscounts(list).finalAmount(fin)
                 .penalty(penalty).build();
-        pricingEventPublisher.publishTripPricedEvent(pricedEvent);
+    }
+
+    /**
+     * Évaluation du plafond journalier pour le montant après remises.
+     */
+    @FunctionalInterface
+    private interface CapSettlement {
+        CapOutcome settle(long amount, boolean penalty);
+    }
+
+    /**
+     * Résultat du plafond journalier : montant facturé et remise éventuelle.
+     */
+    private record CapOutcome(long finalAmount, boolean capReached, AppliedDiscountDto capDiscount) {
+    }
+
+    /**
+     * Devis avant plafond, en centimes.
+     */
+    record FareQuote(long basePrice, long amountBeforeCap) {
+    }
+
+    /**
+     * Résultat d'un calcul : réponse, audit à persister et événement à publier.
+     */
+    private record PricedTrip(PricingResponseDTO response, PricingResult audit, TripPricedEvent pricedEvent) {
     }
 }
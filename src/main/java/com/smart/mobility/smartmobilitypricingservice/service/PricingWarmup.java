@@ -0,0 +1,225 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.dto.TripCompletedEvent;
+import com.smart.mobility.smartmobilitypricingservice.model.DiscountRule;
+import com.smart.mobility.smartmobilitypricingservice.model.FareSection;
+import com.smart.mobility.smartmobilitypricingservice.model.PenaltyFare;
+import com.smart.mobility.smartmobilitypricingservice.model.TransportLine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.health.contributor.Health;
+import org.springframework.boot.health.contributor.HealthIndicator;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Préchauffage au démarrage : réseau tarifaire et règles actives sont chargés
+ * et compilés, puis le calcul est exercé sur des trajets synthétiques, avant
+ * le démarrage des listeners RabbitMQ et du serveur web. Le premier trajet ne
+ * paie ainsi ni les requêtes JPA à froid ni la compilation JIT.
+ * <p>
+ * Si {@code pricing.warmup.snapshot-file} est défini, les données sont écrites
+ * à l'arrêt dans ce fichier et relues au démarrage suivant (s'il est assez
+ * récent) sans attendre la base ; elles sont ensuite comparées à la base en
+ * arrière-plan. L'indicateur de santé reste DOWN tant que le préchauffage n'est
+ * pas terminé (groupe readiness).
+ */
+@Component
+@Slf4j
+public class PricingWarmup implements SmartLifecycle, HealthIndicator {
+
+    // Démarré avant l'audit différé, les listeners RabbitMQ et le serveur web ; arrêté après eux
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 8192;
+
+    private static final int MAX_SYNTHETIC_TRIPS = 1024;
+
+    private final FareNetworkService fareNetworkService;
+    private final DiscountRuleEngine discountRuleEngine;
+    private final PricingService pricingService;
+    private final Clock clock;
+    private final PricingProperties.Warmup properties;
+    private final Path snapshotFile;
+
+    private volatile boolean running;
+    private volatile boolean warmedUp;
+    private volatile String source;
+    private volatile Duration duration;
+    // Résultat des calculs synthétiques, conservé pour qu'ils ne soient pas éliminés
+    private volatile long checksum;
+
+    public PricingWarmup(FareNetworkService fareNetworkService, DiscountRuleEngine discountRuleEngine,
+            PricingService pricingService, Clock clock, PricingProperties pricingProperties) {
+        this.fareNetworkService = fareNetworkService;
+        this.discountRuleEngine = discountRuleEngine;
+        this.pricingService = pricingService;
+        this.clock = clock;
+        this.properties = pricingProperties.getWarmup();
+        String file = properties.getSnapshotFile();
+        this.snapshotFile = file != null && !file.isBlank() ? Path.of(file) : null;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!properties.isEnabled()) {
+            warmedUp = true;
+            source = "disabled";
+            return;
+        }
+        long started = System.nanoTime();
+        boolean fromFile = loadSnapshotFile();
+        if (!fromFile) {
+            // Sans snapshot, une base injoignable fait échouer le démarrage
+            fareNetworkService.reload();
+            discountRuleEngine.reload();
+            source = "database";
+        }
+        exercisePricing();
+        duration = Duration.ofNanos(System.nanoTime() - started);
+        warmedUp = true;
+        log.info("Pricing warm-up done in {} ms from {}: {} lines, {} discount rules", duration.toMillis(), source,
+                fareNetworkService.current().lineCount(), discountRuleEngine.current().ruleCount());
+        if (fromFile) {
+            Thread reconcile = new Thread(this::reconcile, "pricing-warmup-reconcile");
+            reconcile.setDaemon(true);
+            reconcile.start();
+        }
+    }
+
+    /**
+     * Écrit les données tarifaires courantes pour le prochain démarrage.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        List<TransportLine> lines = fareNetworkService.sourceLines();
+        List<FareSection> sections = fareNetworkService.sourceSections();
+        List<PenaltyFare> penalties = fareNetworkService.sourcePenaltyFares();
+        if (snapshotFile == null || !warmedUp || lines == null) {
+            return;
+        }
+        List<DiscountRule> rules = discountRuleEngine.current().getSource();
+        try {
+            Path dir = snapshotFile.toAbsolutePath().getParent();
+            if (dir != null) {
+                Files.createDirectories(dir);
+            }
+            TariffSnapshotFile.write(snapshotFile,
+                    new TariffSnapshotFile.Contents(clock.instant(), lines, sections, penalties, rules));
+            log.info("Tariff snapshot written to {}: {} lines, {} sections, {} penalty fares, {} rules",
+                    snapshotFile, lines.size(), sections.size(), penalties.size(), rules.size());
+        } catch (IOException e) {
+            log.warn("Tariff snapshot could not be written to {}", snapshotFile, e);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    @Override
+    public Health health() {
+        if (!warmedUp) {
+            return Health.down().withDetail("warmup", "in progress").build();
+        }
+        Health.Builder health = Health.up().withDetail("source", source);
+        if (duration != null) {
+            health.withDetail("durationMs", duration.toMillis());
+        }
+        return health.build();
+    }
+
+    private boolean loadSnapshotFile() {
+        if (snapshotFile == null || !Files.exists(snapshotFile)) {
+            return false;
+        }
+        try {
+            TariffSnapshotFile.Contents contents = TariffSnapshotFile.read(snapshotFile);
+            Duration age = Duration.between(contents.writtenAt(), clock.instant());
+            if (age.compareTo(properties.getSnapshotMaxAge()) > 0) {
+                log.info("Tariff snapshot {} ignored: written {} ago", snapshotFile, age);
+                return false;
+            }
+            fareNetworkService.install(contents.lines(), contents.sections(), contents.penaltyFares());
+            discountRuleEngine.install(contents.rules());
+            source = "snapshot written at " + contents.writtenAt();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Tariff snapshot {} unreadable, loading from the database", snapshotFile, e);
+            return false;
+        }
+    }
+
+    /**
+     * Recharge depuis la base après un démarrage sur snapshot ; les snapshots
+     * ne sont remplacés que si les données ont changé depuis l'écriture.
+     */
+    private void reconcile() {
+        try {
+            FareNetworkSnapshot network = fareNetworkService.current();
+            DiscountRuleSnapshot rules = discountRuleEngine.current();
+            boolean networkChanged = fareNetworkService.reload() != network;
+            boolean rulesChanged = discountRuleEngine.reload() != rules;
+            boolean changed = networkChanged || rulesChanged;
+            log.info("Tariff snapshot reconciled with the database: {}", changed ? "updated" : "unchanged");
+        } catch (Exception e) {
+            log.warn("Tariff snapshot reconciliation failed, the periodic refresh will retry", e);
+        }
+    }
+
+    /**
+     * Tarifie des trajets synthétiques couvrant les lignes et les heures de la
+     * semaine, pour compiler le chemin de calcul avant le premier vrai trajet.
+     */
+    private void exercisePricing() {
+        int iterations = properties.getIterations();
+        FareNetworkSnapshot network = fareNetworkService.current();
+        DiscountRuleSnapshot rules = discountRuleEngine.current();
+        List<TripCompletedEvent> trips = syntheticTrips(network);
+        if (iterations <= 0 || trips.isEmpty()) {
+            return;
+        }
+        long sum = 0;
+        for (int i = 0; i < iterations; i++) {
+            PricingService.FareQuote quote = pricingService.quoteFare(trips.get(i % trips.size()),
+                    SubscriptionRates.NONE, network, rules);
+            sum += quote.amountBeforeCap();
+        }
+        checksum = sum;
+    }
+
+    private List<TripCompletedEvent> syntheticTrips(FareNetworkSnapshot network) {
+        List<TripCompletedEvent> trips = new ArrayList<>();
+        LocalDateTime monday = LocalDateTime.of(2026, 3, 2, 0, 0);
+        int hour = 0;
+        for (FareNetworkSnapshot.CompiledLine line : network.lines()) {
+            for (int from = 0; from < line.size() && trips.size() < MAX_SYNTHETIC_TRIPS; from++) {
+                int to = line.size() - 1 - from;
+                hour = (hour + 7) % DiscountRuleSnapshot.HOURS_PER_WEEK;
+                trips.add(TripCompletedEvent.builder()
+                        .transportType(line.getTransportType())
+                        .transportLineId(line.getLineId())
+                        .startLocation(line.stationAt(from))
+                        .endLocation(line.stationAt(to))
+                        .startTime(monday.plusHours(hour).plusMinutes(from % 60))
+                        .build());
+            }
+        }
+        return trips;
+    }
+}
@@ -0,0 +1,383 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingResponseDTO;
+import com.smart.mobility.smartmobilitypricingservice.dto.TripCompletedEvent;
+import com.smart.mobility.smartmobilitypricingservice.enums.RepricingJobStatus;
+import com.smart.mobility.smartmobilitypricingservice.enums.TransportType;
+import com.smart.mobility.smartmobilitypricingservice.model.PricingResult;
+import com.smart.mobility.smartmobilitypricingservice.model.RepricingJob;
+import com.smart.mobility.smartmobilitypricingservice.repository.PricingResultRepository;
+import com.smart.mobility.smartmobilitypricingservice.repository.RepricingJobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Re-tarification des trajets déjà tarifés sur une période (ex: après la
+ * correction d'une règle de remise ou d'une section tarifaire).
+ * <p>
+ * pricing_results est parcouru par pages, par clé sur l'id : la table n'est
+ * jamais chargée en entier. Chaque page est répartie par utilisateur entre
+ * quelques threads et re-tarifée avec les règles courantes, sans audit ni
+ * publication ; les trajets dont le montant change sont ajoutés au rapport
+ * CSV du job (trajet, ancien montant, nouveau montant, écart). L'avancement
+ * est enregistré après chaque page, ce qui permet de reprendre un job
+ * interrompu, et le débit est plafonné pour ne pas pénaliser la tarification
+ * en direct.
+ * <p>
+ * Le plafond journalier est rejoué par utilisateur dans l'ordre des heures
+ * de départ ; le cumul d'un jour part du montant enregistré des trajets que
+ * le job ne rejoue pas (calculés avant la période ou avant le point de
+ * reprise).
+ */
+@Service
+@Slf4j
+public class RepricingJobService {
+
+    private static final String REPORT_HEADER = "trip_id,user_id,old_amount,new_amount,delta";
+    private static final Comparator<PricingResult> REPLAY_ORDER = Comparator.comparing(PricingResult::getUserId)
+            .thenComparing(PricingResult::getStartTime, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(PricingResult::getId);
+
+    private final PricingResultRepository pricingResultRepository;
+    private final RepricingJobRepository repricingJobRepository;
+    private final PricingService pricingService;
+    private final Executor executor;
+    private final Clock clock;
+    private final PricingProperties.Repricing properties;
+
+    // Jobs exécutés par cette instance
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+    private final Set<Long> cancelRequested = ConcurrentHashMap.newKeySet();
+
+    public RepricingJobService(PricingResultRepository pricingResultRepository,
+            RepricingJobRepository repricingJobRepository, PricingService pricingService,
+            @Qualifier("pricingRepricingExecutor") Executor executor, Clock clock,
+            PricingProperties pricingProperties) {
+        this.pricingResultRepository = pricingResultRepository;
+        this.repricingJobRepository = repricingJobRepository;
+        this.pricingService = pricingService;
+        this.executor = executor;
+        this.clock = clock;
+        this.properties = pricingProperties.getRepricing();
+    }
+
+    /**
+     * Démarre la re-tarification des résultats calculés dans [from, to).
+     */
+    public RepricingJob start(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Repricing range is empty: " + from + " is not before " + to);
+        }
+        RepricingJob job = repricingJobRepository.save(RepricingJob.builder()
+                .fromDate(from)
+                .toDate(to)
+                .status(RepricingJobStatus.RUNNING)
+                .lastResultId(0L)
+                .processed(0L)
+                .changed(0L)
+                .skipped(0L)
+                .totalDelta(BigDecimal.ZERO)
+                .reportFile("")
+                .updatedAt(LocalDateTime.now(clock))
+                .build());
+        job.setReportFile(Path.of(properties.getReportDir(), "repricing-" + job.getId() + ".csv").toString());
+        job = repricingJobRepository.save(job);
+        launch(job);
+        return job;
+    }
+
+    /**
+     * Reprend un job arrêté (échec, annulation, instance arrêtée) à partir de
+     * son dernier point de reprise.
+     */
+    public RepricingJob resume(Long jobId) {
+        RepricingJob job = repricingJobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown repricing job " + jobId));
+        boolean stale = job.getStatus() == RepricingJobStatus.RUNNING
+                && job.getUpdatedAt().isBefore(LocalDateTime.now(clock).minus(properties.getStaleAfter()));
+        if (running.contains(jobId) || job.getStatus() == RepricingJobStatus.COMPLETED
+                || (job.getStatus() == RepricingJobStatus.RUNNING && !stale)) {
+            throw new IllegalStateException("Repricing job " + jobId + " cannot be resumed (" + job.getStatus() + ")");
+        }
+        job.setStatus(RepricingJobStatus.RUNNING);
+        job.setErrorMessage(null);
+        job.setUpdatedAt(LocalDateTime.now(clock));
+        job = repricingJobRepository.save(job);
+        launch(job);
+        return job;
+    }
+
+    /**
+     * Demande l'arrêt d'un job ; il s'arrête après la page en cours.
+     */
+    public RepricingJob cancel(Long jobId) {
+        RepricingJob job = repricingJobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown repricing job " + jobId));
+        if (running.contains(jobId)) {
+            cancelRequested.add(jobId);
+        } else if (job.getStatus() == RepricingJobStatus.RUNNING) {
+            // Exécuté par une instance arrêtée ou par une autre instance
+            job.setStatus(RepricingJobStatus.CANCELLED);
+            job.setUpdatedAt(LocalDateTime.now(clock));
+            job = repricingJobRepository.save(job);
+        }
+        return job;
+    }
+
+    public Optional<RepricingJob> find(Long jobId) {
+        return repricingJobRepository.findById(jobId);
+    }
+
+    private void launch(RepricingJob job) {
+        running.add(job.getId());
+        Thread thread = new Thread(() -> run(job), "repricing-job-" + job.getId());
+        // Un job interrompu par l'arrêt de l'instance se reprend depuis son point de reprise
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void run(RepricingJob job) {
+        log.info("Repricing job {} running from result {} ({} to {})", job.getId(), job.getLastResultId(),
+                job.getFromDate(), job.getToDate());
+        // Cumul du jour rejoué, un par partition : une partition reçoit toujours les mêmes utilisateurs
+        List<Map<String, Long>> simulatedSpent = new ArrayList<>();
+        for (int i = 0; i < partitionCount(); i++) {
+            simulatedSpent.add(new HashMap<>());
+        }
+        // Résultats rejoués par cette exécution : au-delà du point de reprise initial
+        ReplayScope scope = new ReplayScope(job.getFromDate(), job.getToDate(), job.getLastResultId());
+        long startNanos = System.nanoTime();
+        long tripsSinceStart = 0;
+        try (BufferedWriter report = openReport(Path.of(job.getReportFile()))) {
+            while (true) {
+                if (cancelRequested.remove(job.getId())) {
+                    job.setStatus(RepricingJobStatus.CANCELLED);
+                    job = checkpoint(job);
+                    log.info("Repricing job {} cancelled after {} trips", job.getId(), job.getProcessed());
+                    return;
+                }
+                List<PricingResult> page = pricingResultRepository.findComputedBetweenAfter(job.getFromDate(),
+                        job.getToDate(), job.getLastResultId(), PageRequest.of(0, properties.getPageSize()));
+                if (page.isEmpty()) {
+                    job.setStatus(RepricingJobStatus.COMPLETED);
+                    job = checkpoint(job);
+                    log.info("Repricing job {} completed: {} trips, {} changed, total delta {}", job.getId(),
+                            job.getProcessed(), job.getChanged(), job.getTotalDelta());
+                    return;
+                }
+
+                PageOutcome outcome = repricePage(page, simulatedSpent, scope);
+                for (String line : outcome.reportLines()) {
+                    report.write(line);
+                    report.newLine();
+                }
+                // Le rapport est écrit avant le point de reprise : au pire, une page y figure deux fois
+                report.flush();
+
+                job.setLastResultId(page.get(page.size() - 1).getId());
+                job.setProcessed(job.getProcessed() + page.size());
+                job.setChanged(job.getChanged() + outcome.reportLines().size());
+                job.setSkipped(job.getSkipped() + outcome.skipped());
+                job.setTotalDelta(job.getTotalDelta().add(outcome.totalDelta()));
+                job = checkpoint(job);
+
+                tripsSinceStart += page.size();
+                throttle(startNanos, tripsSinceStart);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(job, e);
+        } catch (OptimisticLockingFailureException e) {
+            // Job annulé ou repris depuis une autre instance : son état enregistré prévaut
+            RepricingJobStatus status = repricingJobRepository.findById(job.getId()).map(RepricingJob::getStatus)
+                    .orElse(null);
+            log.info("Repricing job {} was changed by another instance ({}), stopping after result {}",
+                    job.getId(), status, job.getLastResultId());
+        } catch (Exception e) {
+            fail(job, e);
+        } finally {
+            running.remove(job.getId());
+            cancelRequested.remove(job.getId());
+        }
+    }
+
+    private PageOutcome repricePage(List<PricingResult> page, List<Map<String, Long>> simulatedSpent,
+            ReplayScope scope) {
+        List<List<PricingResult>> partitions = new ArrayList<>();
+        for (int i = 0; i < partitionCount(); i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (PricingResult result : page) {
+            partitions.get(Math.floorMod(result.getUserId().hashCode(), partitionCount())).add(result);
+        }
+        List<CompletableFuture<PageOutcome>> pending = new ArrayList<>(partitions.size());
+        for (int i = 0; i < partitions.size(); i++) {
+            List<PricingResult> partition = partitions.get(i);
+            Map<String, Long> spent = simulatedSpent.get(i);
+            if (!partition.isEmpty()) {
+                pending.add(CompletableFuture.supplyAsync(() -> reprice(partition, spent, scope), executor));
+            }
+        }
+        PageOutcome total = new PageOutcome(new ArrayList<>(), 0, BigDecimal.ZERO);
+        for (CompletableFuture<PageOutcome> outcome : pending) {
+            total = total.merge(outcome.join());
+        }
+        return total;
+    }
+
+    private PageOutcome reprice(List<PricingResult> partition, Map<String, Long> simulatedSpent,
+            ReplayScope scope) {
+        List<PricingResult> repriceable = new ArrayList<>(partition.size());
+        for (PricingResult result : partition) {
+            if (result.getStartLocation() != null || result.getTransportLineId() != null) {
+                repriceable.add(result);
+            }
+        }
+        // Le plafond se rejoue dans l'ordre des départs, pas dans celui des id
+        repriceable.sort(REPLAY_ORDER);
+        List<TripCompletedEvent> trips = repriceable.stream().map(RepricingJobService::toTrip).toList();
+        long skipped = partition.size() - repriceable.size();
+        List<PricingResponseDTO> responses = trips.isEmpty() ? List.of()
+                : pricingService.repriceTrips(trips, simulatedSpent, trip -> storedSpentBefore(trip, scope));
+
+        List<String> reportLines = new ArrayList<>();
+        BigDecimal totalDelta = BigDecimal.ZERO;
+        for (int i = 0; i < repriceable.size(); i++) {
+            PricingResult result = repriceable.get(i);
+            PricingResponseDTO response = responses.get(i);
+            if (response == null) {
+                skipped++;
+                continue;
+            }
+            BigDecimal delta = response.getFinalPrice().subtract(result.getFinalAmount());
+            if (delta.signum() != 0) {
+                reportLines.add(result.getTripId() + "," + result.getUserId() + ","
+                        + result.getFinalAmount().toPlainString() + "," + response.getFinalPrice().toPlainString()
+                        + "," + delta.toPlainString());
+                totalDelta = totalDelta.add(delta);
+            }
+        }
+        return new PageOutcome(reportLines, skipped, totalDelta);
+    }
+
+    /**
+     * Cumul enregistré du jour d'un trajet, avant son départ, des trajets que
+     * le job ne rejoue pas.
+     */
+    private long storedSpentBefore(TripCompletedEvent trip, ReplayScope scope) {
+        if (trip.startTime() == null) {
+            return 0L;
+        }
+        BigDecimal spent = pricingResultRepository.sumFinalAmountStartedBetween(trip.userId(),
+                trip.startTime().toLocalDate().atStartOfDay(), trip.startTime(), scope.from(), scope.to(),
+                scope.afterResultId());
+        return spent != null ? Money.of(spent) : 0L;
+    }
+
+    private static TripCompletedEvent toTrip(PricingResult result) {
+        return TripCompletedEvent.builder()
+                .tripId(result.getTripId())
+                .userId(result.getUserId())
+                .transportType(TransportType.fromCode(result.getTransportType()))
+                .transportLineId(result.getTransportLineId())
+                .startLocation(result.getStartLocation())
+                .endLocation(result.getEndLocation())
+                .startTime(result.getStartTime())
+                .endTime(result.getEndTime())
+                .mismatch(Boolean.TRUE.equals(result.getMismatch()))
+                .build();
+    }
+
+    private static BufferedWriter openReport(Path reportFile) throws IOException {
+        if (reportFile.getParent() != null) {
+            Files.createDirectories(reportFile.getParent());
+        }
+        boolean exists = Files.exists(reportFile);
+        BufferedWriter writer = Files.newBufferedWriter(reportFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (!exists) {
+            writer.write(REPORT_HEADER);
+            writer.newLine();
+        }
+        return writer;
+    }
+
+    /**
+     * Ralentit le job si son débit dépasse {@code maxTripsPerSecond}.
+     */
+    private void throttle(long startNanos, long trips) throws InterruptedException {
+        if (properties.getMaxTripsPerSecond() <= 0) {
+            return;
+        }
+        long targetNanos = TimeUnit.SECONDS.toNanos(trips) / properties.getMaxTripsPerSecond();
+        long aheadNanos = targetNanos - (System.nanoTime() - startNanos);
+        if (aheadNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(aheadNanos);
+        }
+    }
+
+    private RepricingJob checkpoint(RepricingJob job) {
+        job.setUpdatedAt(LocalDateTime.now(clock));
+        return repricingJobRepository.save(job);
+    }
+
+    private void fail(RepricingJob job, Exception e) {
+        log.error("Repricing job {} failed after result {}", job.getId(), job.getLastResultId(), e);
+        job.setStatus(RepricingJobStatus.FAILED);
+        String message = String.valueOf(e.getMessage());
+        job.setErrorMessage(message.length() > 255 ? message.substring(0, 255) : message);
+        try {
+            checkpoint(job);
+        } catch (RuntimeException checkpointFailure) {
+            log.error("Cannot record the failure of repricing job {}", job.getId(), checkpointFailure);
+        }
+    }
+
+    private int partitionCount() {
+        return Math.max(1, properties.getParallelism());
+    }
+
+    /**
+     * Résultats rejoués par une exécution du job : calculés dans [from, to)
+     * et d'id supérieur à {@code afterResultId}.
+     */
+    private record ReplayScope(LocalDateTime from, LocalDateTime to, long afterResultId) {
+    }
+
+    /**
+     * Résultat d'une page ou d'une partition : lignes du rapport (trajets
+     * dont le montant change), trajets ignorés et écart total.
+     */
+    private record PageOutcome(List<String> reportLines, long skipped, BigDecimal totalDelta) {
+
+        PageOutcome merge(PageOutcome other) {
+            reportLines.addAll(other.reportLines());
+            return new PageOutcome(reportLines, skipped + other.skipped(), totalDelta.add(other.totalDelta()));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingContextDTO;
+import com.smart.mobility.smartmobilitypricingservice.dto.SubscriptionContextDTO;
+import com.smart.mobility.smartmobilitypricingservice.enums.TransportType;
+
+import java.util.List;
+
+/**
+ * Meilleur taux de remise d'abonnement d'un utilisateur pour chaque type de
+ * transport, calculé une fois à la réception du contexte : un trajet lit son
+ * taux dans un tableau au lieu de parcourir les abonnements.
+ */
+public final class SubscriptionRates {
+
+    // Un taux par type de transport connu, plus un pour les types inconnus
+    private static final int UNKNOWN_TRANSPORT = TransportType.values().length;
+
+    public static final SubscriptionRates NONE = new SubscriptionRates(new double[UNKNOWN_TRANSPORT + 1]);
+
+    private final double[] rates;
+
+    private SubscriptionRates(double[] rates) {
+        this.rates = rates;
+    }
+
+    /**
+     * Taux des abonnements valides du contexte : un abonnement ALL vaut pour
+     * tous les transports, y compris les types inconnus.
+     */
+    public static SubscriptionRates of(PricingContextDTO summary) {
+        List<SubscriptionContextDTO> subscriptions = summary != null ? summary.getActiveSubscriptions() : null;
+        if (subscriptions == null || subscriptions.isEmpty()) {
+            return NONE;
+        }
+        double[] rates = new double[UNKNOWN_TRANSPORT + 1];
+        for (SubscriptionContextDTO sub : subscriptions) {
+            TransportType applicable = sub.getApplicableTransport();
+            Double percentage = sub.getDiscountPercentage();
+            if (applicable == null || percentage == null) {
+                continue;
+            }
+            if (applicable == TransportType.ALL) {
+                for (int transport = 0; transport < rates.length; transport++) {
+                    rates[transport] = Math.max(rates[transport], percentage);
+                }
+            } else {
+                rates[applicable.ordinal()] = Math.max(rates[applicable.ordinal()], percentage);
+            }
+        }
+        return new SubscriptionRates(rates);
+    }
+
+    /**
+     * Meilleur taux (en %) pour ce transport, 0 si aucun abonnement ne
+     * s'applique.
+     */
+    public double best(TransportType transportType) {
+        return rates[transportType != null ? transportType.ordinal() : UNKNOWN_TRANSPORT];
+    }
+}
@@ -0,0 +1,244 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.smart.mobility.smartmobilitypricingservice.model.DiscountRule;
+import com.smart.mobility.smartmobilitypricingservice.model.FareSection;
+import com.smart.mobility.smartmobilitypricingservice.model.PenaltyFare;
+import com.smart.mobility.smartmobilitypricingservice.model.TransportLine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fichier binaire des données tarifaires (lignes, sections, tarifs de
+ * pénalité, règles actives), écrit à l'arrêt et relu au démarrage suivant
+ * pour ne pas attendre la base. Tous les champs des entités sont conservés : relues depuis le fichier, elles
+ * sont égales à celles chargées depuis la base si rien n'a changé.
+ */
+final class TariffSnapshotFile {
+
+    private static final int MAGIC = 0x50545332; // "PTS2"
+
+    private TariffSnapshotFile() {
+    }
+
+    record Contents(Instant writtenAt, List<TransportLine> lines, List<FareSection> sections,
+            List<PenaltyFare> penaltyFares, List<DiscountRule> rules) {
+    }
+
+    /**
+     * Écrit le fichier sous un nom temporaire, le force sur disque puis le
+     * renomme : un fichier présent est toujours complet.
+     */
+    static void write(Path file, Contents contents) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(MAGIC);
+            out.writeLong(contents.writtenAt().toEpochMilli());
+            out.writeInt(contents.lines().size());
+            for (TransportLine line : contents.lines()) {
+                writeLong(out, line.getId());
+                writeString(out, line.getName());
+                writeString(out, line.getTransportType());
+                writeDateTime(out, line.getCreatedAt());
+                writeDateTime(out, line.getUpdatedAt());
+            }
+            out.writeInt(contents.sections().size());
+            for (FareSection section : contents.sections()) {
+                writeLong(out, section.getId());
+                writeLong(out, section.getLineId());
+                writeInt(out, section.getSectionOrder());
+                writeString(out, section.getStationName());
+                writeInt(out, section.getZone());
+                writeDateTime(out, section.getCreatedAt());
+                writeDateTime(out, section.getUpdatedAt());
+            }
+            out.writeInt(contents.penaltyFares().size());
+            for (PenaltyFare penalty : contents.penaltyFares()) {
+                writeLong(out, penalty.getId());
+                writeString(out, penalty.getTransportType());
+                writeLong(out, penalty.getLineId());
+                writeDecimal(out, penalty.getAmount());
+                writeDateTime(out, penalty.getCreatedAt());
+                writeDateTime(out, penalty.getUpdatedAt());
+            }
+            out.writeInt(contents.rules().size());
+            for (DiscountRule rule : contents.rules()) {
+                writeLong(out, rule.getId());
+                writeString(out, rule.getRuleType());
+                writeDecimal(out, rule.getPercentage());
+                writeInt(out, rule.getPriority());
+                writeString(out, rule.getCondition());
+                writeLong(out, rule.getStartHour() != null ? rule.getStartHour().toNanoOfDay() : null);
+                writeLong(out, rule.getEndHour() != null ? rule.getEndHour().toNanoOfDay() : null);
+                writeInt(out, rule.getStartDay());
+                writeInt(out, rule.getEndDay());
+                writeLong(out, rule.getStartDate() != null ? rule.getStartDate().toEpochDay() : null);
+                writeLong(out, rule.getEndDate() != null ? rule.getEndDate().toEpochDay() : null);
+                out.writeByte(rule.getActive() == null ? -1 : rule.getActive() ? 1 : 0);
+                writeDateTime(out, rule.getCreatedAt());
+                writeDateTime(out, rule.getUpdatedAt());
+            }
+            out.flush();
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static Contents read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a tariff snapshot: " + file);
+            }
+            Instant writtenAt = Instant.ofEpochMilli(in.readLong());
+            List<TransportLine> lines = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                lines.add(TransportLine.builder()
+                        .id(readLong(in))
+                        .name(readString(in))
+                        .transportType(readString(in))
+                        .createdAt(readDateTime(in))
+                        .updatedAt(readDateTime(in))
+                        .build());
+            }
+            List<FareSection> sections = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                sections.add(FareSection.builder()
+                        .id(readLong(in))
+                        .lineId(readLong(in))
+                        .sectionOrder(readInt(in))
+                        .stationName(readString(in))
+                        .zone(readInt(in))
+                        .createdAt(readDateTime(in))
+                        .updatedAt(readDateTime(in))
+                        .build());
+            }
+            List<PenaltyFare> penaltyFares = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                penaltyFares.add(PenaltyFare.builder()
+                        .id(readLong(in))
+                        .transportType(readString(in))
+                        .lineId(readLong(in))
+                        .amount(readDecimal(in))
+                        .createdAt(readDateTime(in))
+                        .updatedAt(readDateTime(in))
+                        .build());
+            }
+            List<DiscountRule> rules = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                DiscountRule.DiscountRuleBuilder rule = DiscountRule.builder()
+                        .id(readLong(in))
+                        .ruleType(readString(in))
+                        .percentage(readDecimal(in))
+                        .priority(readInt(in))
+                        .condition(readString(in));
+                Long startHour = readLong(in);
+                Long endHour = readLong(in);
+                rule.startHour(startHour != null ? LocalTime.ofNanoOfDay(startHour) : null)
+                        .endHour(endHour != null ? LocalTime.ofNanoOfDay(endHour) : null)
+                        .startDay(readInt(in))
+                        .endDay(readInt(in));
+                Long startDate = readLong(in);
+                Long endDate = readLong(in);
+                byte active = in.readByte();
+                rules.add(rule.startDate(startDate != null ? LocalDate.ofEpochDay(startDate) : null)
+                        .endDate(endDate != null ? LocalDate.ofEpochDay(endDate) : null)
+                        .active(active < 0 ? null : active == 1)
+                        .createdAt(readDateTime(in))
+                        .updatedAt(readDateTime(in))
+                        .build());
+            }
+            return new Contents(writtenAt, lines, sections, penaltyFares, rules);
+        }
+    }
+
+    private static void writeLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static void writeInt(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    private static Integer readInt(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            byte[] unscaled = value.unscaledValue().toByteArray();
+            out.writeInt(value.scale());
+            out.writeShort(unscaled.length);
+            out.write(unscaled);
+        }
+    }
+
+    private static BigDecimal readDecimal(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        int scale = in.readInt();
+        byte[] unscaled = new byte[in.readUnsignedShort()];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static void writeDateTime(DataOutputStream out, LocalDateTime value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.toLocalDate().toEpochDay());
+            out.writeLong(value.toLocalTime().toNanoOfDay());
+        }
+    }
+
+    private static LocalDateTime readDateTime(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        LocalDate date = LocalDate.ofEpochDay(in.readLong());
+        return LocalDateTime.of(date, LocalTime.ofNanoOfDay(in.readLong()));
+    }
+}
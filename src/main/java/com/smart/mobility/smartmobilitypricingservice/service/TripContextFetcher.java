@@ -0,0 +1,391 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.dto.DailySpentResponse;
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingContextDTO;
+import com.smart.mobility.smartmobilitypricingservice.proxy.AccountServiceClient;
+import com.smart.mobility.smartmobilitypricingservice.proxy.UserServiceClient;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Récupère en parallèle le contexte utilisateur et, si le cumul local doit être
+ * amorcé, le daily spent d'un trajet. Le contexte retombe sur le profil par défaut en cas d'erreur ou de
+ * dépassement de délai ; sans daily spent, le plafond s'appuie sur le cumul
+ * local (mode dégradé), ou le trajet échoue si ce mode est désactivé.
+ * <p>
+ * Chaque service appelé a son disjoncteur et un nombre maximum d'appels
+ * simultanés : un service en panne fait échouer les appels aussitôt au lieu
+ * d'occuper le pool jusqu'au délai d'attente. Un appel attend au plus ce
+ * délai qu'une place se libère ; s'il n'en obtient pas, l'erreur est locale
+ * et le trajet échoue (il sera rejoué) au lieu d'être tarifé avec le profil
+ * par défaut. Optionnellement, une
+ * requête de secours est envoyée quand la réponse tarde au-delà du percentile
+ * habituel.
+ */
+@Component
+@Slf4j
+public class TripContextFetcher {
+
+    private final UserServiceClient userServiceClient;
+    private final AccountServiceClient accountServiceClient;
+    private final UserContextCache userContextCache;
+    private final Executor executor;
+    private final PricingProperties.Fetch properties;
+    private final ObservationRegistry observationRegistry;
+    private final Counter fallbackCounter;
+    private final Counter dailySpentFallbackCounter;
+    private final Counter hedgeCounter;
+    private final Dependency userService;
+    private final Dependency billingService;
+
+    public TripContextFetcher(UserServiceClient userServiceClient, AccountServiceClient accountServiceClient,
+            UserContextCache userContextCache, @Qualifier("pricingFetchExecutor") Executor executor,
+            MeterRegistry meterRegistry, ObservationRegistry observationRegistry,
+            PricingProperties pricingProperties) {
+        this.userServiceClient = userServiceClient;
+        this.accountServiceClient = accountServiceClient;
+        this.userContextCache = userContextCache;
+        this.executor = executor;
+        this.properties = pricingProperties.getFetch();
+        this.observationRegistry = observationRegistry;
+        this.fallbackCounter = Counter.builder("pricing.context.fallback")
+                .description("Trips priced with the default profile because the user service failed")
+                .register(meterRegistry);
+        this.dailySpentFallbackCounter = Counter.builder("pricing.context.daily-spent.fallback")
+                .description("Trips capped on the local ledger because the billing service failed")
+                .register(meterRegistry);
+        this.hedgeCounter = Counter.builder("pricing.dependency.hedged")
+                .description("Second requests sent because the first one was slower than usual")
+                .register(meterRegistry);
+        CircuitBreakerRegistry circuitBreakers = CircuitBreakerRegistry.ofDefaults();
+        this.userService = new Dependency("user-service", properties.getUserContextTimeout(),
+                properties.getUserContextMaxConcurrentCalls(), circuitBreakers);
+        this.billingService = new Dependency("billing-service", properties.getDailySpentTimeout(),
+                properties.getDailySpentMaxConcurrentCalls(), circuitBreakers);
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakers).bindTo(meterRegistry);
+    }
+
+    /**
+     * Contexte de tarification d'un utilisateur ; le daily spent n'est demandé
+     * au Billing Service que si {@code withDailySpent}.
+     */
+    public TripContext fetch(String userId, boolean withDailySpent) {
+        return fetchObservation().observe(() -> {
+            CompletableFuture<UserContext> summary = fetchSummaryAsync(userId);
+            CompletableFuture<Double> dailySpent = withDailySpent ? fetchDailySpentAsync(userId) : null;
+            UserContext userContext = join(summary, userId);
+            return tripContext(userContext, withDailySpent, join(dailySpent, userId));
+        });
+    }
+
+    /**
+     * Contextes de plusieurs utilisateurs. Les appels sont lancés au fur et à
+     * mesure que le bulkhead de chaque service a des places libres.
+     */
+    public Map<String, TripContext> fetchAll(Collection<String> userIds, Predicate<String> withDailySpent) {
+        return fetchObservation().observe(() -> {
+            Map<String, CompletableFuture<UserContext>> summaries = new HashMap<>();
+            Map<String, CompletableFuture<Double>> dailySpents = new HashMap<>();
+            for (String userId : new LinkedHashSet<>(userIds)) {
+                summaries.put(userId, fetchSummaryAsync(userId));
+                if (withDailySpent.test(userId)) {
+                    dailySpents.put(userId, fetchDailySpentAsync(userId));
+                }
+            }
+            Map<String, TripContext> contexts = new HashMap<>();
+            summaries.forEach((userId, summary) -> {
+                contexts.put(userId, tripContext(join(summary, userId), dailySpents.containsKey(userId),
+                        join(dailySpents.get(userId), userId)));
+            });
+            return contexts;
+        });
+    }
+
+    /**
+     * Profil utilisé lorsque le User Service est injoignable.
+     */
+    public static PricingContextDTO defaultProfile() {
+        return PricingContextDTO.builder()
+                .hasActivePass(false)
+                .dailyCapAmount(2500.0)
+                .activeSubscriptions(new ArrayList<>())
+                .build();
+    }
+
+    private CompletableFuture<UserContext> fetchSummaryAsync(String userId) {
+        UserContextCache.Entry cached = userContextCache.get(userId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(new UserContext(cached, false));
+        }
+        long generation = userContextCache.generation(userId);
+        return callAsync(userService, () -> userServiceClient.getPricingContext(userId))
+                .thenApply(context -> {
+                    UserContextCache.Entry entry = new UserContextCache.Entry(context,
+                            SubscriptionRates.of(context));
+                    userContextCache.put(userId, generation, entry);
+                    return new UserContext(entry, false);
+                })
+                .orTimeout(properties.getUserContextTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    rethrowIfBulkheadFull(e);
+                    log.warn("UserService injoignable pour {}, utilisation des valeurs par défaut", userId);
+                    fallbackCounter.increment();
+                    return new UserContext(new UserContextCache.Entry(defaultProfile(), SubscriptionRates.NONE),
+                            true);
+                });
+    }
+
+    /**
+     * Daily spent selon le Billing Service ; {@code null} en mode dégradé.
+     */
+    private CompletableFuture<Double> fetchDailySpentAsync(String userId) {
+        CompletableFuture<Double> dailySpent = callAsync(billingService,
+                () -> accountServiceClient.getDailySpent(userId))
+                .thenApply(response -> response.getDailySpent() != null ? response.getDailySpent() : 0.0)
+                .orTimeout(properties.getDailySpentTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        if (!properties.isDailySpentFallback()) {
+            return dailySpent;
+        }
+        return dailySpent.exceptionally(e -> {
+            rethrowIfBulkheadFull(e);
+            log.warn("BillingService injoignable pour {}, plafond évalué sur le cumul local", userId);
+            dailySpentFallbackCounter.increment();
+            return null;
+        });
+    }
+
+    private static TripContext tripContext(UserContext userContext, boolean withDailySpent, Double dailySpent) {
+        return new TripContext(userContext.entry().summary(), userContext.entry().subscriptionRates(),
+                withDailySpent && dailySpent != null, dailySpent, userContext.fallback(),
+                withDailySpent && dailySpent == null);
+    }
+
+    /**
+     * Appel d'un service, doublé d'une requête de secours si elle est activée
+     * et que la première réponse tarde. Le premier succès est retenu ; l'appel
+     * échoue si la première requête échoue avant le secours, ou si les deux
+     * échouent.
+     */
+    private <T> CompletableFuture<T> callAsync(Dependency dependency, Supplier<T> call) {
+        if (dependency.hedgeDelay == null) {
+            return attempt(dependency, call);
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger attempts = new AtomicInteger(1);
+        BiConsumer<T, Throwable> complete = (value, error) -> {
+            if (error == null) {
+                result.complete(value);
+            } else if (attempts.decrementAndGet() == 0) {
+                result.completeExceptionally(error);
+            }
+        };
+        attempt(dependency, call).whenComplete(complete);
+        CompletableFuture.delayedExecutor(dependency.hedgeDelay.delayNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+            // Le secours n'attend pas de place : sans place libre, il n'est pas envoyé
+            if (result.isDone() || !dependency.circuitBreaker.tryAcquirePermission()) {
+                return;
+            }
+            if (!dependency.bulkhead.tryAcquire()) {
+                dependency.circuitBreaker.releasePermission();
+                return;
+            }
+            if (attempts.getAndIncrement() > 0) {
+                hedgeCounter.increment();
+                submit(dependency, call).whenComplete(complete);
+            } else {
+                dependency.bulkhead.release();
+                dependency.circuitBreaker.releasePermission();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Une requête vers un service, si son disjoncteur le permet et qu'une
+     * place du bulkhead se libère dans le délai d'attente du service.
+     */
+    private <T> CompletableFuture<T> attempt(Dependency dependency, Supplier<T> call) {
+        CircuitBreaker circuitBreaker = dependency.circuitBreaker;
+        if (!circuitBreaker.tryAcquirePermission()) {
+            return CompletableFuture.failedFuture(CallNotPermittedException.createCallNotPermittedException(
+                    circuitBreaker));
+        }
+        if (!acquirePermit(dependency)) {
+            circuitBreaker.releasePermission();
+            return CompletableFuture.failedFuture(new BulkheadFullException(dependency.name));
+        }
+        return submit(dependency, call);
+    }
+
+    private static boolean acquirePermit(Dependency dependency) {
+        try {
+            return dependency.bulkhead.tryAcquire(dependency.permitWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Exécute dans le pool d'appels une requête dont la place du bulkhead et
+     * la permission du disjoncteur sont déjà acquises.
+     */
+    private <T> CompletableFuture<T> submit(Dependency dependency, Supplier<T> call) {
+        CircuitBreaker circuitBreaker = dependency.circuitBreaker;
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                long start = System.nanoTime();
+                try {
+                    T value = remoteCall(dependency.name, call);
+                    long elapsed = System.nanoTime() - start;
+                    circuitBreaker.onSuccess(elapsed, TimeUnit.NANOSECONDS);
+                    if (dependency.hedgeDelay != null) {
+                        dependency.hedgeDelay.record(elapsed);
+                    }
+                    return value;
+                } catch (RuntimeException e) {
+                    circuitBreaker.onError(System.nanoTime() - start, TimeUnit.NANOSECONDS, e);
+                    throw e;
+                } finally {
+                    dependency.bulkhead.release();
+                }
+            }, executor);
+        } catch (RuntimeException e) {
+            // Pool saturé : l'appel échoue comme un appel distant en erreur
+            dependency.bulkhead.release();
+            circuitBreaker.releasePermission();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Observation de la récupération concurrente du contexte et du daily spent.
+     */
+    private Observation fetchObservation() {
+        return Observation.createNotStarted("pricing.context.fetch", observationRegistry)
+                .contextualName("fetch-trip-context");
+    }
+
+    /**
+     * Appel distant observé (timer et span par service appelé). Exécuté dans
+     * le pool d'appels, où le contexte de trace du trajet est propagé.
+     */
+    private <T> T remoteCall(String dependency, Supplier<T> call) {
+        return Observation.createNotStarted("pricing.dependency", observationRegistry)
+                .contextualName(dependency)
+                .lowCardinalityKeyValue("dependency", dependency)
+                .observe(call);
+    }
+
+    private static <T> T join(CompletableFuture<T> result, String userId) {
+        if (result == null) {
+            return null;
+        }
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Pricing context unavailable for user " + userId, e.getCause());
+        }
+    }
+
+    // Un bulkhead plein est une saturation locale, pas une panne du service : pas de valeur de secours
+    private static void rethrowIfBulkheadFull(Throwable e) {
+        Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+        if (cause instanceof BulkheadFullException bulkheadFull) {
+            throw bulkheadFull;
+        }
+    }
+
+    /**
+     * Contexte d'un trajet : abonnements/plafond, meilleurs taux d'abonnement
+     * par transport et, si demandée, dépense du jour selon le Billing Service. {@code fallbackProfile} : le User Service
+     * n'a pas répondu, le profil par défaut est utilisé ;
+     * {@code dailySpentFallback} : la dépense du jour était demandée mais le
+     * Billing Service n'a pas répondu.
+     */
+    public record TripContext(PricingContextDTO summary, SubscriptionRates subscriptionRates,
+            boolean dailySpentFetched, Double dailySpent, boolean fallbackProfile, boolean dailySpentFallback) {
+    }
+
+    /**
+     * Contexte utilisateur, et s'il s'agit du profil par défaut.
+     */
+    private record UserContext(UserContextCache.Entry entry, boolean fallback) {
+    }
+
+    /**
+     * Aucune place libre dans le bulkhead d'un service pendant son délai
+     * d'attente.
+     */
+    static final class BulkheadFullException extends RejectedExecutionException {
+
+        BulkheadFullException(String dependency) {
+            super("Too many concurrent calls to " + dependency);
+        }
+    }
+
+    /**
+     * Service appelé : disjoncteur, bulkhead et délai de la requête de secours.
+     */
+    private final class Dependency {
+
+        private final String name;
+        private final CircuitBreaker circuitBreaker;
+        private final Semaphore bulkhead;
+        // Attente maximale d'une place du bulkhead
+        private final long permitWaitNanos;
+        private final HedgeDelay hedgeDelay;
+
+        private Dependency(String name, Duration timeout, int maxConcurrentCalls,
+                CircuitBreakerRegistry circuitBreakers) {
+            PricingProperties.Fetch.Breaker breaker = properties.getCircuitBreaker();
+            this.name = name;
+            this.circuitBreaker = circuitBreakers.circuitBreaker(name, CircuitBreakerConfig.custom()
+                    .slidingWindowSize(breaker.getSlidingWindowSize())
+                    .minimumNumberOfCalls(breaker.getMinimumCalls())
+                    .failureRateThreshold(breaker.getFailureRateThreshold())
+                    .slowCallDurationThreshold(timeout)
+                    .slowCallRateThreshold(breaker.getSlowCallRateThreshold())
+                    .waitDurationInOpenState(breaker.getWaitInOpenState())
+                    .permittedNumberOfCallsInHalfOpenState(breaker.getHalfOpenCalls())
+                    .build());
+            this.bulkhead = new Semaphore(maxConcurrentCalls);
+            this.permitWaitNanos = timeout.toNanos();
+            PricingProperties.Fetch.Hedging hedging = properties.getHedging();
+            // Au-delà de la moitié du délai d'attente, un secours n'aurait plus le temps de répondre
+            this.hedgeDelay = hedging.isEnabled() ? new HedgeDelay(hedging.getPercentile(),
+                    hedging.getMinDelay().toNanos(), timeout.toNanos() / 2) : null;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingContextDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cache borné (taille + TTL) des contextes de tarification renvoyés par le
+ * User Service, avec leurs taux d'abonnement précalculés. Seules les réponses
+ * réelles sont mises en cache, jamais le profil par défaut.
+ * <p>
+ * Chaque invalidation fait avancer la génération de l'utilisateur (par
+ * tranche de hash) : un appel au User Service parti avant l'invalidation ne
+ * remet pas en cache le contexte périmé qu'il rapporte.
+ */
+@Component
+@Slf4j
+public class UserContextCache {
+
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final boolean enabled;
+    private final Cache<String, Entry> cache;
+    // Générations par tranche de userId, et de invalidateAll
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    private final AtomicLong globalGeneration = new AtomicLong();
+
+    public UserContextCache(PricingProperties pricingProperties, MeterRegistry meterRegistry) {
+        PricingProperties.ContextCache properties = pricingProperties.getContextCache();
+        this.enabled = properties.isEnabled();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxSize())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "pricingContext");
+    }
+
+    /**
+     * Contexte en cache, ou {@code null}.
+     */
+    public Entry get(String userId) {
+        return enabled ? cache.getIfPresent(userId) : null;
+    }
+
+    /**
+     * Génération courante de l'utilisateur, à relever avant l'appel au User
+     * Service et à passer à {@link #put}.
+     */
+    public long generation(String userId) {
+        return globalGeneration.get() + generations.get(stripe(userId));
+    }
+
+    /**
+     * Met le contexte en cache, sauf si l'utilisateur a été invalidé depuis
+     * {@code generation}.
+     */
+    public void put(String userId, long generation, Entry entry) {
+        if (!enabled || entry.summary() == null) {
+            return;
+        }
+        // Vérifié sous le verrou de la clé : une invalidation avance la génération avant de retirer l'entrée
+        cache.asMap().compute(userId, (key, current) -> generation(userId) == generation ? entry : current);
+    }
+
+    public void invalidate(String userId) {
+        generations.incrementAndGet(stripe(userId));
+        cache.invalidate(userId);
+        log.debug("Pricing context cache invalidated for user {}", userId);
+    }
+
+    public void invalidateAll() {
+        globalGeneration.incrementAndGet();
+        cache.invalidateAll();
+        log.info("Pricing context cache cleared");
+    }
+
+    private static int stripe(String userId) {
+        return Math.floorMod(userId.hashCode(), GENERATION_STRIPES);
+    }
+
+    /**
+     * Contexte du User Service et taux d'abonnement qui en sont tirés.
+     */
+    public record Entry(PricingContextDTO summary, SubscriptionRates subscriptionRates) {
+    }
+}
@@ -0,0 +1,332 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.model.PricingResult;
+import com.smart.mobility.smartmobilitypricingservice.repository.PricingResultRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Écriture différée des audits : les audits sont placés dans une file bornée
+ * après le commit de la tarification, puis insérés par lots par un thread
+ * dédié. Seule la ligne de {@code pricing_results} est différée : la clé du
+ * trajet est réservée dans la transaction de tarification, avant la
+ * publication ({@link PricedTripRegistry#claim}). File pleine : l'appelant attend une place, puis écrit lui-même.
+ * À l'arrêt, la file est vidée en base ; ce qui ne peut pas être inséré est
+ * écrit dans un fichier rejoué au démarrage suivant.
+ */
+@Component
+@ConditionalOnProperty(name = "pricing.audit.mode", havingValue = "async")
+@Slf4j
+public class WriteBehindPricingAuditWriter implements PricingAuditWriter, SmartLifecycle {
+
+    // Arrêté après les listeners RabbitMQ et le serveur web, qui alimentent la file
+    private static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+    private final PricingResultRepository pricingResultRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final PricingProperties.Audit properties;
+    private final BlockingQueue<PricingResult> queue;
+    private final Path spillFile;
+    private final Counter flushedCounter;
+    private final Counter overflowCounter;
+    private final Counter spilledCounter;
+    private final Counter duplicateCounter;
+    private final Counter rejectedCounter;
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public WriteBehindPricingAuditWriter(PricingResultRepository pricingResultRepository,
+            PlatformTransactionManager transactionManager, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            PricingProperties pricingProperties) {
+        this.pricingResultRepository = pricingResultRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.objectMapper = objectMapper;
+        this.properties = pricingProperties.getAudit();
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.spillFile = Path.of(properties.getSpillFile());
+        Gauge.builder("pricing.audit.queue.size", queue, BlockingQueue::size)
+                .description("Pricing audits waiting to be written")
+                .register(meterRegistry);
+        this.flushedCounter = Counter.builder("pricing.audit.flushed")
+                .description("Pricing audits written by the background writer")
+                .register(meterRegistry);
+        this.overflowCounter = Counter.builder("pricing.audit.overflow")
+                .description("Pricing audits written by the caller because the queue was full")
+                .register(meterRegistry);
+        this.spilledCounter = Counter.builder("pricing.audit.spilled")
+                .description("Pricing audits written to the spill file")
+                .register(meterRegistry);
+        this.duplicateCounter = Counter.builder("pricing.audit.duplicate")
+                .description("Spilled pricing audits skipped on replay because they were already stored")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("pricing.audit.rejected")
+                .description("Pricing audits rejected by a database constraint and dropped")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void write(PricingResult audit) {
+        writeAll(List.of(audit));
+    }
+
+    /**
+     * Met les audits en file une fois la transaction de tarification validée
+     * (rien n'est audité si elle est annulée).
+     */
+    @Override
+    public void writeAll(List<PricingResult> audits) {
+        if (audits.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(audits);
+                }
+            });
+        } else {
+            enqueue(audits);
+        }
+    }
+
+    private void enqueue(List<PricingResult> audits) {
+        List<PricingResult> rejected = new ArrayList<>(0);
+        for (PricingResult audit : audits) {
+            if (!running || !offer(audit)) {
+                rejected.add(audit);
+            }
+        }
+        if (!rejected.isEmpty()) {
+            overflowCounter.increment(rejected.size());
+            persist(rejected);
+        }
+    }
+
+    private boolean offer(PricingResult audit) {
+        try {
+            return queue.offer(audit, properties.getOfferTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public void start() {
+        replaySpillFile();
+        running = true;
+        flusher = new Thread(this::flushLoop, "pricing-audit-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Write-behind pricing audit started (capacity {}, flush size {})",
+                properties.getQueueCapacity(), properties.getFlushSize());
+    }
+
+    /**
+     * Arrête le thread d'écriture puis vide la file.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PricingResult> batch = new ArrayList<>(properties.getFlushSize());
+        while (queue.drainTo(batch, properties.getFlushSize()) > 0) {
+            persist(batch);
+            batch.clear();
+        }
+        log.info("Write-behind pricing audit stopped, queue drained");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * Constitue un lot dès qu'un audit arrive : jusqu'à {@code flushSize}
+     * audits ou {@code flushInterval} d'attente, puis l'insère.
+     */
+    private void flushLoop() {
+        int flushSize = properties.getFlushSize();
+        long intervalNanos = properties.getFlushInterval().toNanos();
+        List<PricingResult> batch = new ArrayList<>(flushSize);
+        while (running) {
+            try {
+                PricingResult first = queue.poll(intervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + intervalNanos;
+                queue.drainTo(batch, flushSize - batch.size());
+                while (batch.size() < flushSize && running) {
+                    PricingResult next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, flushSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                persist(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Insère un lot dans sa propre transaction ; en cas d'échec le lot est
+     * conservé dans le fichier de débordement.
+     */
+    private void persist(List<PricingResult> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> pricingResultRepository.saveAll(batch));
+            flushedCounter.increment(batch.size());
+        } catch (DataIntegrityViolationException e) {
+            // Une ligne invalide (contrainte de colonne) fait échouer tout le lot : écriture un par un pour l'isoler.
+            // Les doublons de trip_id n'arrivent pas ici : la réservation du trajet les exclut (pas d'index unique)
+            persistIndividually(batch);
+        } catch (RuntimeException e) {
+            log.error("Failed to write {} pricing audits, spilling them to {}", batch.size(), spillFile, e);
+            spill(batch);
+        }
+    }
+
+    private void persistIndividually(List<PricingResult> batch) {
+        for (PricingResult audit : batch) {
+            audit.setId(null);
+            try {
+                transactionTemplate.executeWithoutResult(status -> pricingResultRepository.save(audit));
+                flushedCounter.increment();
+            } catch (DataIntegrityViolationException e) {
+                // Rejetée à chaque nouvelle tentative : ni fichier de débordement, ni rejeu
+                rejectedCounter.increment();
+                log.error("Pricing audit for trip {} rejected by the database, dropped", audit.getTripId(), e);
+            } catch (RuntimeException e) {
+                log.error("Failed to write pricing audit for trip {}, spilling it to {}", audit.getTripId(),
+                        spillFile, e);
+                spill(List.of(audit));
+            }
+        }
+    }
+
+    /**
+     * Réinsère un lot du fichier de débordement, sans les audits déjà en base
+     * (lot inséré avant un arrêt brutal) : {@code pricing_results} n'a pas
+     * d'index unique sur {@code trip_id}.
+     */
+    private int replay(List<PricingResult> batch) {
+        batch.removeIf(audit -> {
+            if (pricingResultRepository.findByTripId(audit.getTripId()).isEmpty()) {
+                return false;
+            }
+            duplicateCounter.increment();
+            log.warn("Spilled pricing audit for trip {} already stored, skipped", audit.getTripId());
+            return true;
+        });
+        if (!batch.isEmpty()) {
+            persist(batch);
+        }
+        return batch.size();
+    }
+
+    private synchronized void spill(List<PricingResult> batch) {
+        try (FileOutputStream file = new FileOutputStream(spillFile.toFile(), true);
+                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(file, StandardCharsets.UTF_8))) {
+            for (PricingResult audit : batch) {
+                // L'identifiant éventuellement attribué par la tentative échouée n'est pas conservé
+                audit.setId(null);
+                writer.write(objectMapper.writeValueAsString(audit));
+                writer.newLine();
+            }
+            writer.flush();
+            file.getFD().sync();
+            spilledCounter.increment(batch.size());
+        } catch (IOException e) {
+            log.error("Pricing audits lost for trips {}", batch.stream().map(PricingResult::getTripId).toList(), e);
+        }
+    }
+
+    /**
+     * Réinsère les audits d'un précédent arrêt ; ceux qui échouent à nouveau
+     * repartent dans un nouveau fichier de débordement.
+     */
+    private void replaySpillFile() {
+        Path replaying = spillFile.resolveSibling(spillFile.getFileName() + ".replaying");
+        try {
+            // Un rejeu interrompu est repris avant tout nouveau débordement
+            if (!Files.exists(replaying)) {
+                if (!Files.exists(spillFile)) {
+                    return;
+                }
+                Files.move(spillFile, replaying);
+            }
+            int replayed = 0;
+            List<PricingResult> batch = new ArrayList<>(properties.getFlushSize());
+            try (BufferedReader reader = Files.newBufferedReader(replaying, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    batch.add(objectMapper.readValue(line, PricingResult.class));
+                    if (batch.size() == properties.getFlushSize()) {
+                        replayed += replay(batch);
+                        batch = new ArrayList<>(properties.getFlushSize());
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                replayed += replay(batch);
+            }
+            Files.delete(replaying);
+            log.info("Replayed {} spilled pricing audits from {}", replayed, spillFile);
+        } catch (IOException e) {
+            log.error("Could not replay spilled pricing audits from {}", spillFile, e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.smart.mobility.smartmobilitypricingservice.enums.TransportType;
+
+/**
+ * Barème par zones traversées : prix de base, plus un supplément par zone
+ * distincte au-delà de la première (BUS, TER). Montants en centimes.
+ */
+public record ZoneCountFareStrategy(TransportType transportType, long baseFare, long extraZoneFare)
+        implements FareStrategy {
+
+    @Override
+    public long baseFare(FareNetworkSnapshot.CompiledLine line, int from, int to) {
+        long extraZones = Math.max(0, line.distinctZones(from, to) - 1);
+        return baseFare + extraZones * extraZoneFare;
+    }
+}
@@ -0,0 +1,18 @@
+package com.smart.mobility.smartmobilitypricingservice.service;
+
+import com.smart.mobility.smartmobilitypricingservice.enums.TransportType;
+
+/**
+ * Barème forfaitaire : un prix si départ et arrivée sont dans la même zone,
+ * un autre sinon (BRT). Montants en centimes.
+ */
+public record ZoneFlatFareStrategy(TransportType transportType, long sameZoneFare, long otherFare)
+        implements FareStrategy {
+
+    @Override
+    public long baseFare(FareNetworkSnapshot.CompiledLine line, int from, int to) {
+        Integer startZone = line.zoneAt(from);
+        Integer endZone = line.zoneAt(to);
+        return startZone != null && startZone.equals(endZone) ? sameZoneFare : otherFare;
+    }
+}
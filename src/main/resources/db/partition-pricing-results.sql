@@ -0,0 +1,32 @@
+-- One-off migration of pricing_results to monthly partitions (MySQL 8).
+-- Run with the pricing service stopped. Afterwards PricingArchiveJob
+-- (pricing.archive.enabled=true) creates upcoming partitions and archives old ones.
+--
+-- A partitioned table can only have unique keys that include the partitioning
+-- column, so trip_id uniqueness moves to pricing_trip_keys, which also tells
+-- lookups which month to search.
+
+CREATE TABLE IF NOT EXISTS pricing_trip_keys (
+    trip_id     BIGINT      NOT NULL PRIMARY KEY,
+    computed_at DATETIME(6) NOT NULL
+);
+
+INSERT IGNORE INTO pricing_trip_keys (trip_id, computed_at)
+SELECT trip_id, computed_at FROM pricing_results;
+
+ALTER TABLE pricing_results
+    DROP INDEX uk_pricing_results_trip_id,
+    ADD INDEX idx_pricing_results_trip_id (trip_id),
+    MODIFY computed_at DATETIME(6) NOT NULL,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, computed_at);
+
+-- One partition per month from the oldest row; adjust the list to the data.
+-- Partition names must stay pYYYYMM, and p_max must remain the last one.
+ALTER TABLE pricing_results
+    PARTITION BY RANGE COLUMNS (computed_at) (
+        PARTITION p202601 VALUES LESS THAN ('2026-02-01'),
+        PARTITION p202602 VALUES LESS THAN ('2026-03-01'),
+        PARTITION p202603 VALUES LESS THAN ('2026-04-01'),
+        PARTITION p_max VALUES LESS THAN (MAXVALUE)
+    );
@@ -0,0 +1,22 @@
+-- Id sequences of pricing_results and pricing_outbox (MySQL 8).
+-- Run once with the pricing service stopped, before deploying the pooled
+-- SEQUENCE ids. MySQL has no sequences: Hibernate emulates each one with a
+-- single-row table holding the next value, and reserves 50 ids per call
+-- (allocationSize), so the seed stays one allocation above the current MAX(id).
+
+CREATE TABLE IF NOT EXISTS pricing_results_seq (
+    next_val BIGINT NOT NULL
+) ENGINE = InnoDB;
+
+DELETE FROM pricing_results_seq;
+INSERT INTO pricing_results_seq (next_val)
+SELECT COALESCE(MAX(id), 0) + 51 FROM pricing_results;
+
+-- Transactional outbox (pricing.outbox.enabled=true); skip if pricing_outbox does not exist yet.
+CREATE TABLE IF NOT EXISTS pricing_outbox_seq (
+    next_val BIGINT NOT NULL
+) ENGINE = InnoDB;
+
+DELETE FROM pricing_outbox_seq;
+INSERT INTO pricing_outbox_seq (next_val)
+SELECT COALESCE(MAX(id), 0) + 51 FROM pricing_outbox;
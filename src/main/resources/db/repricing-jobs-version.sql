@@ -0,0 +1,6 @@
+-- Optimistic locking of repricing_jobs (RepricingJob.version), run before
+-- deploying it: a job cancelled or resumed from another instance makes the
+-- runner's next checkpoint fail instead of being overwritten.
+
+ALTER TABLE repricing_jobs
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
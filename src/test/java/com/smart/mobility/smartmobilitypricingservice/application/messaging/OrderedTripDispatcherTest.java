@@ -0,0 +1,182 @@
+package com.smart.mobility.smartmobilitypricingservice.application.messaging;
+
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.dto.TripCompletedEvent;
+import com.smart.mobility.smartmobilitypricingservice.enums.TransportType;
+import com.smart.mobility.smartmobilitypricingservice.messaging.AdaptiveConcurrencyLimit;
+import com.smart.mobility.smartmobilitypricingservice.messaging.OrderedTripDispatcher;
+import com.smart.mobility.smartmobilitypricingservice.messaging.TripPricingHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderedTripDispatcherTest {
+
+        @Mock
+        private TripPricingHandler tripPricingHandler;
+
+        private ExecutorService executor;
+        private OrderedTripDispatcher dispatcher;
+
+        @BeforeEach
+        void setUp() {
+                PricingProperties properties = new PricingProperties();
+                properties.getListener().getDispatch().setLanes(4);
+                properties.getListener().getDispatch().setMinPrefetch(2);
+                properties.getListener().getDispatch().setMaxPrefetch(8);
+                executor = Executors.newFixedThreadPool(4);
+                dispatcher = new OrderedTripDispatcher(executor, tripPricingHandler, new SimpleMeterRegistry(),
+                                properties);
+        }
+
+        @AfterEach
+        void tearDown() {
+                executor.shutdownNow();
+        }
+
+        private TripCompletedEvent trip(long tripId, String userId) {
+                return TripCompletedEvent.builder().tripId(tripId).userId(userId).transportType(TransportType.BUS).build();
+        }
+
+        @Test
+        void dispatch_PricesEachUsersTripsInDeliveryOrder() throws Exception {
+                Map<String, List<Long>> priced = new ConcurrentHashMap<>();
+                doAnswer(invocation -> {
+                        TripCompletedEvent event = invocation.getArgument(0);
+                        priced.computeIfAbsent(event.userId(), k -> Collections.synchronizedList(new ArrayList<>()))
+                                        .add(event.tripId());
+                        return null;
+                }).when(tripPricingHandler).handle(any());
+                int users = 10;
+                int tripsPerUser = 50;
+                CountDownLatch acknowledged = new CountDownLatch(users * tripsPerUser);
+
+                for (int i = 0; i < tripsPerUser; i++) {
+                        for (int user = 0; user < users; user++) {
+                                dispatcher.dispatch(trip(i, "user-" + user), acknowledgement(acknowledged));
+                        }
+                }
+
+                assertTrue(acknowledged.await(10, TimeUnit.SECONDS));
+                for (int user = 0; user < users; user++) {
+                        List<Long> tripIds = priced.get("user-" + user);
+                        assertEquals(tripsPerUser, tripIds.size());
+                        for (int i = 0; i < tripsPerUser; i++) {
+                                assertEquals(i, tripIds.get(i));
+                        }
+                }
+        }
+
+        @Test
+        void dispatch_RequeuesFailedTrips() throws Exception {
+                doThrow(new IllegalStateException("boom")).when(tripPricingHandler).handle(any());
+                OrderedTripDispatcher.Acknowledgement acknowledgement = mock(OrderedTripDispatcher.Acknowledgement.class);
+
+                dispatcher.dispatch(trip(1L, "user-1"), acknowledgement);
+
+                verify(acknowledgement, timeout(5000)).requeue();
+                verify(acknowledgement, never()).ack();
+        }
+
+        @Test
+        void dispatch_DoesNotPriceALaterTripBeforeTheRedeliveryOfAFailedOne() throws Exception {
+                List<Long> priced = Collections.synchronizedList(new ArrayList<>());
+                AtomicBoolean failed = new AtomicBoolean();
+                doAnswer(invocation -> {
+                        TripCompletedEvent event = invocation.getArgument(0);
+                        if (event.tripId() == 1L && failed.compareAndSet(false, true)) {
+                                throw new IllegalStateException("boom");
+                        }
+                        priced.add(event.tripId());
+                        return null;
+                }).when(tripPricingHandler).handle(any());
+                CountDownLatch acknowledged = new CountDownLatch(2);
+                // Broker : les messages remis en file sont redélivrés dans l'ordre de leur rejet
+                ExecutorService broker = Executors.newSingleThreadExecutor();
+                try {
+                        dispatcher.dispatch(trip(1L, "user-1"), redelivering(trip(1L, "user-1"), broker, acknowledged));
+                        dispatcher.dispatch(trip(2L, "user-1"), redelivering(trip(2L, "user-1"), broker, acknowledged));
+
+                        assertTrue(acknowledged.await(10, TimeUnit.SECONDS));
+                } finally {
+                        broker.shutdownNow();
+                }
+                assertEquals(List.of(1L, 2L), priced);
+        }
+
+        @Test
+        void window_GrowsWhileFastAndHalvesOnSlowCompletions() throws Exception {
+                long target = TimeUnit.MILLISECONDS.toNanos(250);
+                AdaptiveConcurrencyLimit window = new AdaptiveConcurrencyLimit(2, 8, target);
+
+                for (int i = 0; i < 50; i++) {
+                        window.acquire();
+                        window.release(target / 10, true);
+                }
+                assertEquals(8, window.limit());
+
+                window.acquire();
+                window.release(target * 2, true);
+                assertEquals(4, window.limit());
+
+                // Deuxième lenteur dans la même période : compte pour un seul signal
+                window.acquire();
+                window.release(target * 2, false);
+                assertEquals(4, window.limit());
+        }
+
+        private OrderedTripDispatcher.Acknowledgement redelivering(TripCompletedEvent event, ExecutorService broker,
+                        CountDownLatch acknowledged) {
+                return new OrderedTripDispatcher.Acknowledgement() {
+                        @Override
+                        public void ack() {
+                                acknowledged.countDown();
+                        }
+
+                        @Override
+                        public void requeue() {
+                                broker.execute(() -> {
+                                        try {
+                                                dispatcher.dispatch(event, this);
+                                        } catch (InterruptedException e) {
+                                                Thread.currentThread().interrupt();
+                                        }
+                                });
+                        }
+                };
+        }
+
+        private OrderedTripDispatcher.Acknowledgement acknowledgement(CountDownLatch acknowledged) {
+                return new OrderedTripDispatcher.Acknowledgement() {
+                        @Override
+                        public void ack() {
+                                acknowledged.countDown();
+                        }
+
+                        @Override
+                        public void requeue() {
+                                fail("unexpected requeue");
+                        }
+                };
+        }
+}
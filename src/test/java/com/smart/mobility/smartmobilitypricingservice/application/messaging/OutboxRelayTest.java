@@ -0,0 +1,112 @@
+package com.smart.mobility.smartmobilitypricingservice.application.messaging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.config.RabbitMQConfig;
+import com.smart.mobility.smartmobilitypricingservice.dto.TripPricedEvent;
+import com.smart.mobility.smartmobilitypricingservice.messaging.OutboxRelay;
+import com.smart.mobility.smartmobilitypricingservice.model.OutboxEvent;
+import com.smart.mobility.smartmobilitypricingservice.repository.OutboxBucketRepository;
+import com.smart.mobility.smartmobilitypricingservice.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+        @Mock
+        private OutboxEventRepository outboxEventRepository;
+
+        @Mock
+        private OutboxBucketRepository outboxBucketRepository;
+
+        @Mock
+        private RabbitTemplate rabbitTemplate;
+
+        @Mock
+        private RabbitOperations rabbitOperations;
+
+        @Mock
+        private PlatformTransactionManager transactionManager;
+
+        private final ObjectMapper objectMapper = new ObjectMapper();
+        private OutboxRelay relay;
+
+        @BeforeEach
+        void setUp() {
+                PricingProperties properties = new PricingProperties();
+                properties.getOutbox().setBuckets(1);
+                relay = new OutboxRelay(outboxEventRepository, outboxBucketRepository, rabbitTemplate, objectMapper,
+                                transactionManager, Clock.systemDefaultZone(), new SimpleMeterRegistry(), properties);
+
+                when(outboxBucketRepository.existsById(0)).thenReturn(true);
+                when(outboxBucketRepository.tryLock(0)).thenReturn(Optional.of(0));
+                lenient().when(rabbitTemplate.invoke(any())).thenAnswer(invocation -> invocation
+                                .<RabbitOperations.OperationsCallback<?>>getArgument(0).doInRabbit(rabbitOperations));
+        }
+
+        private OutboxEvent pending(long id, long tripId) throws Exception {
+                TripPricedEvent event = TripPricedEvent.builder().tripId(tripId).userId("user-1")
+                                .basePrice(BigDecimal.valueOf(150)).finalAmount(BigDecimal.valueOf(150))
+                                .appliedDiscounts(List.of()).build();
+                return OutboxEvent.builder().id(id).tripId(tripId).userId("user-1").bucket(0)
+                                .payload(objectMapper.writeValueAsString(event)).build();
+        }
+
+        @Test
+        void relay_PublishesInOrderAndMarksConfirmedEvents() throws Exception {
+                when(outboxEventRepository.findPending(eq(0), any()))
+                                .thenReturn(List.of(pending(1L, 101L), pending(2L, 102L)));
+
+                relay.relay();
+
+                var inOrder = inOrder(rabbitOperations, outboxEventRepository);
+                inOrder.verify(rabbitOperations).convertAndSend(eq(RabbitMQConfig.TRIP_EXCHANGE),
+                                eq(RabbitMQConfig.TRIP_PRICED_ROUTING_KEY),
+                                argThat((TripPricedEvent event) -> event.tripId() == 101L),
+                                any(MessagePostProcessor.class));
+                inOrder.verify(rabbitOperations).convertAndSend(eq(RabbitMQConfig.TRIP_EXCHANGE),
+                                eq(RabbitMQConfig.TRIP_PRICED_ROUTING_KEY),
+                                argThat((TripPricedEvent event) -> event.tripId() == 102L),
+                                any(MessagePostProcessor.class));
+                inOrder.verify(rabbitOperations).waitForConfirmsOrDie(anyLong());
+                inOrder.verify(outboxEventRepository).markPublished(eq(List.of(1L, 2L)), any());
+        }
+
+        @Test
+        void relay_LeavesEventsPendingWhenTheBrokerDoesNotConfirm() throws Exception {
+                when(outboxEventRepository.findPending(eq(0), any())).thenReturn(List.of(pending(1L, 101L)));
+                doThrow(new AmqpException("nack")).when(rabbitOperations).waitForConfirmsOrDie(anyLong());
+
+                relay.relay();
+
+                verify(outboxEventRepository, never()).markPublished(any(), any());
+        }
+
+        @Test
+        void relay_SkipsBucketsHeldByAnotherInstance() {
+                when(outboxBucketRepository.tryLock(0)).thenReturn(Optional.empty());
+
+                relay.relay();
+
+                verifyNoInteractions(rabbitTemplate);
+                verify(outboxEventRepository, never()).findPending(anyInt(), any());
+        }
+}
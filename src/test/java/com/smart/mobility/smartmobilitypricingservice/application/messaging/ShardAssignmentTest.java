@@ -0,0 +1,63 @@
+package com.smart.mobility.smartmobilitypricingservice.application.messaging;
+
+import com.smart.mobility.smartmobilitypricingservice.messaging.ShardAssignment;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardAssignmentTest {
+
+        private static final int SHARDS = 64;
+
+        private Map<Integer, String> owners(List<String> instances) {
+                Map<Integer, String> owners = new HashMap<>();
+                for (String instance : instances) {
+                        for (int shard : ShardAssignment.ownedShards(instance, instances, SHARDS)) {
+                                assertNull(owners.put(shard, instance), "shard " + shard + " owned twice");
+                        }
+                }
+                return owners;
+        }
+
+        @Test
+        void ownedShards_GivesEachShardToExactlyOneInstance() {
+                Map<Integer, String> owners = owners(List.of("pod-a:8080", "pod-b:8080", "pod-c:8080"));
+
+                assertEquals(SHARDS, owners.size());
+                assertEquals(3, owners.values().stream().distinct().count());
+        }
+
+        @Test
+        void ownedShards_OnlyMovesShardsToAJoiningInstance() {
+                List<String> instances = new ArrayList<>(List.of("pod-a:8080", "pod-b:8080", "pod-c:8080"));
+                Map<Integer, String> before = owners(instances);
+
+                instances.add("pod-d:8080");
+                Map<Integer, String> after = owners(instances);
+
+                for (int shard = 0; shard < SHARDS; shard++) {
+                        if (!after.get(shard).equals(before.get(shard))) {
+                                assertEquals("pod-d:8080", after.get(shard));
+                        }
+                }
+                assertTrue(after.containsValue("pod-d:8080"));
+        }
+
+        @Test
+        void ownedShards_UnregisteredInstanceAloneOwnsEverything() {
+                assertEquals(SHARDS, ShardAssignment.ownedShards("pod-a:8080", List.of(), SHARDS).size());
+        }
+
+        @Test
+        void shardOf_IsStableForAUser() {
+                int shard = ShardAssignment.shardOf("user-42", SHARDS);
+
+                assertEquals(shard, ShardAssignment.shardOf("user-42", SHARDS));
+                assertTrue(shard >= 0 && shard < SHARDS);
+        }
+}
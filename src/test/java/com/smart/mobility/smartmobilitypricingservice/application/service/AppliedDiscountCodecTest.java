@@ -0,0 +1,63 @@
+package com.smart.mobility.smartmobilitypricingservice.application.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smart.mobility.smartmobilitypricingservice.dto.AppliedDiscountDto;
+import com.smart.mobility.smartmobilitypricingservice.service.AppliedDiscountCodec;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AppliedDiscountCodecTest {
+
+        private final ObjectMapper objectMapper = new ObjectMapper();
+
+        private AppliedDiscountDto discount(String ruleType, String percentage, String amount) {
+                return AppliedDiscountDto.builder()
+                                .ruleType(ruleType)
+                                .percentage(percentage != null ? new BigDecimal(percentage) : null)
+                                .amountDeducted(amount != null ? new BigDecimal(amount) : null)
+                                .build();
+        }
+
+        @Test
+        void encode_RoundTripsToTheSameJson() throws Exception {
+                List<AppliedDiscountDto> discounts = List.of(
+                                discount("SUBSCRIPTION", "33.3333", "1.67"),
+                                discount("OFFPEAK", "10", "0.33"),
+                                discount("DAILY_CAP_LIMIT", "0", "-0.05"));
+
+                byte[] encoded = AppliedDiscountCodec.encode(discounts);
+
+                assertThat(objectMapper.writeValueAsString(AppliedDiscountCodec.decode(encoded)))
+                                .isEqualTo(objectMapper.writeValueAsString(discounts));
+                assertThat(encoded.length).isLessThan(objectMapper.writeValueAsBytes(discounts).length / 4);
+        }
+
+        @Test
+        void encode_KeepsUnknownRuleTypesAndMissingValues() {
+                List<AppliedDiscountDto> discounts = List.of(
+                                discount("BLACK_FRIDAY", null, "2.00"),
+                                discount(null, "5", null),
+                                discount("", "5", "0.10"));
+
+                assertThat(AppliedDiscountCodec.decode(AppliedDiscountCodec.encode(discounts))).isEqualTo(discounts);
+        }
+
+        @Test
+        void encode_EmptyListInTwoBytes() {
+                byte[] encoded = AppliedDiscountCodec.encode(List.of());
+
+                assertThat(encoded).hasSize(2);
+                assertThat(AppliedDiscountCodec.decode(encoded)).isEmpty();
+        }
+
+        @Test
+        void encode_ReturnsNullForValuesOutsideTheFormat() {
+                AppliedDiscountDto huge = discount("EVENT", "1", "1" + "0".repeat(25));
+
+                assertThat(AppliedDiscountCodec.encode(List.of(huge))).isNull();
+        }
+}
@@ -0,0 +1,112 @@
+package com.smart.mobility.smartmobilitypricingservice.application.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.dto.BulkPricingResultDTO;
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingResponseDTO;
+import com.smart.mobility.smartmobilitypricingservice.dto.TripCompletedEvent;
+import com.smart.mobility.smartmobilitypricingservice.service.BulkPricingService;
+import com.smart.mobility.smartmobilitypricingservice.service.PricingService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BulkPricingServiceTest {
+
+        @Mock
+        private PricingService pricingService;
+
+        private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        private BulkPricingService bulkPricingService;
+
+        @BeforeEach
+        void setUp() {
+                PricingProperties properties = new PricingProperties();
+                properties.getBulk().setChunkSize(3);
+                properties.getBulk().setParallelism(2);
+                bulkPricingService = new BulkPricingService(pricingService, objectMapper, Runnable::run, properties);
+        }
+
+        private static PricingResponseDTO priced(long amount) {
+                return PricingResponseDTO.builder().basePrice(BigDecimal.valueOf(amount))
+                                .discountApplied(BigDecimal.ZERO).finalPrice(BigDecimal.valueOf(amount)).build();
+        }
+
+        private List<BulkPricingResultDTO> run(String body, boolean dryRun) throws Exception {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                bulkPricingService.price(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out, dryRun);
+                return objectMapper.readerFor(BulkPricingResultDTO.class)
+                                .<BulkPricingResultDTO>readValues(out.toByteArray()).readAll();
+        }
+
+        @Test
+        void price_ReadsNdjsonAndPricesEachUserTripsTogether() throws Exception {
+                when(pricingService.calculateAndProcessTrips(anyList())).thenAnswer(invocation -> invocation
+                                .<List<TripCompletedEvent>>getArgument(0).stream().map(trip -> priced(150)).toList());
+
+                List<BulkPricingResultDTO> results = run("""
+                                {"tripId":1,"userId":"user-a","transportType":"BUS"}
+                                {"tripId":2,"userId":"user-a","transportType":"BUS"}
+                                {"tripId":3,"userId":"user-a","transportType":"BUS"}
+                                {"tripId":4,"userId":"user-b","transportType":"TER"}
+                                """, false);
+
+                assertThat(results).extracting(BulkPricingResultDTO::getTripId).containsExactlyInAnyOrder(1L, 2L, 3L, 4L);
+                assertThat(results).allSatisfy(result -> assertThat(result.getPricing().getFinalPrice())
+                                .isEqualByComparingTo("150"));
+                // Chunk of 3: user-a's three trips in one call, then user-b alone
+                verify(pricingService).calculateAndProcessTrips(
+                                argThat(trips -> trips.stream().map(TripCompletedEvent::tripId).toList()
+                                                .equals(List.of(1L, 2L, 3L))));
+                verify(pricingService, never()).previewTrips(anyList());
+        }
+
+        @Test
+        void price_DryRunAcceptsJsonArrayAndOnlyPreviews() throws Exception {
+                when(pricingService.previewTrips(anyList())).thenAnswer(invocation -> invocation
+                                .<List<TripCompletedEvent>>getArgument(0).stream().map(trip -> priced(300)).toList());
+
+                List<BulkPricingResultDTO> results = run("""
+                                [{"tripId":1,"userId":"user-a","transportType":"BUS"},
+                                 {"tripId":2,"userId":"user-b","transportType":"BUS"}]
+                                """, true);
+
+                assertThat(results).extracting(BulkPricingResultDTO::getTripId).containsExactlyInAnyOrder(1L, 2L);
+                verify(pricingService, never()).calculateAndProcessTrips(anyList());
+                verify(pricingService, never()).calculateAndProcessTrip(any());
+        }
+
+        @Test
+        void price_FailedBatchIsRetriedTripByTripToIsolateErrors() throws Exception {
+                when(pricingService.calculateAndProcessTrips(anyList()))
+                                .thenThrow(new IllegalStateException("Unknown station"));
+                when(pricingService.calculateAndProcessTrip(any())).thenAnswer(invocation -> {
+                        if (invocation.<TripCompletedEvent>getArgument(0).tripId() == 2L) {
+                                throw new IllegalStateException("Unknown station");
+                        }
+                        return priced(150);
+                });
+
+                List<BulkPricingResultDTO> results = run("""
+                                {"tripId":1,"userId":"user-a","transportType":"BUS"}
+                                {"tripId":2,"userId":"user-a","transportType":"BUS"}
+                                """, false);
+
+                assertThat(results).hasSize(2);
+                assertThat(results.get(0).getPricing().getFinalPrice()).isEqualByComparingTo("150");
+                assertThat(results.get(1).getError()).isEqualTo("Unknown station");
+        }
+}
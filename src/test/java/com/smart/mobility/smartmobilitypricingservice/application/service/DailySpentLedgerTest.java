@@ -0,0 +1,78 @@
+package com.smart.mobility.smartmobilitypricingservice.application.service;
+
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.service.DailySpentLedger;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DailySpentLedgerTest {
+
+        private static final Clock CLOCK = Clock.fixed(Instant.parse("2026-03-02T10:00:00Z"), ZoneOffset.UTC);
+        private static final LocalDate TODAY = LocalDate.of(2026, 3, 2);
+
+        private final DailySpentLedger ledger = new DailySpentLedger(CLOCK, new PricingProperties());
+
+        @Test
+        void settle_ConcurrentTripsNeverExceedTheCap() throws InterruptedException {
+                ledger.seed("user-1", TODAY, 200_000L);
+                long cap = 250_000L;
+                // Charge 300 or whatever is left below the cap
+                LongFunction<Long> capped = spent -> Math.min(30_000L, Math.max(cap - spent, 0L));
+
+                ExecutorService pool = Executors.newFixedThreadPool(8);
+                for (int i = 0; i < 100; i++) {
+                        pool.submit(() -> ledger.settle("user-1", TODAY, capped, Long::longValue));
+                }
+                pool.shutdown();
+                assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+                assertThat(spentToday("user-1")).isEqualTo(250_000L);
+        }
+
+        @Test
+        void needsSeed_OnlyForUnknownUsersAndNewDays() {
+                assertThat(ledger.needsSeed("user-2", TODAY)).isTrue();
+
+                ledger.seed("user-2", TODAY, 10_000L);
+
+                assertThat(ledger.needsSeed("user-2", TODAY)).isFalse();
+                assertThat(ledger.needsSeed("user-2", TODAY.plusDays(1))).isTrue();
+        }
+
+        @Test
+        void markUnseeded_KeepsLocalChargesAndAsksForSeedAgain() {
+                ledger.settle("user-4", TODAY, spent -> 3_000L, Long::longValue);
+
+                ledger.markUnseeded("user-4", TODAY);
+
+                assertThat(ledger.needsSeed("user-4", TODAY)).isTrue();
+                assertThat(ledger.spent("user-4", TODAY)).isEqualTo(3_000L);
+        }
+
+        @Test
+        void seed_KeepsLocalChargesNotYetKnownByBilling() {
+                ledger.seed("user-3", TODAY, 10_000L);
+                ledger.settle("user-3", TODAY, spent -> 5_000L, Long::longValue);
+
+                ledger.seed("user-3", TODAY, 10_000L);
+                ledger.refund("user-3", TODAY, 2_000L);
+
+                assertThat(spentToday("user-3")).isEqualTo(13_000L);
+        }
+
+        private long spentToday(String userId) {
+                ToLongFunction<Long> nothingCharged = spent -> 0L;
+                return ledger.settle(userId, TODAY, spent -> spent, nothingCharged);
+        }
+}
@@ -0,0 +1,111 @@
+package com.smart.mobility.smartmobilitypricingservice.application.service;
+
+import com.smart.mobility.smartmobilitypricingservice.dto.AppliedDiscountDto;
+import com.smart.mobility.smartmobilitypricingservice.enums.TransportType;
+import com.smart.mobility.smartmobilitypricingservice.model.DiscountRule;
+import com.smart.mobility.smartmobilitypricingservice.service.DiscountRuleEngine;
+import com.smart.mobility.smartmobilitypricingservice.service.DiscountRuleSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DiscountRuleSnapshotTest {
+
+        // 2026-03-02 is a Monday
+        private static final LocalDateTime MONDAY_23H = LocalDateTime.of(2026, 3, 2, 23, 15);
+        private static final LocalDateTime MONDAY_12H = LocalDateTime.of(2026, 3, 2, 12, 0);
+        private static final LocalDateTime SATURDAY_12H = LocalDateTime.of(2026, 3, 7, 12, 0);
+
+        @Test
+        void apply_NightRuleOnlyMatchesInsideOvernightWindow() {
+                DiscountRule night = DiscountRule.builder().ruleType("OFFPEAK").percentage(BigDecimal.valueOf(10))
+                                .priority(1).condition("BUS").active(true)
+                                .startHour(LocalTime.of(22, 30)).endHour(LocalTime.of(5, 0)).build();
+                DiscountRuleSnapshot snapshot = DiscountRuleSnapshot.compile(1L, List.of(night));
+
+                List<AppliedDiscountDto> applied = new ArrayList<>();
+                long amount = snapshot.apply(20_000L, TransportType.BUS, MONDAY_23H, applied);
+
+                assertThat(amount).isEqualTo(18_000L);
+                assertThat(applied).extracting(AppliedDiscountDto::getRuleType).containsExactly("OFFPEAK");
+
+                assertThat(snapshot.apply(20_000L, TransportType.BUS, MONDAY_12H, new ArrayList<>())).isEqualTo(20_000L);
+                assertThat(snapshot.apply(20_000L, TransportType.TER, MONDAY_23H, new ArrayList<>())).isEqualTo(20_000L);
+                // 22:10 is in the same hour bucket but before the window starts
+                assertThat(snapshot.apply(20_000L, TransportType.BUS, MONDAY_23H.withHour(22).withMinute(10),
+                                new ArrayList<>())).isEqualTo(20_000L);
+        }
+
+        @Test
+        void apply_ChainsRulesInPriorityOrderAndSkipsSubscriptions() {
+                DiscountRule weekend = DiscountRule.builder().ruleType("WEEKEND").percentage(BigDecimal.valueOf(50))
+                                .priority(2).active(true).startDay(6).endDay(7).build();
+                DiscountRule loyalty = DiscountRule.builder().ruleType("LOYALTY").percentage(BigDecimal.valueOf(10))
+                                .priority(1).condition("ALL").active(true).build();
+                DiscountRule subscription = DiscountRule.builder().ruleType("SUBSCRIPTION")
+                                .percentage(BigDecimal.valueOf(30)).priority(0).condition("MONTHLY").active(true)
+                                .build();
+                DiscountRuleSnapshot snapshot = DiscountRuleSnapshot.compile(3L,
+                                List.of(weekend, loyalty, subscription));
+
+                List<AppliedDiscountDto> applied = new ArrayList<>();
+                long amount = snapshot.apply(50_000L, TransportType.BRT, SATURDAY_12H, applied);
+
+                assertThat(snapshot.getVersion()).isEqualTo(3L);
+                assertThat(applied).extracting(AppliedDiscountDto::getRuleType).containsExactly("LOYALTY", "WEEKEND");
+                assertThat(amount).isEqualTo(22_500L);
+                assertThat(applied).extracting(AppliedDiscountDto::getAmountDeducted)
+                                .containsExactly(new BigDecimal("50.00"), new BigDecimal("225.00"));
+                assertThat(snapshot.apply(50_000L, TransportType.BRT, MONDAY_12H, new ArrayList<>())).isEqualTo(45_000L);
+        }
+
+        @Test
+        void quoteBucket_IsNotCacheableInHoursWhereARuleStartsOrEnds() {
+                DiscountRule night = DiscountRule.builder().ruleType("OFFPEAK").percentage(BigDecimal.valueOf(10))
+                                .priority(1).condition("BUS").active(true)
+                                .startHour(LocalTime.of(22, 30)).endHour(LocalTime.of(5, 0)).build();
+                DiscountRule event = DiscountRule.builder().ruleType("EVENT").percentage(BigDecimal.valueOf(5))
+                                .priority(2).condition("TER").active(true)
+                                .startDate(MONDAY_12H.toLocalDate()).endDate(MONDAY_12H.toLocalDate().plusDays(3))
+                                .build();
+                DiscountRuleSnapshot snapshot = DiscountRuleSnapshot.compile(1L, List.of(night, event));
+
+                assertThat(snapshot.quoteBucket(TransportType.BUS, MONDAY_23H)).isEqualTo(23L);
+                assertThat(snapshot.quoteBucket(TransportType.BUS, MONDAY_23H.withHour(22)))
+                                .isEqualTo(DiscountRuleSnapshot.NOT_CACHEABLE);
+                assertThat(snapshot.quoteBucket(TransportType.BUS, MONDAY_23H.plusHours(6)))
+                                .isEqualTo(DiscountRuleSnapshot.NOT_CACHEABLE);
+                assertThat(snapshot.quoteBucket(TransportType.BUS, MONDAY_12H)).isEqualTo(12L);
+                // Règle datée : la clé distingue les jours
+                assertThat(snapshot.quoteBucket(TransportType.TER, MONDAY_12H))
+                                .isNotEqualTo(snapshot.quoteBucket(TransportType.TER, MONDAY_12H.plusWeeks(1)));
+                assertThat(snapshot.quoteBucket(TransportType.TER, MONDAY_12H.withMinute(45)))
+                                .isEqualTo(snapshot.quoteBucket(TransportType.TER, MONDAY_12H));
+        }
+
+        @Test
+        void version_IsDerivedFromTheRuleContents() {
+                DiscountRule loyalty = loyalty(new BigDecimal("10.00"), MONDAY_12H);
+                // Même règle relue par une autre instance (échelle et date de mise à jour différentes)
+                DiscountRule reloaded = loyalty(BigDecimal.TEN, MONDAY_23H);
+                DiscountRule changed = loyalty(new BigDecimal("15.00"), MONDAY_12H);
+
+                long version = DiscountRuleEngine.version(List.of(loyalty));
+
+                assertThat(version).isPositive();
+                assertThat(DiscountRuleEngine.version(List.of(reloaded))).isEqualTo(version);
+                assertThat(DiscountRuleEngine.version(List.of(changed))).isNotEqualTo(version);
+                assertThat(DiscountRuleEngine.version(List.of())).isNotEqualTo(version);
+        }
+
+        private static DiscountRule loyalty(BigDecimal percentage, LocalDateTime updatedAt) {
+                return DiscountRule.builder().id(1L).ruleType("LOYALTY").percentage(percentage).priority(1)
+                                .condition("ALL").active(true).updatedAt(updatedAt).build();
+        }
+}
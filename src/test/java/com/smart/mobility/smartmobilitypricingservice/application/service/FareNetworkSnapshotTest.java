@@ -0,0 +1,129 @@
+package com.smart.mobility.smartmobilitypricingservice.application.service;
+
+import com.smart.mobility.smartmobilitypricingservice.enums.TransportType;
+import com.smart.mobility.smartmobilitypricingservice.model.FareSection;
+import com.smart.mobility.smartmobilitypricingservice.model.PenaltyFare;
+import com.smart.mobility.smartmobilitypricingservice.model.TransportLine;
+import com.smart.mobility.smartmobilitypricingservice.service.FareNetworkSnapshot;
+import com.smart.mobility.smartmobilitypricingservice.service.FareStrategies;
+import com.smart.mobility.smartmobilitypricingservice.service.ZoneFlatFareStrategy;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FareNetworkSnapshotTest {
+
+        private static FareSection section(long lineId, int order, String station, Integer zone) {
+                return FareSection.builder().lineId(lineId).sectionOrder(order).stationName(station).zone(zone)
+                                .build();
+        }
+
+        @Test
+        void compile_IndexesStationsCaseInsensitively() {
+                FareNetworkSnapshot snapshot = FareNetworkSnapshot.compile(
+                                List.of(TransportLine.builder().id(1L).name("Ligne 1").transportType("BUS").build()),
+                                List.of(section(1L, 1, "Gare", 1), section(1L, 0, "Marché", 1)));
+
+                FareNetworkSnapshot.CompiledLine line = snapshot.line(1L);
+
+                assertThat(line.getName()).isEqualTo("Ligne 1");
+                assertThat(line.indexOf("MARCHÉ")).isZero();
+                assertThat(line.indexOf("gare")).isEqualTo(1);
+                assertThat(line.indexOf("Inconnue")).isEqualTo(-1);
+                assertThat(snapshot.line(2L)).isNull();
+        }
+
+        @Test
+        void distinctZones_UsesPrefixTableForContiguousZones() {
+                FareNetworkSnapshot snapshot = FareNetworkSnapshot.compile(List.of(), List.of(
+                                section(1L, 0, "A", 1), section(1L, 1, "B", 1), section(1L, 2, "C", null),
+                                section(1L, 3, "D", 2), section(1L, 4, "E", 3)));
+
+                FareNetworkSnapshot.CompiledLine line = snapshot.line(1L);
+
+                assertThat(line.distinctZones(0, 4)).isEqualTo(3);
+                assertThat(line.distinctZones(4, 1)).isEqualTo(3);
+                assertThat(line.distinctZones(1, 3)).isEqualTo(2);
+                assertThat(line.distinctZones(2, 2)).isZero();
+        }
+
+        @Test
+        void distinctZones_HandlesZonesRevisitedAlongTheLine() {
+                FareNetworkSnapshot snapshot = FareNetworkSnapshot.compile(List.of(), List.of(
+                                section(1L, 0, "A", 1), section(1L, 1, "B", 2), section(1L, 2, "C", 1)));
+
+                FareNetworkSnapshot.CompiledLine line = snapshot.line(1L);
+
+                assertThat(line.distinctZones(0, 2)).isEqualTo(2);
+                assertThat(line.distinctZones(1, 2)).isEqualTo(2);
+        }
+
+        @Test
+        void baseFare_ReadsThePrecomputedMatrixForTheLineTransportType() {
+                FareNetworkSnapshot snapshot = FareNetworkSnapshot.compile(
+                                List.of(TransportLine.builder().id(1L).name("Ligne 1").transportType("TER").build()),
+                                List.of(section(1L, 0, "A", 1), section(1L, 1, "B", 2), section(1L, 2, "C", 2),
+                                                section(1L, 3, "D", 4)));
+
+                FareNetworkSnapshot.CompiledLine line = snapshot.line(1L);
+                int[][] matrix = line.fareMatrix();
+
+                assertThat(matrix).hasDimensions(4, 4);
+                // TER : 500 + 500 par zone supplémentaire, en centimes
+                assertThat(matrix[0][3]).isEqualTo(150_000);
+                assertThat(matrix[3][0]).isEqualTo(150_000);
+                assertThat(matrix[1][2]).isEqualTo(50_000);
+                assertThat(line.baseFare(0, 3, TransportType.TER)).isEqualTo(150_000L);
+                // Autre type de transport que celui de la ligne : barème calculé
+                assertThat(line.baseFare(0, 3, TransportType.BUS)).isEqualTo(25_000L);
+                assertThat(line.baseFare(1, 2, TransportType.BRT)).isEqualTo(40_000L);
+        }
+
+        @Test
+        void fareMatrix_IsNotBuiltForLinesWithoutAPricedTransportType() {
+                FareNetworkSnapshot snapshot = FareNetworkSnapshot.compile(List.of(), List.of(
+                                section(1L, 0, "A", 1), section(1L, 1, "B", 2)));
+
+                FareNetworkSnapshot.CompiledLine line = snapshot.line(1L);
+
+                assertThat(line.fareMatrix()).isNull();
+                assertThat(line.baseFare(0, 1, TransportType.BUS)).isEqualTo(20_000L);
+        }
+
+        @Test
+        void baseFare_UsesTheRegisteredFareStrategyOfTheTransportType() {
+                FareStrategies strategies = new FareStrategies(
+                                List.of(new ZoneFlatFareStrategy(TransportType.BUS, 10_000L, 30_000L)));
+                FareNetworkSnapshot snapshot = FareNetworkSnapshot.compile(
+                                List.of(TransportLine.builder().id(1L).name("Ligne 1").transportType("BUS").build()),
+                                List.of(section(1L, 0, "A", 1), section(1L, 1, "B", 1), section(1L, 2, "C", 2)),
+                                List.of(), strategies);
+
+                FareNetworkSnapshot.CompiledLine line = snapshot.line(1L);
+
+                assertThat(line.fareMatrix()[0][1]).isEqualTo(10_000);
+                assertThat(line.baseFare(0, 2, TransportType.BUS)).isEqualTo(30_000L);
+                // Barème standard conservé pour les autres types, type inconnu non tarifé
+                assertThat(line.baseFare(0, 2, TransportType.TER)).isEqualTo(100_000L);
+                assertThat(line.baseFare(0, 2, null)).isZero();
+        }
+
+        @Test
+        void penaltyFare_UsesLineOverridesThenTransportFaresThenDefaults() {
+                FareNetworkSnapshot snapshot = FareNetworkSnapshot.compile(List.of(), List.of(), List.of(
+                                PenaltyFare.builder().transportType("BUS").amount(new BigDecimal("750.00")).build(),
+                                PenaltyFare.builder().transportType("BUS").lineId(7L)
+                                                .amount(new BigDecimal("1200.50")).build(),
+                                PenaltyFare.builder().transportType("ALL").amount(new BigDecimal("900")).build()));
+
+                assertThat(snapshot.penaltyFare(7L, TransportType.BUS)).isEqualTo(120_050L);
+                assertThat(snapshot.penaltyFare(8L, TransportType.BUS)).isEqualTo(75_000L);
+                assertThat(snapshot.penaltyFare(7L, TransportType.TER)).isEqualTo(250_000L);
+                assertThat(snapshot.penaltyFare(null, TransportType.BRT)).isEqualTo(100_000L);
+                assertThat(snapshot.penaltyFare(7L, null)).isEqualTo(90_000L);
+                assertThat(FareNetworkSnapshot.EMPTY.penaltyFare(1L, null)).isEqualTo(50_000L);
+        }
+}
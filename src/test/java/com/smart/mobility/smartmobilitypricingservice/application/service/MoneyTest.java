@@ -0,0 +1,45 @@
+package com.smart.mobility.smartmobilitypricingservice.application.service;
+
+import com.smart.mobility.smartmobilitypricingservice.service.Money;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MoneyTest {
+
+        @Test
+        void percentOf_RoundsLikeBigDecimalHalfUp() {
+                Random random = new Random(7);
+                for (int i = 0; i < 10_000; i++) {
+                        long cents = random.nextInt(1_000_000);
+                        double percentage = random.nextInt(10_000) / 100.0;
+
+                        BigDecimal expected = Money.toBigDecimal(cents)
+                                        .multiply(BigDecimal.valueOf(percentage).divide(BigDecimal.valueOf(100)))
+                                        .setScale(2, RoundingMode.HALF_UP);
+
+                        assertThat(Money.toBigDecimal(Money.percentOf(cents, percentage))).isEqualTo(expected);
+                }
+        }
+
+        @Test
+        void percentOf_FallsBackToBigDecimalForFinePercentages() {
+                // 33.335 % de 1,00 = 0,33335 → 0,33
+                assertThat(Money.percentOf(100L, 33.335)).isEqualTo(33L);
+                // 12.5 % de 0,04 = 0,005 → 0,01 (HALF_UP)
+                assertThat(Money.percentOf(4L, 12.5)).isEqualTo(1L);
+                assertThat(Money.percentOf(-4L, 12.5)).isEqualTo(-1L);
+        }
+
+        @Test
+        void ofDouble_RoundsToTheCentHalfUp() {
+                assertThat(Money.ofDouble(2500.0)).isEqualTo(250_000L);
+                assertThat(Money.ofDouble(0.29)).isEqualTo(29L);
+                assertThat(Money.ofDouble(1.005)).isEqualTo(101L);
+                assertThat(Money.ofDouble(-0.125)).isEqualTo(-13L);
+        }
+}
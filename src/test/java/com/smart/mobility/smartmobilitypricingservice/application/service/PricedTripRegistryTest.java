@@ -0,0 +1,92 @@
+package com.smart.mobility.smartmobilitypricingservice.application.service;
+
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingResponseDTO;
+import com.smart.mobility.smartmobilitypricingservice.model.PricingResult;
+import com.smart.mobility.smartmobilitypricingservice.repository.PricingResultRepository;
+import com.smart.mobility.smartmobilitypricingservice.service.PricedTripRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PricedTripRegistryTest {
+
+        @Mock
+        private PricingResultRepository pricingResultRepository;
+
+        private PricedTripRegistry registry;
+
+        @BeforeEach
+        void setUp() {
+                registry = new PricedTripRegistry(pricingResultRepository, Clock.systemDefaultZone(),
+                                new PricingProperties());
+        }
+
+        @Test
+        void find_SkipsTheDatabaseForTripsUnknownToTheSeededFilter() {
+                when(pricingResultRepository.findTripIdsComputedSince(any()))
+                                .thenReturn(LongStream.rangeClosed(1, 1000).boxed().toList());
+                registry.seed();
+
+                long falsePositives = LongStream.rangeClosed(1001, 11_000)
+                                .filter(tripId -> registry.find(tripId) != null || wasLookedUp(tripId))
+                                .count();
+
+                // Taux de faux positifs configuré : 1 %
+                assertThat(falsePositives).isLessThan(300);
+        }
+
+        @Test
+        void find_ServesRecordedAndStoredTrips() {
+                PricingResponseDTO recorded = PricingResponseDTO.builder().finalPrice(BigDecimal.TEN).build();
+                registry.record(1L, recorded);
+                when(pricingResultRepository.findTripIdsComputedSince(any())).thenReturn(List.of(2L));
+                registry.seed();
+                when(pricingResultRepository.findByTripId(2L)).thenReturn(Optional.of(PricingResult.builder()
+                                .tripId(2L).basePrice(BigDecimal.valueOf(500)).discountApplied(BigDecimal.ZERO)
+                                .finalAmount(BigDecimal.valueOf(500)).capReached(true).build()));
+
+                assertThat(registry.find(1L)).isSameAs(recorded);
+                PricingResponseDTO stored = registry.find(2L);
+                assertThat(stored.getFinalPrice()).isEqualByComparingTo("500");
+                assertThat(stored.isCapReached()).isTrue();
+                // Servi depuis la mémoire ensuite
+                registry.find(2L);
+                verify(pricingResultRepository, times(1)).findByTripId(2L);
+                verify(pricingResultRepository, never()).findByTripId(1L);
+        }
+
+        @Test
+        void claim_StillReservesTheTripWhenTheShortcutIsDisabled() {
+                PricingProperties properties = new PricingProperties();
+                properties.getIdempotency().setEnabled(false);
+                PricedTripRegistry disabled = new PricedTripRegistry(pricingResultRepository,
+                                Clock.systemDefaultZone(), properties);
+                when(pricingResultRepository.claimTrip(eq(7L), any())).thenReturn(true, false);
+
+                assertThat(disabled.find(7L)).isNull();
+                assertThat(disabled.claim(7L)).isNotNull();
+                assertThat(disabled.claim(7L)).isNull();
+                verify(pricingResultRepository, never()).findByTripId(7L);
+        }
+
+        private boolean wasLookedUp(long tripId) {
+                return mockingDetails(pricingResultRepository).getInvocations().stream()
+                                .anyMatch(invocation -> invocation.getMethod().getName().equals("findByTripId")
+                                                && invocation.getArgument(0).equals(tripId));
+        }
+}
@@ -0,0 +1,93 @@
+package com.smart.mobility.smartmobilitypricingservice.application.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.model.PricingResult;
+import com.smart.mobility.smartmobilitypricingservice.service.PricingArchive;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PricingArchiveTest {
+
+        private static final YearMonth MARCH = YearMonth.of(2026, 3);
+
+        @TempDir
+        private Path dir;
+
+        private PricingArchive archive;
+
+        @BeforeEach
+        void setUp() {
+                PricingProperties properties = new PricingProperties();
+                properties.getArchive().setDir(dir.toString());
+                properties.getArchive().setBlockSize(4);
+                archive = new PricingArchive(new ObjectMapper().findAndRegisterModules(), properties);
+        }
+
+        private PricingResult result(long tripId) {
+                return PricingResult.builder()
+                                .id(tripId * 10)
+                                .tripId(tripId)
+                                .userId("user-" + tripId % 3)
+                                .basePrice(BigDecimal.valueOf(300))
+                                .discountApplied(BigDecimal.ZERO)
+                                .finalAmount(BigDecimal.valueOf(300))
+                                .capReached(false)
+                                .computedAt(LocalDateTime.of(2026, 3, 1, 8, 0).plusMinutes(tripId))
+                                .build();
+        }
+
+        private void archiveMarch(long fromTripId, long toTripId) throws Exception {
+                try (PricingArchive.Writer writer = archive.writer(MARCH)) {
+                        for (long tripId = fromTripId; tripId <= toTripId; tripId += 2) {
+                                writer.append(result(tripId));
+                        }
+                        writer.commit();
+                }
+        }
+
+        @Test
+        void find_ReadsTripsFromAnyBlock() throws Exception {
+                archiveMarch(1, 41);
+
+                assertThat(archive.find(1L, MARCH)).hasValueSatisfying(result -> {
+                        assertThat(result.getUserId()).isEqualTo("user-1");
+                        assertThat(result.getComputedAt()).isEqualTo(LocalDateTime.of(2026, 3, 1, 8, 1));
+                });
+                assertThat(archive.find(19L, MARCH)).map(PricingResult::getTripId).contains(19L);
+                assertThat(archive.find(41L, MARCH)).map(PricingResult::getFinalAmount)
+                                .contains(BigDecimal.valueOf(300));
+        }
+
+        @Test
+        void find_ReturnsEmptyForTripsNotInTheArchive() throws Exception {
+                archiveMarch(1, 41);
+
+                assertThat(archive.find(20L, MARCH)).isEmpty();
+                assertThat(archive.find(0L, MARCH)).isEmpty();
+                assertThat(archive.find(43L, MARCH)).isEmpty();
+                assertThat(archive.find(1L, MARCH.minusMonths(1))).isEmpty();
+        }
+
+        @Test
+        void isArchived_OnlyOnceTheWriterCommits() throws Exception {
+                try (PricingArchive.Writer writer = archive.writer(MARCH)) {
+                        writer.append(result(1));
+                        assertThat(archive.isArchived(MARCH)).isFalse();
+                }
+                assertThat(archive.isArchived(MARCH)).isFalse();
+
+                archiveMarch(1, 5);
+
+                assertThat(archive.isArchived(MARCH)).isTrue();
+                assertThat(archive.find(5L, MARCH)).isPresent();
+        }
+}
@@ -0,0 +1,154 @@
+package com.smart.mobility.smartmobilitypricingservice.application.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingContextDTO;
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingQuoteRequest;
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingResponseDTO;
+import com.smart.mobility.smartmobilitypricingservice.dto.SubscriptionContextDTO;
+import com.smart.mobility.smartmobilitypricingservice.enums.TransportType;
+import com.smart.mobility.smartmobilitypricingservice.messaging.PricingEventPublisher;
+import com.smart.mobility.smartmobilitypricingservice.model.FareSection;
+import com.smart.mobility.smartmobilitypricingservice.proxy.AccountServiceClient;
+import com.smart.mobility.smartmobilitypricingservice.proxy.UserServiceClient;
+import com.smart.mobility.smartmobilitypricingservice.repository.DiscountRuleRepository;
+import com.smart.mobility.smartmobilitypricingservice.repository.FareSectionRepository;
+import com.smart.mobility.smartmobilitypricingservice.repository.PenaltyFareRepository;
+import com.smart.mobility.smartmobilitypricingservice.repository.PricingResultRepository;
+import com.smart.mobility.smartmobilitypricingservice.repository.TransportLineRepository;
+import com.smart.mobility.smartmobilitypricingservice.service.DailySpentLedger;
+import com.smart.mobility.smartmobilitypricingservice.service.DiscountRuleEngine;
+import com.smart.mobility.smartmobilitypricingservice.service.FareNetworkService;
+import com.smart.mobility.smartmobilitypricingservice.service.FareStrategies;
+import com.smart.mobility.smartmobilitypricingservice.service.JpaPricingAuditWriter;
+import com.smart.mobility.smartmobilitypricingservice.service.PricedTripRegistry;
+import com.smart.mobility.smartmobilitypricingservice.service.PricingMetrics;
+import com.smart.mobility.smartmobilitypricingservice.service.PricingQuoteService;
+import com.smart.mobility.smartmobilitypricingservice.service.PricingService;
+import com.smart.mobility.smartmobilitypricingservice.service.TripContextFetcher;
+import com.smart.mobility.smartmobilitypricingservice.service.UserContextCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PricingQuoteServiceTest {
+
+        @Mock
+        private DiscountRuleRepository discountRuleRepository;
+
+        @Mock
+        private PricingResultRepository pricingResultRepository;
+
+        @Mock
+        private FareSectionRepository fareSectionRepository;
+
+        @Mock
+        private TransportLineRepository transportLineRepository;
+
+        @Mock
+        private PenaltyFareRepository penaltyFareRepository;
+
+        @Mock
+        private UserServiceClient userServiceClient;
+
+        @Mock
+        private AccountServiceClient accountServiceClient;
+
+        @Mock
+        private PricingEventPublisher pricingEventPublisher;
+
+        private FareNetworkService fareNetworkService;
+        private DailySpentLedger dailySpentLedger;
+        private PricingQuoteService quoteService;
+
+        @BeforeEach
+        void setUp() {
+                PricingProperties properties = new PricingProperties();
+                SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+                ObservationRegistry observationRegistry = ObservationRegistry.create();
+                fareNetworkService = new FareNetworkService(fareSectionRepository, transportLineRepository,
+                                penaltyFareRepository, new FareStrategies(List.of()));
+                DiscountRuleEngine discountRuleEngine = new DiscountRuleEngine(discountRuleRepository);
+                TripContextFetcher tripContextFetcher = new TripContextFetcher(userServiceClient,
+                                accountServiceClient, new UserContextCache(properties, meterRegistry), Runnable::run,
+                                meterRegistry, observationRegistry, properties);
+                dailySpentLedger = new DailySpentLedger(Clock.systemDefaultZone(), properties);
+                PricingService pricingService = new PricingService(discountRuleEngine, pricingResultRepository,
+                                new JpaPricingAuditWriter(pricingResultRepository),
+                                new PricedTripRegistry(pricingResultRepository, Clock.systemDefaultZone(), properties),
+                                fareNetworkService, tripContextFetcher, dailySpentLedger, pricingEventPublisher,
+                                new ObjectMapper(), new PricingMetrics(meterRegistry, observationRegistry));
+                quoteService = new PricingQuoteService(pricingService, fareNetworkService, discountRuleEngine,
+                                tripContextFetcher, dailySpentLedger, Clock.systemDefaultZone(), meterRegistry,
+                                properties);
+        }
+
+        private List<FareSection> busLine(int stations) {
+                return IntStream.range(0, stations)
+                                .mapToObj(i -> FareSection.builder().lineId(1L).stationName("S" + i).sectionOrder(i)
+                                                .zone(i + 1).build())
+                                .toList();
+        }
+
+        private PricingQuoteRequest busQuote(String userId) {
+                return PricingQuoteRequest.builder().userId(userId).transportType(TransportType.BUS).transportLineId(1L)
+                                .startLocation("S0").endLocation("S3")
+                                .startTime(LocalDateTime.of(2026, 3, 2, 12, 10)).build();
+        }
+
+        @Test
+        void quote_AppliesSubscriptionAndCapWithoutSideEffects() {
+                when(fareSectionRepository.findAll()).thenReturn(busLine(4));
+                when(userServiceClient.getPricingContext("user-1")).thenReturn(PricingContextDTO.builder()
+                                .hasActivePass(true)
+                                .dailyCapAmount(2500.0)
+                                .activeSubscriptions(List.of(SubscriptionContextDTO.builder()
+                                                .applicableTransport(TransportType.BUS)
+                                                .discountPercentage(50.0).build()))
+                                .build());
+                dailySpentLedger.seed("user-1", dailySpentLedger.today(), 2_440_00L);
+
+                PricingResponseDTO response = quoteService.quote(busQuote("user-1"));
+
+                assertThat(response.getBasePrice()).isEqualByComparingTo(BigDecimal.valueOf(300));
+                // 300 - 50 % = 150, but only 60 left before the 2500 cap
+                assertThat(response.getFinalPrice()).isEqualByComparingTo(BigDecimal.valueOf(60));
+                assertThat(response.isCapReached()).isTrue();
+                assertThat(dailySpentLedger.spent("user-1", dailySpentLedger.today())).isEqualTo(2_440_00L);
+                verifyNoInteractions(pricingResultRepository, pricingEventPublisher, accountServiceClient);
+        }
+
+        @Test
+        void quote_CachedPricesAreDroppedWhenTheFareNetworkChanges() {
+                when(fareSectionRepository.findAll()).thenReturn(busLine(4));
+                assertThat(quoteService.quote(busQuote(null)).getFinalPrice())
+                                .isEqualByComparingTo(BigDecimal.valueOf(300));
+                assertThat(quoteService.quote(busQuote(null)).getFinalPrice())
+                                .isEqualByComparingTo(BigDecimal.valueOf(300));
+
+                // S3 moved into S2's zone: one zone less
+                List<FareSection> sections = new ArrayList<>(busLine(4));
+                sections.set(3, FareSection.builder().lineId(1L).stationName("S3").sectionOrder(3).zone(3).build());
+                when(fareSectionRepository.findAll()).thenReturn(sections);
+                fareNetworkService.reload();
+
+                assertThat(quoteService.quote(busQuote(null)).getFinalPrice())
+                                .isEqualByComparingTo(BigDecimal.valueOf(250));
+                verifyNoInteractions(userServiceClient);
+        }
+}
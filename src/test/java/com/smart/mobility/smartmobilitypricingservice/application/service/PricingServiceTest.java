@@ -1,30 +1,61 @@
 package com.smart.mobility.smartmobilitypricingservice.application.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smart.mobility.smartmobilitypricingservice.dto.AppliedDiscountDto;
+import com.smart.mobility.smartmobilitypricingservice.dto.DailySpentResponse;
 import com.smart.mobility.smartmobilitypricingservice.dto.PricingContextDTO;
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingResponseDTO;
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingResultView;
 import com.smart.mobility.smartmobilitypricingservice.dto.SubscriptionContextDTO;
 import com.smart.mobility.smartmobilitypricingservice.enums.TransportType;
 import com.smart.mobility.smartmobilitypricingservice.model.PricingResult;
 import com.smart.mobility.smartmobilitypricingservice.dto.TripCompletedEvent;
 import com.smart.mobility.smartmobilitypricingservice.dto.TripPricedEvent;
 import com.smart.mobility.smartmobilitypricingservice.model.FareSection;
+import com.smart.mobility.smartmobilitypricingservice.proxy.AccountServiceClient;
+import com.smart.mobility.smartmobilitypricingservice.repository.DiscountRuleRepository;
 import com.smart.mobility.smartmobilitypricingservice.repository.FareSectionRepository;
+import com.smart.mobility.smartmobilitypricingservice.repository.PenaltyFareRepository;
 import com.smart.mobility.smartmobilitypricingservice.repository.PricingResultRepository;
+import com.smart.mobility.smartmobilitypricingservice.repository.TransportLineRepository;
 import com.smart.mobility.smartmobilitypricingservice.proxy.UserServiceClient;
 import com.smart.mobility.smartmobilitypricingservice.messaging.PricingEventPublisher;
+import com.smart.mobility.smartmobilitypricingservice.service.AppliedDiscountCodec;
+import com.smart.mobility.smartmobilitypricingservice.service.DailySpentLedger;
+import com.smart.mobility.smartmobilitypricingservice.service.DiscountRuleEngine;
+import com.smart.mobility.smartmobilitypricingservice.service.FareNetworkService;
+import com.smart.mobility.smartmobilitypricingservice.service.FareStrategies;
+import com.smart.mobility.smartmobilitypricingservice.service.JpaPricingAuditWriter;
+import com.smart.mobility.smartmobilitypricingservice.service.PricedTripRegistry;
+import com.smart.mobility.smartmobilitypricingservice.service.PricingMetrics;
 import com.smart.mobility.smartmobilitypricingservice.service.PricingService;
+import com.smart.mobility.smartmobilitypricingservice.service.TripContextFetcher;
+import com.smart.mobility.smartmobilitypricingservice.service.UserContextCache;
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
@@ -32,26 +63,57 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class PricingServiceTest {
 
+        @Mock
+        private DiscountRuleRepository discountRuleRepository;
+
         @Mock
         private PricingResultRepository pricingResultRepository;
 
         @Mock
         private FareSectionRepository fareSectionRepository;
 
+        @Mock
+        private TransportLineRepository transportLineRepository;
+
+        @Mock
+        private PenaltyFareRepository penaltyFareRepository;
+
         @Mock
         private UserServiceClient userServiceClient;
 
+        @Mock
+        private AccountServiceClient accountServiceClient;
+
         @Mock
         private PricingEventPublisher pricingEventPublisher;
 
         @Spy
         private ObjectMapper objectMapper = new ObjectMapper();
 
-        @InjectMocks
         private PricingService pricingService;
 
+        private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
         @BeforeEach
         void setUp() {
+                FareNetworkService fareNetworkService = new FareNetworkService(fareSectionRepository,
+                                transportLineRepository, penaltyFareRepository, new FareStrategies(List.of()));
+                DiscountRuleEngine discountRuleEngine = new DiscountRuleEngine(discountRuleRepository);
+                PricingProperties properties = new PricingProperties();
+                ObservationRegistry observationRegistry = ObservationRegistry.create();
+                observationRegistry.observationConfig()
+                                .observationHandler(new DefaultMeterObservationHandler(meterRegistry));
+                TripContextFetcher tripContextFetcher = new TripContextFetcher(userServiceClient,
+                                accountServiceClient, new UserContextCache(properties, meterRegistry), Runnable::run,
+                                meterRegistry, observationRegistry, properties);
+                DailySpentLedger dailySpentLedger = new DailySpentLedger(Clock.systemDefaultZone(), properties);
+                pricingService = new PricingService(discountRuleEngine, pricingResultRepository,
+                                new JpaPricingAuditWriter(pricingResultRepository),
+                                new PricedTripRegistry(pricingResultRepository, Clock.systemDefaultZone(), properties),
+                                fareNetworkService, tripContextFetcher, dailySpentLedger, pricingEventPublisher,
+                                objectMapper, new PricingMetrics(meterRegistry, observationRegistry));
+
+                lenient().when(pricingResultRepository.claimTrip(any(), any())).thenReturn(true);
                 lenient().when(pricingResultRepository.save(any(PricingResult.class))).thenAnswer(invocation -> {
                         PricingResult result = invocation.getArgument(0);
                         result.setId(1L);
@@ -64,15 +126,17 @@ class PricingServiceTest {
                 TripCompletedEvent event = TripCompletedEvent.builder()
                                 .tripId(101L)
                                 .userId("user-123")
-                                .transportType("BUS")
+                                .transportType(TransportType.BUS)
                                 .transportLineId(1L)
                                 .startLocation("A")
-                                .endLocation("D") // 3 sections distance (0 to 3)
+                                .endLocation("D") // 4 zones traversed (1 to 4)
                                 .build();
 
-                FareSection s1 = FareSection.builder().lineId(1L).stationName("A").sectionOrder(0).build();
-                FareSection s2 = FareSection.builder().lineId(1L).stationName("D").sectionOrder(3).build();
-                when(fareSectionRepository.findByLineIdOrderBySectionOrderAsc(1L)).thenReturn(List.of(s1, s2));
+                FareSection s1 = FareSection.builder().lineId(1L).stationName("A").sectionOrder(0).zone(1).build();
+                FareSection s2 = FareSection.builder().lineId(1L).stationName("B").sectionOrder(1).zone(2).build();
+                FareSection s3 = FareSection.builder().lineId(1L).stationName("C").sectionOrder(2).zone(3).build();
+                FareSection s4 = FareSection.builder().lineId(1L).stationName("D").sectionOrder(3).zone(4).build();
+                when(fareSectionRepository.findAll()).thenReturn(List.of(s1, s2, s3, s4));
 
                 PricingContextDTO context = PricingContextDTO.builder()
                                 .hasActivePass(true)
@@ -81,6 +145,7 @@ class PricingServiceTest {
                                 .build();
 
                 when(userServiceClient.getPricingContext("user-123")).thenReturn(context);
+                when(accountServiceClient.getDailySpent("user-123")).thenReturn(new DailySpentResponse("user-123", 0.0));
 
                 pricingService.calculateAndProcessTrip(event);
 
@@ -90,6 +155,10 @@ class PricingServiceTest {
 
                 assertThat(savedResult.getBasePrice()).isEqualByComparingTo(BigDecimal.valueOf(300));
                 assertThat(savedResult.getFinalAmount()).isEqualByComparingTo(BigDecimal.valueOf(300));
+                // L'audit porte l'horodatage de la réservation : findByTripId le cherche autour de celui-ci
+                ArgumentCaptor<LocalDateTime> claimedAt = ArgumentCaptor.forClass(LocalDateTime.class);
+                verify(pricingResultRepository).claimTrip(eq(101L), claimedAt.capture());
+                assertThat(savedResult.getComputedAt()).isEqualTo(claimedAt.getValue());
 
                 verify(pricingEventPublisher).publishTripPricedEvent(any(TripPricedEvent.class));
         }
@@ -99,15 +168,16 @@ class PricingServiceTest {
                 TripCompletedEvent event = TripCompletedEvent.builder()
                                 .tripId(102L)
                                 .userId("user-456")
-                                .transportType("TER")
+                                .transportType(TransportType.TER)
                                 .transportLineId(2L)
                                 .startLocation("X")
-                                .endLocation("Z") // 2 sections distance (0 to 2)
+                                .endLocation("Z") // 3 zones traversed (1 to 3)
                                 .build();
 
-                FareSection s1 = FareSection.builder().lineId(2L).stationName("X").sectionOrder(0).build();
-                FareSection s2 = FareSection.builder().lineId(2L).stationName("Z").sectionOrder(2).build();
-                when(fareSectionRepository.findByLineIdOrderBySectionOrderAsc(2L)).thenReturn(List.of(s1, s2));
+                FareSection s1 = FareSection.builder().lineId(2L).stationName("X").sectionOrder(0).zone(1).build();
+                FareSection s2 = FareSection.builder().lineId(2L).stationName("Y").sectionOrder(1).zone(2).build();
+                FareSection s3 = FareSection.builder().lineId(2L).stationName("Z").sectionOrder(2).zone(3).build();
+                when(fareSectionRepository.findAll()).thenReturn(List.of(s1, s2, s3));
 
                 PricingContextDTO context = PricingContextDTO.builder()
                                 .hasActivePass(true)
@@ -120,6 +190,8 @@ class PricingServiceTest {
                                 .build();
 
                 when(userServiceClient.getPricingContext("user-456")).thenReturn(context);
+                // 2000 already spent today: only 500 left before the 2500 cap
+                when(accountServiceClient.getDailySpent("user-456")).thenReturn(new DailySpentResponse("user-456", 2000.0));
 
                 pricingService.calculateAndProcessTrip(event);
 
@@ -131,4 +203,216 @@ class PricingServiceTest {
                 // Base 1500 - 20% = 1200. Remaining cap 500. Final should be 500.
                 assertThat(savedResult.getFinalAmount()).isEqualByComparingTo(BigDecimal.valueOf(500));
         }
+
+        @Test
+        void testCalculateAndProcessTrips_Batch_SharesContextAndDailySpentPerUser() {
+                FareSection s1 = FareSection.builder().lineId(1L).stationName("A").sectionOrder(0).zone(1).build();
+                FareSection s2 = FareSection.builder().lineId(1L).stationName("B").sectionOrder(1).zone(2).build();
+                FareSection s3 = FareSection.builder().lineId(1L).stationName("C").sectionOrder(2).zone(3).build();
+                FareSection s4 = FareSection.builder().lineId(1L).stationName("D").sectionOrder(3).zone(4).build();
+                when(fareSectionRepository.findAll()).thenReturn(List.of(s1, s2, s3, s4));
+
+                PricingContextDTO context = PricingContextDTO.builder()
+                                .hasActivePass(true)
+                                .dailyCapAmount(2500.0)
+                                .activeSubscriptions(Collections.emptyList())
+                                .build();
+                when(userServiceClient.getPricingContext("user-789")).thenReturn(context);
+                when(accountServiceClient.getDailySpent("user-789")).thenReturn(new DailySpentResponse("user-789", 2300.0));
+
+                TripCompletedEvent first = TripCompletedEvent.builder().tripId(201L).userId("user-789")
+                                .transportType(TransportType.BUS).transportLineId(1L).startLocation("A").endLocation("D").build();
+                TripCompletedEvent second = TripCompletedEvent.builder().tripId(202L).userId("user-789")
+                                .transportType(TransportType.BUS).transportLineId(1L).startLocation("A").endLocation("D").build();
+
+                List<PricingResponseDTO> responses = pricingService.calculateAndProcessTrips(List.of(first, second));
+
+                // 200 left before the cap for the first trip, nothing for the second
+                assertThat(responses.get(0).getFinalPrice()).isEqualByComparingTo(BigDecimal.valueOf(200));
+                assertThat(responses.get(1).getFinalPrice()).isEqualByComparingTo(BigDecimal.ZERO);
+                assertThat(responses.get(1).isCapReached()).isTrue();
+
+                verify(userServiceClient, times(1)).getPricingContext("user-789");
+                verify(accountServiceClient, times(1)).getDailySpent("user-789");
+                verify(pricingResultRepository).saveAll(argThat(results -> ((List<?>) results).size() == 2));
+                verify(pricingEventPublisher, times(2)).publishTripPricedEvent(any(TripPricedEvent.class));
+        }
+
+        @Test
+        void testCalculateAndProcessTrip_TransportTypeResolvedOnceAtDeserialization() throws Exception {
+                FareSection s1 = FareSection.builder().lineId(1L).stationName("A").sectionOrder(0).zone(1).build();
+                FareSection s2 = FareSection.builder().lineId(1L).stationName("B").sectionOrder(1).zone(2).build();
+                when(fareSectionRepository.findAll()).thenReturn(List.of(s1, s2));
+                when(userServiceClient.getPricingContext(any())).thenReturn(PricingContextDTO.builder()
+                                .hasActivePass(false).dailyCapAmount(2500.0)
+                                .activeSubscriptions(Collections.emptyList()).build());
+                when(accountServiceClient.getDailySpent(any())).thenReturn(new DailySpentResponse("user-700", 0.0));
+
+                TripCompletedEvent bus = objectMapper.readValue("""
+                                {"tripId":701,"userId":"user-700","transportType":"bus","transportLineId":1,
+                                 "startLocation":"A","endLocation":"B"}""", TripCompletedEvent.class);
+                TripCompletedEvent tram = objectMapper.readValue("""
+                                {"tripId":702,"userId":"user-700","transportType":"TRAM","transportLineId":1,
+                                 "startLocation":"A","endLocation":"B"}""", TripCompletedEvent.class);
+                pricingService.calculateAndProcessTrip(bus);
+                pricingService.calculateAndProcessTrip(tram);
+
+                assertThat(bus.transportType()).isEqualTo(TransportType.BUS);
+                assertThat(tram.transportType()).isNull();
+                ArgumentCaptor<PricingResult> resultCaptor = ArgumentCaptor.forClass(PricingResult.class);
+                verify(pricingResultRepository, times(2)).save(resultCaptor.capture());
+                assertThat(resultCaptor.getAllValues()).extracting(PricingResult::getTransportType)
+                                .containsExactly("BUS", "OTHER");
+                assertThat(resultCaptor.getAllValues().get(0).getBasePrice()).isEqualByComparingTo("200");
+                // Type inconnu : pas de barème, prix de base nul
+                assertThat(resultCaptor.getAllValues().get(1).getBasePrice()).isEqualByComparingTo("0");
+        }
+
+        @Test
+        void testCalculateAndProcessTrip_AlreadyPricedTrip_ReturnsStoredResultWithoutRepublishing() {
+                PricingResult stored = PricingResult.builder().tripId(301L).userId("user-123").transportType("BUS")
+                                .basePrice(BigDecimal.valueOf(300)).discountApplied(BigDecimal.ZERO)
+                                .finalAmount(BigDecimal.valueOf(300)).capReached(false).build();
+                when(pricingResultRepository.findByTripId(301L)).thenReturn(Optional.of(stored));
+
+                PricingResponseDTO response = pricingService.calculateAndProcessTrip(TripCompletedEvent.builder()
+                                .tripId(301L).userId("user-123").transportType(TransportType.BUS).transportLineId(1L)
+                                .startLocation("A").endLocation("D").build());
+
+                assertThat(response.getFinalPrice()).isEqualByComparingTo(BigDecimal.valueOf(300));
+                verify(pricingResultRepository, never()).save(any(PricingResult.class));
+                verifyNoInteractions(userServiceClient, accountServiceClient, pricingEventPublisher);
+        }
+
+        @Test
+        void testCalculateAndProcessTrip_ConcurrentCallsForTheSameTrip_PublishOnce() throws Exception {
+                FareSection s1 = FareSection.builder().lineId(1L).stationName("A").sectionOrder(0).zone(1).build();
+                FareSection s2 = FareSection.builder().lineId(1L).stationName("B").sectionOrder(1).zone(2).build();
+                when(fareSectionRepository.findAll()).thenReturn(List.of(s1, s2));
+                when(userServiceClient.getPricingContext("user-350")).thenReturn(PricingContextDTO.builder()
+                                .hasActivePass(false).dailyCapAmount(2500.0)
+                                .activeSubscriptions(Collections.emptyList()).build());
+                when(accountServiceClient.getDailySpent("user-350")).thenReturn(new DailySpentResponse("user-350", 0.0));
+                // pricing_trip_keys : la première réservation gagne, la seconde trouve le résultat validé
+                AtomicBoolean claimed = new AtomicBoolean();
+                when(pricingResultRepository.claimTrip(eq(351L), any()))
+                                .thenAnswer(invocation -> claimed.compareAndSet(false, true));
+                when(pricingResultRepository.findByTripId(351L)).thenAnswer(invocation -> claimed.get()
+                                ? Optional.of(PricingResult.builder().tripId(351L).basePrice(BigDecimal.valueOf(200))
+                                                .discountApplied(BigDecimal.ZERO).finalAmount(BigDecimal.valueOf(200))
+                                                .capReached(false).build())
+                                : Optional.empty());
+                TripCompletedEvent event = TripCompletedEvent.builder().tripId(351L).userId("user-350")
+                                .transportType(TransportType.BUS).transportLineId(1L).startLocation("A").endLocation("B")
+                                .build();
+
+                CountDownLatch start = new CountDownLatch(1);
+                ExecutorService executor = Executors.newFixedThreadPool(2);
+                try {
+                        List<Future<PricingResponseDTO>> calls = new ArrayList<>();
+                        for (int i = 0; i < 2; i++) {
+                                calls.add(executor.submit(() -> {
+                                        start.await();
+                                        return pricingService.calculateAndProcessTrip(event);
+                                }));
+                        }
+                        start.countDown();
+                        for (Future<PricingResponseDTO> call : calls) {
+                                assertThat(call.get(5, TimeUnit.SECONDS).getFinalPrice()).isEqualByComparingTo("200");
+                        }
+                } finally {
+                        executor.shutdownNow();
+                }
+
+                verify(pricingEventPublisher, times(1)).publishTripPricedEvent(any(TripPricedEvent.class));
+                verify(pricingResultRepository, times(1)).save(any(PricingResult.class));
+        }
+
+        @Test
+        void testCalculateAndProcessTrips_ClaimedElsewhereWithoutStoredAudit_DoesNotFailTheBatch() {
+                // Réservé et publié par une autre instance, audit pas encore écrit (écriture différée)
+                when(pricingResultRepository.claimTrip(eq(361L), any())).thenReturn(false);
+                when(pricingResultRepository.findByTripId(361L)).thenReturn(Optional.empty());
+                TripCompletedEvent event = TripCompletedEvent.builder().tripId(361L).userId("user-360")
+                                .transportType(TransportType.BUS).transportLineId(1L).startLocation("A").endLocation("B")
+                                .build();
+
+                List<PricingResponseDTO> responses = pricingService.calculateAndProcessTrips(List.of(event));
+
+                assertThat(responses).containsExactly((PricingResponseDTO) null);
+                verify(pricingEventPublisher, never()).publishTripPricedEvent(any(TripPricedEvent.class));
+        }
+
+        @Test
+        void testPreviewTrips_DryRun_SimulatesCapWithoutSideEffects() {
+                FareSection s1 = FareSection.builder().lineId(1L).stationName("A").sectionOrder(0).zone(1).build();
+                FareSection s2 = FareSection.builder().lineId(1L).stationName("B").sectionOrder(1).zone(2).build();
+                FareSection s3 = FareSection.builder().lineId(1L).stationName("C").sectionOrder(2).zone(3).build();
+                FareSection s4 = FareSection.builder().lineId(1L).stationName("D").sectionOrder(3).zone(4).build();
+                when(fareSectionRepository.findAll()).thenReturn(List.of(s1, s2, s3, s4));
+
+                PricingContextDTO context = PricingContextDTO.builder()
+                                .hasActivePass(true)
+                                .dailyCapAmount(2500.0)
+                                .activeSubscriptions(Collections.emptyList())
+                                .build();
+                when(userServiceClient.getPricingContext("user-789")).thenReturn(context);
+                when(accountServiceClient.getDailySpent("user-789")).thenReturn(new DailySpentResponse("user-789", 2300.0));
+
+                List<TripCompletedEvent> trips = List.of(
+                                TripCompletedEvent.builder().tripId(401L).userId("user-789").transportType(TransportType.BUS)
+                                                .transportLineId(1L).startLocation("A").endLocation("D").build(),
+                                TripCompletedEvent.builder().tripId(402L).userId("user-789").transportType(TransportType.BUS)
+                                                .transportLineId(1L).startLocation("A").endLocation("D").build());
+
+                // The daily spent is left untouched: a second preview gives the same prices
+                for (int run = 0; run < 2; run++) {
+                        List<PricingResponseDTO> responses = pricingService.previewTrips(trips);
+                        assertThat(responses.get(0).getFinalPrice()).isEqualByComparingTo(BigDecimal.valueOf(200));
+                        assertThat(responses.get(1).getFinalPrice()).isEqualByComparingTo(BigDecimal.ZERO);
+                }
+
+                verify(pricingResultRepository, never()).save(any(PricingResult.class));
+                verify(pricingResultRepository, never()).saveAll(any());
+                verifyNoInteractions(pricingEventPublisher);
+        }
+
+        @Test
+        void testCalculateAndProcessTrip_RecordsStageTimersAndTripOutcomeTags() {
+                FareSection s1 = FareSection.builder().lineId(1L).stationName("A").sectionOrder(0).zone(1).build();
+                FareSection s2 = FareSection.builder().lineId(1L).stationName("B").sectionOrder(1).zone(2).build();
+                when(fareSectionRepository.findAll()).thenReturn(List.of(s1, s2));
+                when(userServiceClient.getPricingContext("user-500")).thenThrow(new IllegalStateException("down"));
+                when(accountServiceClient.getDailySpent("user-500")).thenReturn(new DailySpentResponse("user-500", 0.0));
+
+                pricingService.calculateAndProcessTrip(TripCompletedEvent.builder().tripId(501L).userId("user-500")
+                                .transportType(TransportType.BUS).transportLineId(1L).startLocation("A").endLocation("B").build());
+
+                for (String stage : List.of("base_price", "subscription_discount", "discount_rules", "daily_cap")) {
+                        assertThat(meterRegistry.get("pricing.stage").tags("stage", stage, "transport", "BUS").timer()
+                                        .count()).isEqualTo(1);
+                }
+                assertThat(meterRegistry.get("pricing.trip").tags("transport", "BUS", "outcome", "priced",
+                                "penalty", "false", "fallback.profile", "true").timer().count()).isEqualTo(1);
+                assertThat(meterRegistry.get("pricing.dependency").tags("dependency", "user-service", "error",
+                                "IllegalStateException").timer().count()).isEqualTo(1);
+                assertThat(meterRegistry.get("pricing.publish").tags("transport", "BUS").timer().count()).isEqualTo(1);
+                assertThat(meterRegistry.get("pricing.context.fallback").counter().count()).isEqualTo(1);
+        }
+
+        @Test
+        void testGetPricingByTripId_RendersEncodedDiscountsAsJson() throws Exception {
+                List<AppliedDiscountDto> discounts = List.of(AppliedDiscountDto.builder().ruleType("SUBSCRIPTION")
+                                .percentage(BigDecimal.valueOf(20.0)).amountDeducted(new BigDecimal("0.30")).build());
+                when(pricingResultRepository.findByTripId(601L)).thenReturn(Optional.of(PricingResult.builder()
+                                .id(6L).tripId(601L).userId("user-600").transportType("BUS")
+                                .basePrice(new BigDecimal("1.50")).discountApplied(new BigDecimal("0.30"))
+                                .finalAmount(new BigDecimal("1.20"))
+                                .appliedDiscountCodes(AppliedDiscountCodec.encode(discounts)).build()));
+
+                PricingResultView view = pricingService.getPricingByTripId(601L);
+
+                assertThat(view.getAppliedDiscounts()).isEqualTo(objectMapper.writeValueAsString(discounts));
+                assertThat(view.getFinalAmount()).isEqualByComparingTo("1.20");
+        }
 }
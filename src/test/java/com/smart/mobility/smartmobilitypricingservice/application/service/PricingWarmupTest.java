@@ -0,0 +1,180 @@
+package com.smart.mobility.smartmobilitypricingservice.application.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.enums.TransportType;
+import com.smart.mobility.smartmobilitypricingservice.messaging.PricingEventPublisher;
+import com.smart.mobility.smartmobilitypricingservice.model.DiscountRule;
+import com.smart.mobility.smartmobilitypricingservice.model.FareSection;
+import com.smart.mobility.smartmobilitypricingservice.model.TransportLine;
+import com.smart.mobility.smartmobilitypricingservice.proxy.AccountServiceClient;
+import com.smart.mobility.smartmobilitypricingservice.proxy.UserServiceClient;
+import com.smart.mobility.smartmobilitypricingservice.repository.DiscountRuleRepository;
+import com.smart.mobility.smartmobilitypricingservice.repository.FareSectionRepository;
+import com.smart.mobility.smartmobilitypricingservice.repository.PenaltyFareRepository;
+import com.smart.mobility.smartmobilitypricingservice.repository.PricingResultRepository;
+import com.smart.mobility.smartmobilitypricingservice.repository.TransportLineRepository;
+import com.smart.mobility.smartmobilitypricingservice.service.DailySpentLedger;
+import com.smart.mobility.smartmobilitypricingservice.service.DiscountRuleEngine;
+import com.smart.mobility.smartmobilitypricingservice.service.FareNetworkService;
+import com.smart.mobility.smartmobilitypricingservice.service.FareNetworkSnapshot;
+import com.smart.mobility.smartmobilitypricingservice.service.FareStrategies;
+import com.smart.mobility.smartmobilitypricingservice.service.JpaPricingAuditWriter;
+import com.smart.mobility.smartmobilitypricingservice.service.PricedTripRegistry;
+import com.smart.mobility.smartmobilitypricingservice.service.PricingMetrics;
+import com.smart.mobility.smartmobilitypricingservice.service.PricingService;
+import com.smart.mobility.smartmobilitypricingservice.service.PricingWarmup;
+import com.smart.mobility.smartmobilitypricingservice.service.TripContextFetcher;
+import com.smart.mobility.smartmobilitypricingservice.service.UserContextCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.health.contributor.Status;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PricingWarmupTest {
+
+        private static final Clock CLOCK = Clock.fixed(LocalDateTime.of(2026, 3, 2, 8, 0).toInstant(ZoneOffset.UTC),
+                        ZoneOffset.UTC);
+
+        @Mock
+        private DiscountRuleRepository discountRuleRepository;
+
+        @Mock
+        private PricingResultRepository pricingResultRepository;
+
+        @Mock
+        private FareSectionRepository fareSectionRepository;
+
+        @Mock
+        private TransportLineRepository transportLineRepository;
+
+        @Mock
+        private PenaltyFareRepository penaltyFareRepository;
+
+        @Mock
+        private UserServiceClient userServiceClient;
+
+        @Mock
+        private AccountServiceClient accountServiceClient;
+
+        @Mock
+        private PricingEventPublisher pricingEventPublisher;
+
+        @TempDir
+        private Path dir;
+
+        private final List<TransportLine> lines = List.of(TransportLine.builder().id(1L).name("Ligne 1")
+                        .transportType("BUS").createdAt(LocalDateTime.of(2026, 1, 5, 9, 30, 12, 345_000)).build());
+        private final List<FareSection> sections = List.of(
+                        FareSection.builder().id(10L).lineId(1L).stationName("A").sectionOrder(0).zone(1).build(),
+                        FareSection.builder().id(11L).lineId(1L).stationName("B").sectionOrder(1).zone(2).build(),
+                        FareSection.builder().id(12L).lineId(1L).stationName("C").sectionOrder(2).build());
+        private final List<DiscountRule> rules = List.of(DiscountRule.builder().id(5L).ruleType("OFFPEAK")
+                        .percentage(new BigDecimal("12.50")).priority(1).condition("BUS").active(true)
+                        .startHour(LocalTime.of(22, 30)).endHour(LocalTime.of(5, 0)).build());
+
+        private FareNetworkService fareNetworkService;
+        private DiscountRuleEngine discountRuleEngine;
+
+        @BeforeEach
+        void setUp() {
+                lenient().when(transportLineRepository.findAll()).thenReturn(lines);
+                lenient().when(fareSectionRepository.findAll()).thenReturn(sections);
+                lenient().when(discountRuleRepository.findByActiveTrueOrderByPriorityAsc()).thenReturn(rules);
+        }
+
+        private PricingWarmup warmup(String snapshotFile, Clock clock) {
+                PricingProperties properties = new PricingProperties();
+                properties.getWarmup().setSnapshotFile(snapshotFile);
+                properties.getWarmup().setIterations(100);
+                SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+                ObservationRegistry observationRegistry = ObservationRegistry.create();
+                fareNetworkService = new FareNetworkService(fareSectionRepository, transportLineRepository,
+                                penaltyFareRepository, new FareStrategies(List.of()));
+                discountRuleEngine = new DiscountRuleEngine(discountRuleRepository);
+                TripContextFetcher tripContextFetcher = new TripContextFetcher(userServiceClient,
+                                accountServiceClient, new UserContextCache(properties, meterRegistry), Runnable::run,
+                                meterRegistry, observationRegistry, properties);
+                PricingService pricingService = new PricingService(discountRuleEngine, pricingResultRepository,
+                                new JpaPricingAuditWriter(pricingResultRepository),
+                                new PricedTripRegistry(pricingResultRepository, clock, properties),
+                                fareNetworkService, tripContextFetcher, new DailySpentLedger(clock, properties),
+                                pricingEventPublisher, new ObjectMapper(),
+                                new PricingMetrics(meterRegistry, observationRegistry));
+                return new PricingWarmup(fareNetworkService, discountRuleEngine, pricingService, clock, properties);
+        }
+
+        @Test
+        void start_LoadsTheTariffBeforeReportingUp() {
+                PricingWarmup warmup = warmup("", CLOCK);
+                assertThat(warmup.health().getStatus()).isEqualTo(Status.DOWN);
+
+                warmup.start();
+
+                assertThat(warmup.health().getStatus()).isEqualTo(Status.UP);
+                assertThat(warmup.health().getDetails()).containsEntry("source", "database");
+                assertThat(fareNetworkService.current().line(1L)).isNotNull();
+                assertThat(discountRuleEngine.current().ruleCount()).isEqualTo(1);
+                verifyNoInteractions(pricingResultRepository, userServiceClient, pricingEventPublisher);
+        }
+
+        @Test
+        void start_FailsWithoutSnapshotWhenTheDatabaseIsDown() {
+                when(transportLineRepository.findAll()).thenThrow(new IllegalStateException("database down"));
+                PricingWarmup warmup = warmup(dir.resolve("tariff.snapshot").toString(), CLOCK);
+
+                assertThatThrownBy(warmup::start).hasMessage("database down");
+                assertThat(warmup.health().getStatus()).isEqualTo(Status.DOWN);
+        }
+
+        @Test
+        void stop_WritesASnapshotTheNextStartUses() {
+                String file = dir.resolve("tariff.snapshot").toString();
+                PricingWarmup previous = warmup(file, CLOCK);
+                previous.start();
+                previous.stop();
+
+                PricingWarmup next = warmup(file, Clock.offset(CLOCK, Duration.ofHours(1)));
+                next.start();
+
+                assertThat((String) next.health().getDetails().get("source")).startsWith("snapshot");
+                assertThat(fareNetworkService.current().line(1L).indexOf("C")).isEqualTo(2);
+                assertThat(discountRuleEngine.current().ruleCount()).isEqualTo(1);
+
+                // Same data in the database: the reload keeps the snapshot loaded from the file
+                FareNetworkSnapshot loaded = fareNetworkService.current();
+                assertThat(fareNetworkService.reload()).isSameAs(loaded);
+        }
+
+        @Test
+        void start_IgnoresAStaleSnapshot() {
+                String file = dir.resolve("tariff.snapshot").toString();
+                PricingWarmup previous = warmup(file, CLOCK);
+                previous.start();
+                previous.stop();
+
+                PricingWarmup next = warmup(file, Clock.offset(CLOCK, Duration.ofDays(2)));
+                next.start();
+
+                assertThat(next.health().getDetails()).containsEntry("source", "database");
+        }
+}
@@ -0,0 +1,187 @@
+package com.smart.mobility.smartmobilitypricingservice.application.service;
+
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingResponseDTO;
+import com.smart.mobility.smartmobilitypricingservice.dto.TripCompletedEvent;
+import com.smart.mobility.smartmobilitypricingservice.enums.RepricingJobStatus;
+import com.smart.mobility.smartmobilitypricingservice.model.PricingResult;
+import com.smart.mobility.smartmobilitypricingservice.model.RepricingJob;
+import com.smart.mobility.smartmobilitypricingservice.repository.PricingResultRepository;
+import com.smart.mobility.smartmobilitypricingservice.repository.RepricingJobRepository;
+import com.smart.mobility.smartmobilitypricingservice.service.PricingService;
+import com.smart.mobility.smartmobilitypricingservice.service.RepricingJobService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.ToLongFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RepricingJobServiceTest {
+
+        private static final LocalDateTime FROM = LocalDateTime.of(2026, 3, 2, 0, 0);
+        private static final LocalDateTime TO = FROM.plusDays(1);
+
+        @Mock
+        private PricingResultRepository pricingResultRepository;
+
+        @Mock
+        private RepricingJobRepository repricingJobRepository;
+
+        @Mock
+        private PricingService pricingService;
+
+        @TempDir
+        private Path tempDir;
+
+        private RepricingJobService repricingJobService;
+
+        @BeforeEach
+        void setUp() {
+                PricingProperties properties = new PricingProperties();
+                properties.getRepricing().setReportDir(tempDir.toString());
+                properties.getRepricing().setMaxTripsPerSecond(0);
+                properties.getRepricing().setParallelism(1);
+                repricingJobService = new RepricingJobService(pricingResultRepository, repricingJobRepository,
+                                pricingService, Runnable::run, Clock.systemDefaultZone(), properties);
+
+                when(repricingJobRepository.save(any(RepricingJob.class))).thenAnswer(invocation -> {
+                        RepricingJob job = invocation.getArgument(0);
+                        if (job.getId() == null) {
+                                job.setId(7L);
+                        }
+                        return job;
+                });
+        }
+
+        private static PricingResult priced(long id, long tripId, long amount) {
+                return PricingResult.builder().id(id).tripId(tripId).userId("user-" + tripId).transportType("BUS")
+                                .transportLineId(1L).startLocation("A").endLocation("D")
+                                .basePrice(BigDecimal.valueOf(amount)).discountApplied(BigDecimal.ZERO)
+                                .finalAmount(BigDecimal.valueOf(amount)).build();
+        }
+
+        private static PricingResponseDTO response(long amount) {
+                return PricingResponseDTO.builder().basePrice(BigDecimal.valueOf(amount))
+                                .discountApplied(BigDecimal.ZERO).finalPrice(BigDecimal.valueOf(amount)).build();
+        }
+
+        private static void awaitStatus(RepricingJob job, RepricingJobStatus status) throws InterruptedException {
+                for (int i = 0; i < 100 && job.getStatus() != status; i++) {
+                        Thread.sleep(50);
+                }
+                assertThat(job.getStatus()).isEqualTo(status);
+        }
+
+        @Test
+        void start_ReportsOnlyTripsWhoseAmountChanged() throws Exception {
+                PricingResult legacy = PricingResult.builder().id(3L).tripId(103L).userId("user-103")
+                                .transportType("BUS").basePrice(BigDecimal.TEN).discountApplied(BigDecimal.ZERO)
+                                .finalAmount(BigDecimal.TEN).build();
+                when(pricingResultRepository.findComputedBetweenAfter(eq(FROM), eq(TO), eq(0L), any()))
+                                .thenReturn(List.of(priced(1L, 101L, 300), priced(2L, 102L, 300), legacy));
+                when(pricingResultRepository.findComputedBetweenAfter(eq(FROM), eq(TO), eq(3L), any()))
+                                .thenReturn(List.of());
+                when(pricingService.repriceTrips(argThat(trips -> trips.size() == 2), anyMap(), any()))
+                                .thenReturn(List.of(response(300), response(250)));
+
+                RepricingJob job = repricingJobService.start(FROM, TO);
+                awaitStatus(job, RepricingJobStatus.COMPLETED);
+
+                assertThat(job.getProcessed()).isEqualTo(3L);
+                assertThat(job.getSkipped()).isEqualTo(1L); // no trip inputs stored
+                assertThat(job.getLastResultId()).isEqualTo(3L);
+                List<String> report = Files.readAllLines(Path.of(job.getReportFile()));
+                assertThat(report).containsExactly("trip_id,user_id,old_amount,new_amount,delta",
+                                "102,user-102,300,250,-50");
+                assertThat(job.getTotalDelta()).isEqualByComparingTo("-50");
+        }
+
+        @Test
+        void resume_RestartsFromTheLastCheckpoint() throws Exception {
+                RepricingJob failed = RepricingJob.builder().id(7L).fromDate(FROM).toDate(TO)
+                                .status(RepricingJobStatus.FAILED).lastResultId(42L).processed(42L).changed(0L)
+                                .skipped(0L).totalDelta(BigDecimal.ZERO)
+                                .reportFile(tempDir.resolve("repricing-7.csv").toString())
+                                .updatedAt(LocalDateTime.now()).build();
+                when(repricingJobRepository.findById(7L)).thenReturn(Optional.of(failed));
+                when(pricingResultRepository.findComputedBetweenAfter(eq(FROM), eq(TO), eq(42L), any()))
+                                .thenReturn(List.of());
+
+                RepricingJob job = repricingJobService.resume(7L);
+                awaitStatus(job, RepricingJobStatus.COMPLETED);
+
+                verify(pricingResultRepository, never()).findComputedBetweenAfter(any(), any(), eq(0L), any());
+                assertThat(job.getProcessed()).isEqualTo(42L);
+        }
+
+        @Test
+        @SuppressWarnings("unchecked")
+        void resume_ReplaysTheDailyCapByStartTimeFromTheStoredSpent() throws Exception {
+                RepricingJob failed = RepricingJob.builder().id(7L).fromDate(FROM).toDate(TO)
+                                .status(RepricingJobStatus.FAILED).lastResultId(42L).processed(42L).changed(0L)
+                                .skipped(0L).totalDelta(BigDecimal.ZERO)
+                                .reportFile(tempDir.resolve("repricing-7.csv").toString())
+                                .updatedAt(LocalDateTime.now()).build();
+                when(repricingJobRepository.findById(7L)).thenReturn(Optional.of(failed));
+                PricingResult evening = priced(43L, 143L, 300);
+                evening.setUserId("user-140");
+                evening.setStartTime(FROM.withHour(18));
+                PricingResult morning = priced(44L, 144L, 300);
+                morning.setUserId("user-140");
+                morning.setStartTime(FROM.withHour(8));
+                when(pricingResultRepository.findComputedBetweenAfter(eq(FROM), eq(TO), eq(42L), any()))
+                                .thenReturn(List.of(evening, morning));
+                when(pricingResultRepository.findComputedBetweenAfter(eq(FROM), eq(TO), eq(44L), any()))
+                                .thenReturn(List.of());
+                // Trajets du matin déjà rejoués avant l'interruption, ou calculés avant la période
+                when(pricingResultRepository.sumFinalAmountStartedBetween("user-140", FROM, FROM.withHour(8), FROM,
+                                TO, 42L)).thenReturn(new BigDecimal("12.50"));
+                ArgumentCaptor<List<TripCompletedEvent>> trips = ArgumentCaptor.forClass(List.class);
+                ArgumentCaptor<ToLongFunction<TripCompletedEvent>> initialSpent = ArgumentCaptor
+                                .forClass(ToLongFunction.class);
+                when(pricingService.repriceTrips(trips.capture(), anyMap(), initialSpent.capture()))
+                                .thenReturn(List.of(response(300), response(300)));
+
+                RepricingJob job = repricingJobService.resume(7L);
+                awaitStatus(job, RepricingJobStatus.COMPLETED);
+
+                assertThat(trips.getValue()).extracting(TripCompletedEvent::tripId).containsExactly(144L, 143L);
+                assertThat(initialSpent.getValue().applyAsLong(trips.getValue().get(0))).isEqualTo(1250L);
+        }
+
+        @Test
+        void run_StopsWithoutOverwritingACancellationFromAnotherInstance() throws Exception {
+                when(pricingResultRepository.findComputedBetweenAfter(eq(FROM), eq(TO), eq(0L), any()))
+                                .thenReturn(List.of(priced(1L, 101L, 300)));
+                when(pricingService.repriceTrips(anyList(), anyMap(), any())).thenReturn(List.of(response(300)));
+                RepricingJob cancelled = RepricingJob.builder().id(7L).status(RepricingJobStatus.CANCELLED).build();
+                when(repricingJobRepository.findById(7L)).thenReturn(Optional.of(cancelled));
+                // Le point de reprise de la première page trouve une version plus récente
+                when(repricingJobRepository.save(argThat(job -> job.getProcessed() == 1L)))
+                                .thenThrow(new ObjectOptimisticLockingFailureException(RepricingJob.class, 7L));
+
+                RepricingJob job = repricingJobService.start(FROM, TO);
+
+                verify(repricingJobRepository, timeout(5000)).findById(7L);
+                verify(repricingJobRepository, times(3)).save(any(RepricingJob.class));
+                assertThat(job.getStatus()).isEqualTo(RepricingJobStatus.RUNNING);
+                assertThat(job.getErrorMessage()).isNull();
+        }
+}
@@ -0,0 +1,191 @@
+package com.smart.mobility.smartmobilitypricingservice.application.service;
+
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.dto.DailySpentResponse;
+import com.smart.mobility.smartmobilitypricingservice.dto.PricingContextDTO;
+import com.smart.mobility.smartmobilitypricingservice.dto.SubscriptionContextDTO;
+import com.smart.mobility.smartmobilitypricingservice.enums.TransportType;
+import com.smart.mobility.smartmobilitypricingservice.proxy.AccountServiceClient;
+import com.smart.mobility.smartmobilitypricingservice.proxy.UserServiceClient;
+import com.smart.mobility.smartmobilitypricingservice.service.SubscriptionRates;
+import com.smart.mobility.smartmobilitypricingservice.service.TripContextFetcher;
+import com.smart.mobility.smartmobilitypricingservice.service.UserContextCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TripContextFetcherTest {
+
+        @Mock
+        private UserServiceClient userServiceClient;
+
+        @Mock
+        private AccountServiceClient accountServiceClient;
+
+        private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        private final ExecutorService executor = Executors.newFixedThreadPool(4);
+        private PricingProperties properties;
+
+        @BeforeEach
+        void setUp() {
+                properties = new PricingProperties();
+                properties.getContextCache().setEnabled(false);
+                lenient().when(userServiceClient.getPricingContext(anyString()))
+                                .thenReturn(TripContextFetcher.defaultProfile());
+        }
+
+        @AfterEach
+        void tearDown() {
+                executor.shutdownNow();
+        }
+
+        private TripContextFetcher fetcher() {
+                return new TripContextFetcher(userServiceClient, accountServiceClient,
+                                new UserContextCache(properties, meterRegistry), executor, meterRegistry,
+                                ObservationRegistry.create(), properties);
+        }
+
+        @Test
+        void fetch_FallsBackToTheLocalLedgerWhenBillingFails() {
+                when(accountServiceClient.getDailySpent("user-1")).thenThrow(new IllegalStateException("down"));
+
+                TripContextFetcher.TripContext context = fetcher().fetch("user-1", true);
+
+                assertThat(context.dailySpentFetched()).isFalse();
+                assertThat(context.dailySpentFallback()).isTrue();
+                assertThat(context.fallbackProfile()).isFalse();
+                assertThat(meterRegistry.counter("pricing.context.daily-spent.fallback").count()).isEqualTo(1.0);
+        }
+
+        @Test
+        void fetch_PrecomputesTheBestSubscriptionRatePerTransportAndCachesIt() {
+                properties.getContextCache().setEnabled(true);
+                when(userServiceClient.getPricingContext("user-1")).thenReturn(PricingContextDTO.builder()
+                                .hasActivePass(true).dailyCapAmount(2500.0)
+                                .activeSubscriptions(List.of(
+                                                subscription(TransportType.BUS, 10.0),
+                                                subscription(TransportType.BUS, 30.0),
+                                                subscription(TransportType.ALL, 20.0),
+                                                subscription(TransportType.TER, null),
+                                                subscription(null, 50.0)))
+                                .build());
+                TripContextFetcher fetcher = fetcher();
+
+                SubscriptionRates rates = fetcher.fetch("user-1", false).subscriptionRates();
+
+                assertThat(rates.best(TransportType.BUS)).isEqualTo(30.0);
+                assertThat(rates.best(TransportType.TER)).isEqualTo(20.0);
+                assertThat(rates.best(TransportType.BRT)).isEqualTo(20.0);
+                // Type de transport inconnu : seuls les abonnements ALL s'appliquent
+                assertThat(rates.best(null)).isEqualTo(20.0);
+                assertThat(fetcher.fetch("user-1", false).subscriptionRates()).isSameAs(rates);
+                verify(userServiceClient, times(1)).getPricingContext("user-1");
+        }
+
+        @Test
+        void fetch_DoesNotCacheAContextInvalidatedWhileItWasFetched() {
+                properties.getContextCache().setEnabled(true);
+                UserContextCache cache = new UserContextCache(properties, meterRegistry);
+                TripContextFetcher fetcher = new TripContextFetcher(userServiceClient, accountServiceClient, cache,
+                                executor, meterRegistry, ObservationRegistry.create(), properties);
+                // SubscriptionChangedEvent reçu pendant l'appel au User Service
+                when(userServiceClient.getPricingContext("user-1")).thenAnswer(invocation -> {
+                        cache.invalidate("user-1");
+                        return TripContextFetcher.defaultProfile();
+                }).thenReturn(TripContextFetcher.defaultProfile());
+
+                fetcher.fetch("user-1", false);
+                assertThat(cache.get("user-1")).isNull();
+                fetcher.fetch("user-1", false);
+                assertThat(cache.get("user-1")).isNotNull();
+
+                verify(userServiceClient, times(2)).getPricingContext("user-1");
+        }
+
+        private static SubscriptionContextDTO subscription(TransportType transport, Double percentage) {
+                return SubscriptionContextDTO.builder().applicableTransport(transport).discountPercentage(percentage)
+                                .build();
+        }
+
+        @Test
+        void fetch_FailsWhenBillingFailsAndFallbackIsDisabled() {
+                properties.getFetch().setDailySpentFallback(false);
+                when(accountServiceClient.getDailySpent("user-1")).thenThrow(new IllegalStateException("down"));
+
+                assertThatThrownBy(() -> fetcher().fetch("user-1", true)).isInstanceOf(IllegalStateException.class);
+        }
+
+        @Test
+        void fetch_StopsCallingBillingOnceTheCircuitIsOpen() {
+                properties.getFetch().getCircuitBreaker().setSlidingWindowSize(2);
+                properties.getFetch().getCircuitBreaker().setMinimumCalls(2);
+                when(accountServiceClient.getDailySpent("user-1")).thenThrow(new IllegalStateException("down"));
+                TripContextFetcher fetcher = fetcher();
+
+                for (int i = 0; i < 5; i++) {
+                        assertThat(fetcher.fetch("user-1", true).dailySpentFallback()).isTrue();
+                }
+
+                verify(accountServiceClient, times(2)).getDailySpent("user-1");
+        }
+
+        @Test
+        void fetch_HedgesASlowCallAndKeepsTheFirstAnswer() {
+                properties.getFetch().getHedging().setEnabled(true);
+                properties.getFetch().getHedging().setMinDelay(Duration.ofMillis(10));
+                AtomicInteger calls = new AtomicInteger();
+                when(accountServiceClient.getDailySpent("user-1")).thenAnswer(invocation -> {
+                        if (calls.incrementAndGet() == 1) {
+                                Thread.sleep(2_000);
+                        }
+                        return new DailySpentResponse("user-1", 1200.0);
+                });
+
+                TripContextFetcher.TripContext context = fetcher().fetch("user-1", true);
+
+                assertThat(context.dailySpentFetched()).isTrue();
+                assertThat(context.dailySpent()).isEqualTo(1200.0);
+                assertThat(meterRegistry.counter("pricing.dependency.hedged").count()).isEqualTo(1.0);
+        }
+
+        @Test
+        void fetchAll_WaitsForABulkheadPermitInsteadOfFallingBack() {
+                properties.getFetch().setUserContextMaxConcurrentCalls(2);
+                properties.getFetch().setDailySpentMaxConcurrentCalls(2);
+                when(userServiceClient.getPricingContext(anyString())).thenAnswer(invocation -> {
+                        Thread.sleep(20);
+                        return TripContextFetcher.defaultProfile();
+                });
+                when(accountServiceClient.getDailySpent(anyString())).thenAnswer(invocation -> {
+                        Thread.sleep(20);
+                        return new DailySpentResponse(invocation.getArgument(0), 300.0);
+                });
+                List<String> userIds = IntStream.rangeClosed(1, 10).mapToObj(i -> "user-" + i).toList();
+
+                Map<String, TripContextFetcher.TripContext> contexts = fetcher().fetchAll(userIds, userId -> true);
+
+                assertThat(contexts).hasSize(10);
+                assertThat(contexts.values()).noneMatch(TripContextFetcher.TripContext::fallbackProfile);
+                assertThat(contexts.values()).allMatch(TripContextFetcher.TripContext::dailySpentFetched);
+                assertThat(meterRegistry.counter("pricing.context.fallback").count()).isZero();
+                assertThat(meterRegistry.counter("pricing.context.daily-spent.fallback").count()).isZero();
+        }
+}
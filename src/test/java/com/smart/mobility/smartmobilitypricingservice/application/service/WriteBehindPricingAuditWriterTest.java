@@ -0,0 +1,150 @@
+package com.smart.mobility.smartmobilitypricingservice.application.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smart.mobility.smartmobilitypricingservice.config.PricingProperties;
+import com.smart.mobility.smartmobilitypricingservice.model.PricingResult;
+import com.smart.mobility.smartmobilitypricingservice.repository.PricingResultRepository;
+import com.smart.mobility.smartmobilitypricingservice.service.WriteBehindPricingAuditWriter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WriteBehindPricingAuditWriterTest {
+
+        @Mock
+        private PricingResultRepository pricingResultRepository;
+
+        @Mock
+        private PlatformTransactionManager transactionManager;
+
+        @TempDir
+        private Path tempDir;
+
+        private final List<Long> persistedTripIds = new ArrayList<>();
+        private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        private PricingProperties properties;
+
+        @BeforeEach
+        void setUp() {
+                properties = new PricingProperties();
+                properties.getAudit().setFlushSize(3);
+                properties.getAudit().setSpillFile(tempDir.resolve("spill.ndjson").toString());
+        }
+
+        private WriteBehindPricingAuditWriter newWriter() {
+                return new WriteBehindPricingAuditWriter(pricingResultRepository, transactionManager,
+                                new ObjectMapper().findAndRegisterModules(), meterRegistry, properties);
+        }
+
+        private static PricingResult audit(long tripId) {
+                return PricingResult.builder().tripId(tripId).userId("user-" + tripId).transportType("BUS")
+                                .basePrice(BigDecimal.valueOf(150)).discountApplied(BigDecimal.ZERO)
+                                .finalAmount(BigDecimal.valueOf(150)).appliedDiscounts("[]").build();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void recordSavedAudits() {
+                when(pricingResultRepository.saveAll(anyList())).thenAnswer(invocation -> {
+                        List<PricingResult> batch = invocation.getArgument(0);
+                        batch.forEach(result -> persistedTripIds.add(result.getTripId()));
+                        return batch;
+                });
+        }
+
+        @Test
+        void stop_DrainsEveryQueuedAuditInBatches() {
+                recordSavedAudits();
+                WriteBehindPricingAuditWriter writer = newWriter();
+                writer.start();
+
+                for (long tripId = 1; tripId <= 10; tripId++) {
+                        writer.write(audit(tripId));
+                }
+                writer.stop();
+
+                assertThat(persistedTripIds).containsExactlyInAnyOrder(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+                verify(pricingResultRepository, atLeast(4)).saveAll(anyList());
+        }
+
+        @Test
+        void start_ReplaysAuditsSpilledWhileTheDatabaseWasDown() throws Exception {
+                when(pricingResultRepository.saveAll(anyList()))
+                                .thenThrow(new DataAccessResourceFailureException("MySQL down"));
+                WriteBehindPricingAuditWriter failing = newWriter();
+                failing.start();
+                failing.writeAll(List.of(audit(1L), audit(2L)));
+                failing.stop();
+
+                Path spillFile = Path.of(properties.getAudit().getSpillFile());
+                assertThat(Files.readAllLines(spillFile)).hasSize(2);
+
+                reset(pricingResultRepository);
+                recordSavedAudits();
+                WriteBehindPricingAuditWriter restarted = newWriter();
+                restarted.start();
+                restarted.stop();
+
+                assertThat(persistedTripIds).containsExactlyInAnyOrder(1L, 2L);
+                assertThat(spillFile).doesNotExist();
+        }
+
+        @Test
+        void persist_IsolatesAndDropsRowsRejectedByTheDatabase() {
+                when(pricingResultRepository.saveAll(anyList()))
+                                .thenThrow(new DataIntegrityViolationException("Column 'user_id' cannot be null"));
+                when(pricingResultRepository.save(any(PricingResult.class))).thenAnswer(invocation -> {
+                        PricingResult audit = invocation.getArgument(0);
+                        if (audit.getTripId() == 2L) {
+                                throw new DataIntegrityViolationException("Column 'user_id' cannot be null");
+                        }
+                        persistedTripIds.add(audit.getTripId());
+                        return audit;
+                });
+                WriteBehindPricingAuditWriter writer = newWriter();
+                writer.start();
+                writer.writeAll(List.of(audit(1L), audit(2L), audit(3L)));
+                writer.stop();
+
+                assertThat(persistedTripIds).containsExactlyInAnyOrder(1L, 3L);
+                assertThat(meterRegistry.get("pricing.audit.rejected").counter().count()).isEqualTo(1);
+                assertThat(Path.of(properties.getAudit().getSpillFile())).doesNotExist();
+        }
+
+        @Test
+        void start_SkipsSpilledAuditsAlreadyStored() throws Exception {
+                Path spillFile = Path.of(properties.getAudit().getSpillFile());
+                ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+                Files.write(spillFile, List.of(objectMapper.writeValueAsString(audit(1L)),
+                                objectMapper.writeValueAsString(audit(2L))));
+                when(pricingResultRepository.findByTripId(1L)).thenReturn(Optional.of(audit(1L)));
+                recordSavedAudits();
+
+                WriteBehindPricingAuditWriter writer = newWriter();
+                writer.start();
+                writer.stop();
+
+                assertThat(persistedTripIds).containsExactly(2L);
+                assertThat(meterRegistry.get("pricing.audit.duplicate").counter().count()).isEqualTo(1);
+                assertThat(spillFile).doesNotExist();
+        }
+}